@@ -0,0 +1,371 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.batch.item.WriteFailedException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.metrics.JsonItemWriterMetrics;
+import fr.soat.java.spring_batch.jsonitemwriter.api.sync.ForceSyncPolicy;
+
+/**
+ * Writer handing the encoded output over to a dedicated I/O thread through a bounded queue, so that
+ * serialization on the chunk thread overlaps with the disk writes.
+ *
+ * Characters are buffered and encoded on the calling thread; a buffer is handed over when it is full or on
+ * {@link #flush()}. When the queue is full, the calling thread blocks until the I/O thread catches up.
+ *
+ * If a transaction is active, a commit barrier is registered: the commit waits until every buffer of the
+ * transaction has been written (and forced to the device if required), and a rollback truncates the file back
+ * to its size at the beginning of the transaction. Without transaction, only {@link #close()} waits.
+ */
+class AsyncChannelWriter extends Writer implements ChannelOutput {
+
+	private static final ByteBuffer END_OF_OUTPUT = ByteBuffer.allocate(0);
+
+	private final FileChannel channel;
+
+	private final Charset charset;
+
+	private final int bufferSize;
+
+	private final ForceSyncPolicy forceSyncPolicy;
+
+	private final JsonItemWriterMetrics metrics;
+
+	private final Runnable closeCallback;
+
+	private final BlockingQueue<ByteBuffer> queue;
+
+	private final Thread ioThread;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition written = lock.newCondition();
+
+	// Owned by the calling thread
+	private final StringBuilder pending;
+
+	private long handedOffBuffers = 0;
+
+	private long handedOffBytes = 0;
+
+	private long basePosition = -1;
+
+	private boolean closed = false;
+
+	// Owned by the I/O thread, read under lock
+	private long writtenBuffers = 0;
+
+	private volatile IOException failure;
+
+	/**
+	 * @param channel the channel written by the I/O thread
+	 * @param encoding
+	 * @param bufferSize number of characters buffered before being handed over
+	 * @param queueCapacity number of buffers waiting for the I/O thread before the caller blocks
+	 * @param forceSyncPolicy policy applied at the barriers, may be null
+	 * @param metrics records the time the calling thread waits for the queue, may be null
+	 * @param closeCallback closes the channel, once every buffer is written
+	 */
+	AsyncChannelWriter(FileChannel channel, String encoding, int bufferSize, int queueCapacity,
+			ForceSyncPolicy forceSyncPolicy, JsonItemWriterMetrics metrics, Runnable closeCallback) {
+		this.channel = channel;
+		this.closeCallback = closeCallback;
+		this.charset = Charset.forName(encoding);
+		this.bufferSize = bufferSize;
+		this.forceSyncPolicy = forceSyncPolicy;
+		this.metrics = metrics;
+		this.pending = new StringBuilder(bufferSize);
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.ioThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeLoop();
+			}
+		}, "json-writer-io");
+		this.ioThread.setDaemon(true);
+		this.ioThread.start();
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		ensureOpen();
+		registerTransactionBarrier();
+		pending.append(cbuf, off, len);
+		if (pending.length() >= bufferSize) {
+			handOff(true);
+		}
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		ensureOpen();
+		registerTransactionBarrier();
+		pending.append(str, off, off + len);
+		if (pending.length() >= bufferSize) {
+			handOff(true);
+		}
+	}
+
+	/**
+	 * Hands the buffered characters over to the I/O thread without waiting for them to be written.
+	 * Does nothing once closed.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (closed) {
+			return;
+		}
+		handOff(false);
+	}
+
+	/**
+	 * Waits for every buffer to be written, stops the I/O thread, then closes the channel.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		try {
+			handOff(false);
+			awaitWritten();
+		} finally {
+			closed = true;
+			try {
+				queue.put(END_OF_OUTPUT);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				closeCallback.run();
+			}
+		}
+	}
+
+	/**
+	 * Written by the calling thread once the I/O thread is idle, so a rollback does not truncate it.
+	 */
+	@Override
+	public void writeHeader(byte[] header) throws IOException {
+		ensureOpen();
+		handOff(false);
+		awaitIoThread();
+		ByteBuffer bytes = ByteBuffer.wrap(header);
+		while (bytes.hasRemaining()) {
+			channel.write(bytes);
+		}
+		if (basePosition >= 0) {
+			basePosition += header.length;
+		}
+		if (forceSyncPolicy != null) {
+			forceSyncPolicy.afterWrite(channel);
+		}
+	}
+
+	@Override
+	public Writer getWriter() {
+		return this;
+	}
+
+	@Override
+	public OutputStream getOutputStream() {
+		return null;
+	}
+
+	/**
+	 * Byte offset of the output once every handed over buffer is written. Does not wait for the I/O thread,
+	 * except the very first time, to learn the starting offset of the channel.
+	 */
+	@Override
+	public long position() throws IOException {
+		if (basePosition < 0) {
+			awaitIoThread();
+			basePosition = channel.position() - handedOffBytes;
+		}
+		return basePosition + handedOffBytes;
+	}
+
+	/**
+	 * Waits for the buffers handed over, then truncates the channel.
+	 */
+	@Override
+	public void truncate(long position) throws IOException {
+		handOff(false);
+		awaitIoThread();
+		channel.truncate(position);
+		channel.position(position);
+		basePosition = position - handedOffBytes;
+	}
+
+	/**
+	 * Blocks until the I/O thread has written every buffer handed over so far, then applies the force sync
+	 * policy if any.
+	 *
+	 * @throws IOException the first failure of the I/O thread, if any
+	 */
+	public void awaitWritten() throws IOException {
+		awaitIoThread();
+		if (forceSyncPolicy != null && channel.isOpen()) {
+			forceSyncPolicy.afterWrite(channel);
+		}
+	}
+
+	/**
+	 * Blocks until the I/O thread has written every buffer handed over so far, without forcing them.
+	 *
+	 * @throws IOException the first failure of the I/O thread, if any
+	 */
+	private void awaitIoThread() throws IOException {
+		waitForIoThread(false);
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * @param drain whether to wait for the buffers the I/O thread skips after a failure as well
+	 */
+	private void waitForIoThread(boolean drain) throws InterruptedIOException {
+		lock.lock();
+		try {
+			while (writtenBuffers < handedOffBuffers && (drain || failure == null)) {
+				written.await();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the output to be written");
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void handOff(boolean keepSurrogate) throws IOException {
+		if (pending.length() == 0) {
+			return;
+		}
+		// never encode half of a surrogate pair: keep it for the next buffer
+		int end = pending.length();
+		if (keepSurrogate && Character.isHighSurrogate(pending.charAt(end - 1))) {
+			end--;
+		}
+		byte[] bytes = pending.substring(0, end).getBytes(charset);
+		pending.delete(0, end);
+		if (failure != null) {
+			throw failure;
+		}
+		long start = metrics == null ? 0 : System.nanoTime();
+		try {
+			queue.put(ByteBuffer.wrap(bytes));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while handing output over to the I/O thread");
+		}
+		if (metrics != null) {
+			metrics.recordAsyncWait(System.nanoTime() - start);
+		}
+		handedOffBuffers++;
+		handedOffBytes += bytes.length;
+	}
+
+	private void writeLoop() {
+		while (true) {
+			ByteBuffer buffer;
+			try {
+				buffer = queue.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (buffer == END_OF_OUTPUT) {
+				return;
+			}
+			if (failure == null) {
+				try {
+					while (buffer.hasRemaining()) {
+						channel.write(buffer);
+					}
+				} catch (IOException e) {
+					failure = e;
+				}
+			}
+			lock.lock();
+			try {
+				writtenBuffers++;
+				written.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Registers, once per transaction, the commit barrier and the rollback truncation.
+	 */
+	private void registerTransactionBarrier() throws IOException {
+		if (!TransactionSynchronizationManager.isActualTransactionActive()
+				|| TransactionSynchronizationManager.hasResource(this)) {
+			return;
+		}
+		final long transactionStartPosition = position();
+		TransactionSynchronizationManager.bindResource(this, transactionStartPosition);
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void beforeCommit(boolean readOnly) {
+				try {
+					handOff(false);
+					awaitWritten();
+				} catch (IOException e) {
+					throw new WriteFailedException("Could not write data.  The file may be corrupt.", e);
+				}
+			}
+
+			@Override
+			public void afterCompletion(int status) {
+				TransactionSynchronizationManager.unbindResourceIfPossible(AsyncChannelWriter.this);
+				if (status != TransactionSynchronization.STATUS_COMMITTED) {
+					rollbackTo(transactionStartPosition);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Drops the output of the transaction once the I/O thread is done with it. A failure of the I/O thread is
+	 * cleared once the file is truncated: the next transaction starts over from a sound file.
+	 */
+	private void rollbackTo(long transactionStartPosition) {
+		pending.setLength(0);
+		try {
+			// the output is truncated below: skipped buffers are fine, but none may be written after
+			waitForIoThread(true);
+			if (!channel.isOpen()) {
+				// closed by the item writer: the restart offset of the last commit applies on reopening
+				return;
+			}
+			channel.truncate(transactionStartPosition);
+			channel.position(transactionStartPosition);
+			basePosition = transactionStartPosition - handedOffBytes;
+			failure = null;
+		} catch (IOException e) {
+			throw new WriteFailedException("Could not truncate output after rollback.  The file may be corrupt.", e);
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Writer already closed");
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.sync.ForceSyncPolicy;
+
+/**
+ * Output of the non transactional text mode: the characters are encoded by a buffered writer over the channel,
+ * and reach the file when the buffer is full and on {@link #flush()}. A rollback does not discard anything.
+ */
+class BufferedChannelOutput extends BufferedWriter implements ChannelOutput {
+
+	private final FileChannel channel;
+
+	private final ForceSyncPolicy forceSyncPolicy;
+
+	private final Runnable closeCallback;
+
+	private boolean written = false;
+
+	/**
+	 * @param channel the channel the characters are written to
+	 * @param encoding
+	 * @param forceSyncPolicy policy applied on flush when something was written, may be null
+	 * @param closeCallback closes the stream of the channel
+	 */
+	BufferedChannelOutput(FileChannel channel, String encoding, ForceSyncPolicy forceSyncPolicy,
+			Runnable closeCallback) {
+		super(Channels.newWriter(channel, encoding));
+		this.channel = channel;
+		this.forceSyncPolicy = forceSyncPolicy;
+		this.closeCallback = closeCallback;
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		super.write(cbuf, off, len);
+		written = true;
+	}
+
+	@Override
+	public void write(String s, int off, int len) throws IOException {
+		super.write(s, off, len);
+		written = true;
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		super.write(c);
+		written = true;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		super.flush();
+		// position() flushes again on update: only sync what was written since
+		if (written && forceSyncPolicy != null) {
+			written = false;
+			forceSyncPolicy.afterWrite(channel);
+		}
+	}
+
+	@Override
+	public void writeHeader(byte[] header) throws IOException {
+		super.flush();
+		ByteBuffer buffer = ByteBuffer.wrap(header);
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		if (forceSyncPolicy != null) {
+			forceSyncPolicy.afterWrite(channel);
+		}
+	}
+
+	@Override
+	public Writer getWriter() {
+		return this;
+	}
+
+	@Override
+	public OutputStream getOutputStream() {
+		return null;
+	}
+
+	@Override
+	public long position() throws IOException {
+		return channel.position();
+	}
+
+	@Override
+	public void truncate(long position) throws IOException {
+		super.flush();
+		channel.truncate(position);
+		channel.position(position);
+	}
+
+	/**
+	 * Applies the force sync policy before closing: closing the writer closes the channel.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+			if (forceSyncPolicy != null && channel.isOpen()) {
+				forceSyncPolicy.beforeClose(channel);
+			}
+			super.close();
+		} finally {
+			closeCallback.run();
+		}
+	}
+}
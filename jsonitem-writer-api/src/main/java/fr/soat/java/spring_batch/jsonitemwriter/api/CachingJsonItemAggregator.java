@@ -0,0 +1,271 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.batch.core.step.item.KeyGenerator;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.utils.ObjectWriterRegistry;
+
+/**
+ * Aggregator keeping the json of the items in a bounded cache, so that an item written again, such as a
+ * reference record repeated throughout an export, is not serialized again. It delegates the serialization to
+ * another aggregator, and can be given to the writer in its place.
+ *
+ * Items are looked up by the key of the {@link KeyGenerator}, by default the item itself: items must then
+ * implement equals and hashCode and must not be modified once written. The least recently used fragments are
+ * evicted when the cache goes over its size: an estimate of the heap the fragments take, not of the bytes they
+ * are written as.
+ *
+ * The cache is shared by the threads writing through the aggregator. It only applies to text output: items
+ * written to a binary generator are serialized by the delegate.
+ *
+ * @param <T>
+ */
+public class CachingJsonItemAggregator<T> extends JsonItemAggregator<T> implements InitializingBean {
+
+	private static final long DEFAULT_MAX_CACHE_SIZE = 16 * 1024 * 1024;
+
+	// estimated heap of a cache entry besides the characters of the fragment: map entry, key and String headers
+	private static final int ENTRY_OVERHEAD = 96;
+
+	private JsonItemAggregator<T> delegate;
+	private KeyGenerator keyGenerator;
+	private long maxCacheSize = DEFAULT_MAX_CACHE_SIZE;
+
+	// applied to the delegate, whichever of the properties is set first
+	private Boolean prettyPrint;
+	private ObjectWriterRegistry objectWriterRegistry;
+
+	private final LinkedHashMap<Object, String> cache = new LinkedHashMap<Object, String>(16, 0.75f, true);
+
+	private long cacheSize;
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(delegate, "The delegate aggregator must be set");
+		Assert.isTrue(maxCacheSize > 0, "The max cache size must be positive.");
+	}
+
+	@Override
+	public String aggregate(T item) {
+		Object key = getKey(item);
+		if (key == null) {
+			return delegate.aggregate(item);
+		}
+		String json = get(key);
+		if (json == null) {
+			json = delegate.aggregate(item);
+			put(key, json);
+		}
+		return json;
+	}
+
+	/**
+	 * Writes the cached json of the item as a raw value of the generator.
+	 */
+	@Override
+	public void aggregate(T item, JsonGenerator jsonGenerator) throws IOException {
+		Object key = jsonGenerator instanceof JsonGeneratorImpl ? getKey(item) : null;
+		if (key == null) {
+			delegate.aggregate(item, jsonGenerator);
+			return;
+		}
+		String json = get(key);
+		if (json == null) {
+			json = delegate.aggregate(item);
+			if (json == null) {
+				// the String version only logs errors: let the streaming one throw them
+				delegate.aggregate(item, jsonGenerator);
+				return;
+			}
+			put(key, json);
+		}
+		jsonGenerator.writeRawValue(json);
+	}
+
+	private Object getKey(T item) {
+		if (item == null) {
+			return null;
+		}
+		return keyGenerator == null ? item : keyGenerator.getKey(item);
+	}
+
+	private String get(Object key) {
+		synchronized (cache) {
+			String json = cache.get(key);
+			if (json == null) {
+				missCount++;
+			} else {
+				hitCount++;
+			}
+			return json;
+		}
+	}
+
+	private void put(Object key, String json) {
+		if (json == null) {
+			return;
+		}
+		long size = sizeOf(json);
+		if (size > maxCacheSize) {
+			return;
+		}
+		synchronized (cache) {
+			String previous = cache.put(key, json);
+			if (previous != null) {
+				// written by another thread in the meantime
+				cacheSize -= sizeOf(previous);
+			}
+			cacheSize += size;
+			Iterator<Map.Entry<Object, String>> eldest = cache.entrySet().iterator();
+			while (cacheSize > maxCacheSize) {
+				cacheSize -= sizeOf(eldest.next().getValue());
+				eldest.remove();
+				evictionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Estimated heap size of a cached fragment: 2 bytes per UTF-16 character and the entry overhead, whatever the
+	 * size of the fragment once encoded in the output.
+	 */
+	private static long sizeOf(String json) {
+		return 2L * json.length() + ENTRY_OVERHEAD;
+	}
+
+	/**
+	 * Drops the cached fragments. The statistics are kept.
+	 */
+	public void clear() {
+		synchronized (cache) {
+			cache.clear();
+			cacheSize = 0;
+		}
+	}
+
+	/**
+	 * Aggregator serializing the items missing from the cache.
+	 *
+	 * @param delegate
+	 */
+	public void setDelegate(JsonItemAggregator<T> delegate) {
+		this.delegate = delegate;
+		if (delegate != null) {
+			if (prettyPrint != null) {
+				delegate.setPrettyPrint(prettyPrint);
+			}
+			if (objectWriterRegistry != null) {
+				delegate.setObjectWriterRegistry(objectWriterRegistry);
+			}
+		}
+		clear();
+	}
+
+	/**
+	 * Extracts the key the items are cached by, e.g. the identifier of a reference record. Items with a null key
+	 * are not cached. Default is null: the item is its own key.
+	 *
+	 * @param keyGenerator
+	 */
+	public void setKeyGenerator(KeyGenerator keyGenerator) {
+		this.keyGenerator = keyGenerator;
+	}
+
+	/**
+	 * Estimated heap size of the cache, in bytes. Default is 16 MB.
+	 *
+	 * @param maxCacheSize
+	 */
+	public void setMaxCacheSize(long maxCacheSize) {
+		this.maxCacheSize = maxCacheSize;
+	}
+
+	/**
+	 * Sets the pretty print of the delegate, and clears the fragments written with the other one. When the
+	 * delegate is not set yet, it is given the pretty print once set.
+	 */
+	@Override
+	public void setPrettyPrint(boolean prettyPrint) {
+		this.prettyPrint = prettyPrint;
+		if (delegate != null && delegate.isPrettyPrint() != prettyPrint) {
+			delegate.setPrettyPrint(prettyPrint);
+			clear();
+		}
+	}
+
+	@Override
+	public boolean isPrettyPrint() {
+		if (delegate != null) {
+			return delegate.isPrettyPrint();
+		}
+		return prettyPrint == null ? super.isPrettyPrint() : prettyPrint;
+	}
+
+	/**
+	 * Sets the registry of the delegate, and clears the cached fragments. When the delegate is not set yet, it is
+	 * given the registry once set.
+	 */
+	@Override
+	public void setObjectWriterRegistry(ObjectWriterRegistry objectWriterRegistry) {
+		this.objectWriterRegistry = objectWriterRegistry;
+		if (delegate != null) {
+			delegate.setObjectWriterRegistry(objectWriterRegistry);
+			clear();
+		}
+	}
+
+	public long getHitCount() {
+		synchronized (cache) {
+			return hitCount;
+		}
+	}
+
+	public long getMissCount() {
+		synchronized (cache) {
+			return missCount;
+		}
+	}
+
+	public long getEvictionCount() {
+		synchronized (cache) {
+			return evictionCount;
+		}
+	}
+
+	/**
+	 * Share of the lookups found in the cache, between 0 and 1.
+	 */
+	public double getHitRatio() {
+		synchronized (cache) {
+			long lookups = hitCount + missCount;
+			return lookups == 0 ? 0 : (double) hitCount / lookups;
+		}
+	}
+
+	/**
+	 * Estimated heap size of the cached fragments, in bytes.
+	 */
+	public long getCacheSize() {
+		synchronized (cache) {
+			return cacheSize;
+		}
+	}
+
+	public int getEntryCount() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * Output engine of {@link JsonFlatFileItemWriter}: writes the output to the file channel, handles the chunk
+ * transaction its own way (buffered until commit, truncated or discarded on rollback) and knows the byte offset
+ * of the output. There is one implementation per output mode, selected once when the writer opens its file.
+ */
+interface ChannelOutput extends Closeable, Flushable {
+
+	/**
+	 * Writes characters, encoded by the output.
+	 *
+	 * @param str
+	 * @throws IOException
+	 */
+	void write(String str) throws IOException;
+
+	/**
+	 * Writes the header of a new file straight to the channel, outside of the current transaction if any: the
+	 * creation of a file is not transactional. Called once, before anything else is written.
+	 *
+	 * @param header the encoded header
+	 * @throws IOException
+	 */
+	void writeHeader(byte[] header) throws IOException;
+
+	/**
+	 * Writer of the output, for the header and footer callbacks and the text generators.
+	 */
+	Writer getWriter();
+
+	/**
+	 * Stream of the output for the byte generators, null if the output only takes characters.
+	 */
+	OutputStream getOutputStream();
+
+	/**
+	 * Byte offset of the output once everything written so far, including the current transaction, is in the
+	 * file. Called after {@link #flush()}.
+	 *
+	 * @throws IOException
+	 */
+	long position() throws IOException;
+
+	/**
+	 * Truncates the file at the given offset, the next writes starting there. Called on restart, before
+	 * anything is written.
+	 *
+	 * @param position
+	 * @throws IOException
+	 */
+	void truncate(long position) throws IOException;
+
+	/**
+	 * Writes what is left, then closes the channel, after the completion of the current transaction if it still
+	 * has output waiting for the commit.
+	 */
+	@Override
+	void close() throws IOException;
+}
@@ -0,0 +1,46 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Write logic of {@link JsonFlatFileItemWriter}: serializes the items of a chunk into its {@link ChannelOutput},
+ * each one preceded by the item separator unless it is the very first item of the output. There is one
+ * implementation per write logic, selected once when the writer opens its file, as the output engine is.
+ *
+ * @param <T>
+ */
+interface ChunkSerializer<T> {
+
+	/**
+	 * Serializes the items after those already in the output. Nothing may be left in between the output and
+	 * the serializer when called, so that the positions are relative to {@link ChannelOutput#position()}.
+	 *
+	 * @param items
+	 * @param itemsWritten items in the output before the chunk
+	 * @param positions where the byte positions of the sampled items, relative to the start of the chunk, are
+	 * recorded, may be null
+	 * @throws IOException
+	 */
+	void write(List<? extends T> items, long itemsWritten, ItemPositions positions) throws IOException;
+
+	/**
+	 * Writes items serialized beforehand, separators included.
+	 *
+	 * @param json
+	 * @throws IOException
+	 */
+	void writeSerialized(String json) throws IOException;
+
+	/**
+	 * Pushes what the serializer holds down to the output, and flushes the output.
+	 *
+	 * @throws IOException
+	 */
+	void flush() throws IOException;
+
+	/**
+	 * Drops what the serializer holds after a failure, possibly a partial item: it must not reach the output.
+	 */
+	void discard();
+}
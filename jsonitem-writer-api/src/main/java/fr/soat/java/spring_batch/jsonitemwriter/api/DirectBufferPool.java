@@ -0,0 +1,167 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Pool of direct buffers holding the output of the chunks of {@link JsonFlatFileItemWriter}, in direct UTF-8 mode
+ * and with the binary formats. A writer takes a buffer when a chunk starts and gives it back once the chunk is
+ * written to the file, so that in steady state no buffer is allocated, and large chunks are kept out of the
+ * heap. Being direct, the buffers are written to the file channel without the intermediate copy made for heap
+ * buffers.
+ *
+ * The buffers are sized after the largest of the recent chunks, rounded up to a power of two, so that a chunk
+ * rarely has to grow its buffer. A buffer much larger than the recent chunks is not kept, nor a buffer beyond the
+ * maximum number of pooled buffers: its memory is freed when it is garbage collected. The direct memory used is
+ * bounded by -XX:MaxDirectMemorySize.
+ *
+ * The pool can be shared by several writers, e.g. the writers of a partitioned step.
+ */
+public class DirectBufferPool {
+
+	private static final int DEFAULT_MIN_BUFFER_SIZE = 64 * 1024;
+	private static final int DEFAULT_MAX_POOLED_BUFFERS = 4;
+
+	// number of chunks the buffer size is computed from
+	private static final int RECENT_CHUNKS = 16;
+
+	// a released buffer larger than this many times the buffer size is dropped
+	private static final int MAX_OVERSIZE = 4;
+
+	private int minBufferSize = DEFAULT_MIN_BUFFER_SIZE;
+	private int maxPooledBuffers = DEFAULT_MAX_POOLED_BUFFERS;
+
+	private final List<ByteBuffer> buffers = new ArrayList<>();
+	private final int[] recentChunkSizes = new int[RECENT_CHUNKS];
+	private int recentChunkCount;
+
+	private long acquireCount;
+	private long allocationCount;
+	private long allocatedBytes;
+	private long discardCount;
+
+	/**
+	 * Returns a cleared buffer of at least the given capacity, and at least the size of the recent chunks. The
+	 * pooled buffers smaller than the recent chunks are dropped.
+	 *
+	 * @param minCapacity
+	 */
+	public synchronized ByteBuffer acquire(int minCapacity) {
+		acquireCount++;
+		int bufferSize = getBufferSize();
+		int capacity = Math.max(minCapacity, bufferSize);
+		ByteBuffer smallest = null;
+		for (Iterator<ByteBuffer> pooled = buffers.iterator(); pooled.hasNext();) {
+			ByteBuffer buffer = pooled.next();
+			if (buffer.capacity() < bufferSize) {
+				pooled.remove();
+				discardCount++;
+			} else if (buffer.capacity() >= capacity
+					&& (smallest == null || buffer.capacity() < smallest.capacity())) {
+				smallest = buffer;
+			}
+		}
+		if (smallest != null) {
+			buffers.remove(smallest);
+			return smallest;
+		}
+		int size = roundUp(capacity);
+		allocationCount++;
+		allocatedBytes += size;
+		return ByteBuffer.allocateDirect(size);
+	}
+
+	/**
+	 * Gives a buffer back to the pool. It must no longer be used by the caller.
+	 *
+	 * @param buffer
+	 */
+	public synchronized void release(ByteBuffer buffer) {
+		int bufferSize = getBufferSize();
+		if (buffers.size() < maxPooledBuffers && buffer.capacity() >= bufferSize
+				&& buffer.capacity() / MAX_OVERSIZE <= bufferSize) {
+			buffer.clear();
+			buffers.add(buffer);
+		} else {
+			discardCount++;
+		}
+	}
+
+	/**
+	 * Records the size of a chunk written, the next buffers being sized after the recent chunks.
+	 *
+	 * @param size in bytes
+	 */
+	public synchronized void recordChunkSize(int size) {
+		recentChunkSizes[recentChunkCount++ % RECENT_CHUNKS] = size;
+	}
+
+	/**
+	 * Size of the buffers allocated now: the largest of the recent chunks rounded up to a power of two, and at
+	 * least the min buffer size.
+	 */
+	public synchronized int getBufferSize() {
+		int largest = minBufferSize;
+		for (int size : recentChunkSizes) {
+			largest = Math.max(largest, size);
+		}
+		return roundUp(largest);
+	}
+
+	private static int roundUp(int size) {
+		if (size > 1 << 30) {
+			return size;
+		}
+		return Integer.bitCount(size) == 1 ? size : Integer.highestOneBit(size) << 1;
+	}
+
+	/**
+	 * Size of the smallest buffers. Default is 64 KB.
+	 *
+	 * @param minBufferSize
+	 */
+	public void setMinBufferSize(int minBufferSize) {
+		this.minBufferSize = minBufferSize;
+	}
+
+	/**
+	 * Number of free buffers kept in the pool, e.g. the number of writers sharing it. Default is 4.
+	 *
+	 * @param maxPooledBuffers
+	 */
+	public void setMaxPooledBuffers(int maxPooledBuffers) {
+		this.maxPooledBuffers = maxPooledBuffers;
+	}
+
+	public synchronized long getAcquireCount() {
+		return acquireCount;
+	}
+
+	/**
+	 * Number of buffers allocated, as opposed to reused from the pool.
+	 */
+	public synchronized long getAllocationCount() {
+		return allocationCount;
+	}
+
+	/**
+	 * Total size of the buffers allocated, in bytes.
+	 */
+	public synchronized long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/**
+	 * Number of buffers dropped: released while the pool was full or while too small or too large, or left too
+	 * small in the pool by larger chunks.
+	 */
+	public synchronized long getDiscardCount() {
+		return discardCount;
+	}
+
+	public synchronized int getPooledCount() {
+		return buffers.size();
+	}
+}
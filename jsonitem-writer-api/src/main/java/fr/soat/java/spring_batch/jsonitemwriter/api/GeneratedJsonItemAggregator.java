@@ -0,0 +1,92 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.annotation.JsonItem;
+import fr.soat.java.spring_batch.jsonitemwriter.api.utils.ObjectWriterRegistry;
+
+/**
+ * Base class of the aggregators generated at compile time for the classes annotated with {@link JsonItem}. The
+ * generated {@link #writeFields(Object, JsonGenerator)} writes each property straight to the generator, so no
+ * introspection nor serializer lookup happens at runtime. The output is the same as {@link JsonItemAggregator}'s.
+ *
+ * Properties of types unknown at compile time are still written by the {@code ObjectMapper} of the registry.
+ *
+ * @param <T>
+ */
+public abstract class GeneratedJsonItemAggregator<T> extends JsonItemAggregator<T> {
+
+	private static final org.slf4j.Logger logger = LoggerFactory.getLogger(GeneratedJsonItemAggregator.class);
+
+	private final Class<T> itemType;
+
+	private JsonFactory jsonFactory = ObjectWriterRegistry.getDefault().getObjectMapper().getFactory();
+
+	/**
+	 * @param itemType the annotated class
+	 */
+	protected GeneratedJsonItemAggregator(Class<T> itemType) {
+		this.itemType = itemType;
+	}
+
+	@Override
+	public String aggregate(T item) {
+		StringWriter writer = new StringWriter();
+		try {
+			JsonGenerator jsonGenerator = jsonFactory.createGenerator(writer);
+			aggregate(item, jsonGenerator);
+			jsonGenerator.close();
+		} catch (IOException e) {
+			logger.error("An error has occured. Error message {} ", e.getMessage());
+			return null;
+		}
+		return writer.toString();
+	}
+
+	/**
+	 * Sets the pretty printer of {@link JsonItemAggregator} on the generator if it has none, as an
+	 * {@code ObjectWriter} would, then writes the item.
+	 */
+	@Override
+	public void aggregate(T item, JsonGenerator jsonGenerator) throws IOException {
+		if (isPrettyPrint() && jsonGenerator.getPrettyPrinter() == null) {
+			jsonGenerator.setPrettyPrinter(new DefaultPrettyPrinter((String) null));
+		}
+		writeItem(item, jsonGenerator);
+	}
+
+	/**
+	 * Writes the item as an object, or null. Instances of subclasses, which may have more properties, are
+	 * written by the {@code ObjectMapper}.
+	 */
+	public void writeItem(T item, JsonGenerator jsonGenerator) throws IOException {
+		if (item == null || item.getClass() != itemType) {
+			jsonGenerator.writeObject(item);
+			return;
+		}
+		jsonGenerator.writeStartObject();
+		writeFields(item, jsonGenerator);
+		jsonGenerator.writeEndObject();
+	}
+
+	/**
+	 * Writes the properties of the item, between the braces.
+	 */
+	protected abstract void writeFields(T item, JsonGenerator jsonGenerator) throws IOException;
+
+	/**
+	 * The mapper of the registry writes the properties the generated code does not handle itself.
+	 */
+	@Override
+	public void setObjectWriterRegistry(ObjectWriterRegistry objectWriterRegistry) {
+		super.setObjectWriterRegistry(objectWriterRegistry);
+		this.jsonFactory = objectWriterRegistry.getObjectMapper().getFactory();
+	}
+}
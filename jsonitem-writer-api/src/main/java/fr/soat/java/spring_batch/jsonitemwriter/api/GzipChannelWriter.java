@@ -0,0 +1,290 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.batch.item.WriteFailedException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.sync.ForceSyncPolicy;
+
+/**
+ * Writer compressing the output as a sequence of independent gzip members. Every {@link #flush()} closes the
+ * current members, so the byte offset of the file after a flush is always a member boundary: truncating the
+ * file there on restart leaves a valid gzip file, and any gzip reader decompresses the concatenated members as
+ * a single stream.
+ *
+ * The buffered characters are cut into blocks of a given size, each block being compressed into its own
+ * member, on the given executor if any. In a transaction, the members are written to the channel before the
+ * transaction commits, so that a failure rolls it back, and dropped on rollback.
+ */
+class GzipChannelWriter extends Writer implements ChannelOutput {
+
+	private final FileChannel channel;
+
+	private final Charset charset;
+
+	private final int blockSize;
+
+	private final ExecutorService compressionExecutor;
+
+	private final boolean transactional;
+
+	private final ForceSyncPolicy forceSyncPolicy;
+
+	private final Runnable closeCallback;
+
+	private final StringBuilder pending = new StringBuilder();
+
+	private boolean closeAfterCompletion = false;
+
+	/**
+	 * @param channel the channel the members are written to. It is not closed by this writer.
+	 * @param encoding
+	 * @param blockSize maximum number of characters compressed into one member
+	 * @param compressionExecutor executor compressing the blocks in parallel, may be null
+	 * @param transactional whether the members are only written before the transaction commits
+	 * @param forceSyncPolicy policy applied after each write, may be null
+	 * @param closeCallback closes the channel, once the members of the current transaction are written
+	 */
+	GzipChannelWriter(FileChannel channel, String encoding, int blockSize, ExecutorService compressionExecutor,
+			boolean transactional, ForceSyncPolicy forceSyncPolicy, Runnable closeCallback) {
+		this.channel = channel;
+		this.charset = Charset.forName(encoding);
+		this.blockSize = blockSize;
+		this.compressionExecutor = compressionExecutor;
+		this.transactional = transactional;
+		this.forceSyncPolicy = forceSyncPolicy;
+		this.closeCallback = closeCallback;
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		getTransactionMembers();
+		pending.append(cbuf, off, len);
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		getTransactionMembers();
+		pending.append(str, off, off + len);
+	}
+
+	/**
+	 * Compresses the buffered characters. The members are written right away, or kept until commit in a
+	 * transaction.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (pending.length() == 0) {
+			return;
+		}
+		List<byte[]> members = compress();
+		List<byte[]> transactionMembers = getTransactionMembers();
+		if (transactionMembers != null) {
+			transactionMembers.addAll(members);
+		} else {
+			writeMembers(members);
+		}
+	}
+
+	/**
+	 * Compresses the buffered characters and closes the channel, after the completion of the current
+	 * transaction if it has members waiting for the commit.
+	 */
+	@Override
+	public void close() throws IOException {
+		flush();
+		List<byte[]> transactionMembers = getTransactionMembers();
+		if (transactionMembers != null && !transactionMembers.isEmpty()) {
+			closeAfterCompletion = true;
+		} else {
+			closeCallback.run();
+		}
+	}
+
+	/**
+	 * Compresses the header into its own member, written right away.
+	 */
+	@Override
+	public void writeHeader(byte[] header) throws IOException {
+		writeMembers(Collections.singletonList(gzip(header)));
+	}
+
+	@Override
+	public Writer getWriter() {
+		return this;
+	}
+
+	@Override
+	public OutputStream getOutputStream() {
+		return null;
+	}
+
+	/**
+	 * Truncates the channel on a member boundary, as saved by {@link #position()}.
+	 */
+	@Override
+	public void truncate(long position) throws IOException {
+		pending.setLength(0);
+		channel.truncate(position);
+		channel.position(position);
+	}
+
+	/**
+	 * Byte offset of the file once the members of the current transaction are written.
+	 */
+	@Override
+	public long position() throws IOException {
+		long pos = channel.position();
+		List<byte[]> transactionMembers = getTransactionMembers();
+		if (transactionMembers != null) {
+			for (byte[] member : transactionMembers) {
+				pos += member.length;
+			}
+		}
+		return pos;
+	}
+
+	private List<byte[]> compress() throws IOException {
+		List<String> blocks = new ArrayList<>();
+		int start = 0;
+		while (start < pending.length()) {
+			int end = Math.min(start + blockSize, pending.length());
+			// never cut a surrogate pair in two blocks
+			if (end < pending.length() && Character.isHighSurrogate(pending.charAt(end - 1))) {
+				end++;
+			}
+			blocks.add(pending.substring(start, end));
+			start = end;
+		}
+		pending.setLength(0);
+
+		List<byte[]> members = new ArrayList<>(blocks.size());
+		if (compressionExecutor == null || blocks.size() == 1) {
+			for (String block : blocks) {
+				members.add(gzip(block));
+			}
+			return members;
+		}
+		List<Future<byte[]>> futures = new ArrayList<>(blocks.size());
+		for (final String block : blocks) {
+			futures.add(compressionExecutor.submit(new Callable<byte[]>() {
+				@Override
+				public byte[] call() throws IOException {
+					return gzip(block);
+				}
+			}));
+		}
+		try {
+			for (Future<byte[]> future : futures) {
+				members.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while compressing output", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Could not compress output", e.getCause());
+		}
+		return members;
+	}
+
+	private byte[] gzip(String block) throws IOException {
+		return gzip(block.getBytes(charset));
+	}
+
+	private static byte[] gzip(byte[] bytes) throws IOException {
+		ByteArrayOutputStream member = new ByteArrayOutputStream(bytes.length / 4 + 64);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(member)) {
+			gzip.write(bytes);
+		}
+		return member.toByteArray();
+	}
+
+	private void writeMembers(List<byte[]> members) throws IOException {
+		if (members.isEmpty()) {
+			return;
+		}
+		for (byte[] member : members) {
+			ByteBuffer buffer = ByteBuffer.wrap(member);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+		if (forceSyncPolicy != null) {
+			forceSyncPolicy.afterWrite(channel);
+		}
+	}
+
+	/**
+	 * Members waiting for the commit of the current transaction, registering the synchronization on first
+	 * call. Null if there is no transaction.
+	 */
+	@SuppressWarnings("unchecked")
+	private List<byte[]> getTransactionMembers() {
+		if (!transactional || !TransactionSynchronizationManager.isActualTransactionActive()) {
+			return null;
+		}
+		List<byte[]> members = (List<byte[]>) TransactionSynchronizationManager.getResource(this);
+		if (members == null) {
+			final List<byte[]> transactionMembers = new ArrayList<>();
+			TransactionSynchronizationManager.bindResource(this, transactionMembers);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+				// end of the output before the members of the transaction, -1 until they are written
+				private long start = -1;
+
+				@Override
+				public void beforeCommit(boolean readOnly) {
+					try {
+						start = channel.position();
+						writeMembers(transactionMembers);
+						transactionMembers.clear();
+					} catch (IOException e) {
+						throw new WriteFailedException("Could not write data.  The file may be corrupt.", e);
+					}
+				}
+
+				@Override
+				public void afterCompletion(int status) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(GzipChannelWriter.this);
+					transactionMembers.clear();
+					try {
+						// members written before a failed commit, or partly written, are cut off
+						if (status != TransactionSynchronization.STATUS_COMMITTED) {
+							pending.setLength(0);
+							if (start >= 0 && channel.isOpen()) {
+								truncate(start);
+							}
+						}
+					} catch (IOException e) {
+						throw new WriteFailedException(
+								"Could not truncate output after rollback.  The file may be corrupt.", e);
+					} finally {
+						if (closeAfterCompletion) {
+							closeAfterCompletion = false;
+							closeCallback.run();
+						}
+					}
+				}
+			});
+			members = transactionMembers;
+		}
+		return members;
+	}
+}
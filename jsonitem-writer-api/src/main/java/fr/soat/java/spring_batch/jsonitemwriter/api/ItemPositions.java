@@ -0,0 +1,129 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Start positions of the sampled items of a chunk, recorded while serializing it, to be written to the
+ * {@link fr.soat.java.spring_batch.jsonitemwriter.api.index.OffsetIndex}. Positions are relative to the start of
+ * the chunk output, in characters or in bytes depending on the output; {@link #toBytePositions(CharSequence,
+ * Charset)} converts the former.
+ */
+class ItemPositions {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final long firstItem;
+
+	private final int interval;
+
+	private int[] items = new int[4];
+
+	private long[] positions = new long[4];
+
+	private int size = 0;
+
+	/**
+	 * @param firstItem ordinal of the first item of the chunk
+	 * @param interval the items whose ordinal is a multiple of it are sampled
+	 */
+	ItemPositions(long firstItem, int interval) {
+		this.firstItem = firstItem;
+		this.interval = interval;
+	}
+
+	/**
+	 * @param item index of the item in the chunk
+	 */
+	boolean isSampled(int item) {
+		return (firstItem + item) % interval == 0;
+	}
+
+	/**
+	 * @param item index of the item in the chunk
+	 * @param position start of the item, after its separator
+	 */
+	void add(int item, long position) {
+		if (size == items.length) {
+			items = Arrays.copyOf(items, size * 2);
+			positions = Arrays.copyOf(positions, size * 2);
+		}
+		items[size] = item;
+		positions[size] = position;
+		size++;
+	}
+
+	int size() {
+		return size;
+	}
+
+	int getItem(int i) {
+		return items[i];
+	}
+
+	long getPosition(int i) {
+		return positions[i];
+	}
+
+	/**
+	 * Appends the positions of another slice of the chunk, shifted by its start.
+	 */
+	void addAll(ItemPositions slice, long sliceStart) {
+		for (int i = 0; i < slice.size; i++) {
+			add(slice.items[i], sliceStart + slice.positions[i]);
+		}
+	}
+
+	/**
+	 * Converts character positions in the given output into byte positions once encoded.
+	 */
+	void toBytePositions(CharSequence output, Charset charset) {
+		long bytes = 0;
+		int chars = 0;
+		for (int i = 0; i < size; i++) {
+			int next = (int) positions[i];
+			bytes += encodedLength(output, chars, next, charset);
+			chars = next;
+			positions[i] = bytes;
+		}
+	}
+
+	/**
+	 * Number of bytes of the given characters once encoded, without encoding them in UTF-8.
+	 */
+	static long encodedLength(CharSequence chars, int start, int end, Charset charset) {
+		if (!UTF_8.equals(charset)) {
+			return charset.encode(CharBuffer.wrap(chars, start, end)).remaining();
+		}
+		long length = 0;
+		for (int i = start; i < end; i++) {
+			length += utf8Length(chars.charAt(i));
+		}
+		return length;
+	}
+
+	/**
+	 * Number of bytes of a single character once encoded, without encoding it in UTF-8.
+	 */
+	static long encodedLength(char c, Charset charset) {
+		if (!UTF_8.equals(charset)) {
+			return charset.encode(CharBuffer.wrap(new char[] { c })).remaining();
+		}
+		return utf8Length(c);
+	}
+
+	/**
+	 * Each half of a surrogate pair counts for half of its 4 bytes, so that a pair split between two calls is
+	 * counted right.
+	 */
+	private static int utf8Length(char c) {
+		if (c < 0x80) {
+			return 1;
+		}
+		if (c < 0x800 || Character.isSurrogate(c)) {
+			return 2;
+		}
+		return 3;
+	}
+}
@@ -1,15 +1,30 @@
 package fr.soat.java.spring_batch.jsonitemwriter.api;
 
-import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.Writer;
-import java.nio.channels.Channels;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
 import java.nio.channels.FileChannel;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.nio.charset.UnsupportedCharsetException;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.item.ExecutionContext;
@@ -20,12 +35,23 @@ import org.springframework.batch.item.WriterNotOpenException;
 import org.springframework.batch.item.file.ResourceAwareItemWriterItemStream;
 import org.springframework.batch.item.support.AbstractItemStreamItemWriter;
 import org.springframework.batch.item.util.FileUtils;
-import org.springframework.batch.support.transaction.TransactionAwareBufferedWriter;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.core.io.Resource;
 import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.index.OffsetIndex;
+import fr.soat.java.spring_batch.jsonitemwriter.api.metrics.JsonItemWriterMetrics;
+import fr.soat.java.spring_batch.jsonitemwriter.api.sync.AlwaysForceSyncPolicy;
+import fr.soat.java.spring_batch.jsonitemwriter.api.sync.ForceSyncPolicy;
+import fr.soat.java.spring_batch.jsonitemwriter.api.sync.GroupCommitForceSyncPolicy;
+import fr.soat.java.spring_batch.jsonitemwriter.api.sync.IntervalForceSyncPolicy;
+
 /**
  * Custom writer implementation made to output json format.
  *  
@@ -40,19 +66,55 @@ public class JsonFlatFileItemWriter<T> extends AbstractItemStreamItemWriter<T>
 	private static final org.slf4j.Logger logger = LoggerFactory.getLogger(JsonFlatFileItemWriter.class);
 
 	private static final String DEFAULT_ITEM_SEPARATOR = System.getProperty("line.separator");
-	private static final String COMMA_SEPARATOR = ",";
+	static final String COMMA_SEPARATOR = ",";
+	static final String JSON_LINES_SEPARATOR = "\n";
 	private static final String WRITTEN_STATISTICS_NAME = "written";
 	private static final String RESTART_DATA_NAME = "current.count";
+	private static final String METRICS_NAME = "metrics.";
+	private static final int DEFAULT_ASYNC_BUFFER_SIZE = 64 * 1024;
+	private static final int DEFAULT_ASYNC_QUEUE_CAPACITY = 16;
+	private static final int DEFAULT_PARALLEL_SERIALIZATION_THRESHOLD = 1000;
+	private static final int DEFAULT_SERIALIZATION_SLICE_SIZE = 128;
+	private static final int DEFAULT_COMPRESSION_BLOCK_SIZE = 1024 * 1024;
+	private static final int DEFAULT_MAPPED_REGION_SIZE = 64 * 1024 * 1024;
+	private static final int DEFAULT_UTF8_BUFFER_SIZE = 64 * 1024;
+	private static final int DEFAULT_INDEX_INTERVAL = 1000;
+	private static final ForceSyncPolicy ALWAYS_FORCE_SYNC_POLICY = new AlwaysForceSyncPolicy();
 	private String encoding = OutputState.DEFAULT_CHARSET;
 
-	private OutputState state;
+	private volatile OutputState state;
 	private Resource resource;
 	private boolean append = false;
 	private boolean forceSync = false;
+	private ForceSyncPolicy forceSyncPolicy;
 	private boolean saveState = true;
 	private boolean shouldDeleteIfExists = true;
 	private boolean shouldDeleteIfEmpty = false;
 	private boolean transactional = true;
+	private boolean streaming = false;
+	private boolean jsonLines = false;
+	private boolean fragment = false;
+	private boolean async = false;
+	private int asyncBufferSize = DEFAULT_ASYNC_BUFFER_SIZE;
+	private int asyncQueueCapacity = DEFAULT_ASYNC_QUEUE_CAPACITY;
+	private boolean concurrent = false;
+	private boolean compressed = false;
+	private int compressionBlockSize = DEFAULT_COMPRESSION_BLOCK_SIZE;
+	private ExecutorService compressionExecutor;
+	private boolean mapped = false;
+	private int mappedRegionSize = DEFAULT_MAPPED_REGION_SIZE;
+	private boolean directUtf8 = false;
+	private DirectBufferPool bufferPool;
+	private boolean indexed = false;
+	private int indexInterval = DEFAULT_INDEX_INTERVAL;
+	private JsonOutputFormat outputFormat = JsonOutputFormat.JSON;
+	private ExecutorService serializationExecutor;
+	private int parallelSerializationThreshold = DEFAULT_PARALLEL_SERIALIZATION_THRESHOLD;
+	private int serializationSliceSize = DEFAULT_SERIALIZATION_SLICE_SIZE;
+	private JsonItemWriterMetrics metrics;
+	private String metricsObjectName;
+	private ObjectName registeredObjectName;
+	private ExecutionContext metricsExecutionContext;
 	
 	private static String defaultRootNodeValue = null;
 
@@ -91,6 +153,8 @@ public class JsonFlatFileItemWriter<T> extends AbstractItemStreamItemWriter<T>
 	 * It's important because the comma should NOT be written 
 	 * when we already wrote the last item of the process and are about close the root node
 	 * 
+	 * In json lines mode, there is no comma: every item is followed by a line feed.
+	 * 
 	 */
 	@Override
 	public void write(List<? extends T> items) throws Exception {
@@ -101,38 +165,191 @@ public class JsonFlatFileItemWriter<T> extends AbstractItemStreamItemWriter<T>
 		if(logger.isDebugEnabled()){
 			logger.debug("Writing to flat file with {} items.", items.size());		
 		}
+		if (metrics == null) {
+			writeChunk(items);
+			return;
+		}
+		long start = System.nanoTime();
+		long blockedStart = metrics.getCurrentThreadBlockedNanos();
+		writeChunk(items);
+		long blockedNanos = metrics.getCurrentThreadBlockedNanos() - blockedStart;
+		metrics.recordChunk(items.size(), System.nanoTime() - start - blockedNanos);
+	}
+
+	private void writeChunk(List<? extends T> items) throws Exception {
 		OutputState state = getOutputState();
-		StringBuilder jsonOutput = new StringBuilder();
-		int jsonItemCount = 0;
-		Iterator<? extends T> it = items.iterator();
-		while (it.hasNext()) {
-			if (it.hasNext() && jsonItemCount == 0 && state.jsonObjectsWritten > 0) {
-				jsonOutput.append(itemSeparator);
+		if (concurrent) {
+			writeConcurrent(items, state);
+			return;
+		}
+		state.restoreCountOnRollback();
+		if (serializationExecutor != null && items.size() >= parallelSerializationThreshold) {
+			writeParallel(items, state);
+			return;
+		}
+		ItemPositions positions = state.getIndexedPositions(items.size());
+		try {
+			// the serializer was flushed by the previous chunk: nothing is left between it and the position
+			long chunkStart = positions == null ? 0 : state.position();
+			state.serializer.write(items, state.jsonObjectsWritten, positions);
+			if (positions != null) {
+				state.writeIndex(positions, chunkStart);
 			}
-			T item = it.next();
-			
-			jsonOutput.append(jsonItemAggregator.aggregate(item));
-			if (it.hasNext()) {
-				jsonOutput.append(itemSeparator);
+			state.serializer.flush();
+		} catch (IOException e) {
+			state.serializer.discard();
+			throw new WriteFailedException(
+					"Could not write data.  The file may be corrupt.", e);
+		}
+		state.jsonObjectsWritten += items.size();
+	}
+
+	/**
+	 * Concurrent version of the write logic: the chunk is serialized and encoded by the calling thread without
+	 * any lock, as a run of items with no leading separator. The run is appended to the output when the state of
+	 * the chunk transaction is saved, or before it commits (immediately without transaction), and the leading
+	 * separator is only decided at that point, so chunks committed in any order produce a valid document. A
+	 * chunk rolled back after being appended is truncated from the output.
+	 * 
+	 * @param items
+	 * @param state
+	 */
+	private void writeConcurrent(List<? extends T> items, final OutputState state) {
+		if (items.isEmpty()) {
+			return;
+		}
+		ItemPositions positions = state.isIndexed() ? new ItemPositions(0, 1) : null;
+		String jsonOutput = state.stringSerializer.serialize(items, 0, 0, positions);
+		if (positions != null) {
+			positions.toBytePositions(jsonOutput, state.getCharset());
+		}
+		PendingAppend pendingAppend = new PendingAppend(
+				jsonOutput.getBytes(state.getCharset()), items.size(), positions);
+		if (transactional && TransactionSynchronizationManager.isSynchronizationActive()) {
+			state.getTransactionAppends().pendingAppends.add(pendingAppend);
+		} else {
+			try {
+				state.append(Collections.singletonList(pendingAppend));
+			} catch (IOException e) {
+				throw new WriteFailedException(
+						"Could not write data.  The file may be corrupt.", e);
 			}
-			jsonItemCount++;
+		}
+	}
+
+	/**
+	 * Parallel version of the write logic: the chunk is cut into slices of consecutive items, each slice is
+	 * serialized into its own buffer by the serialization executor, then the buffers are written in the
+	 * original order. The separator rules are the same as in the default mode.
+	 * 
+	 * @param items
+	 * @param state
+	 */
+	private void writeParallel(List<? extends T> items, OutputState state) throws Exception {
+		final StringChunkSerializer<T> stringSerializer = state.stringSerializer;
+		final long jsonObjectsWritten = state.jsonObjectsWritten;
+		ItemPositions positions = state.getIndexedPositions(items.size());
+		List<Future<String>> slices = new ArrayList<>();
+		List<ItemPositions> slicePositions = new ArrayList<>();
+		for (int start = 0; start < items.size(); start += serializationSliceSize) {
+			final int firstIndex = start;
+			final List<? extends T> slice = items.subList(start, Math.min(start + serializationSliceSize, items.size()));
+			// each task fills its own positions, read once its future is done
+			final ItemPositions sliceItemPositions = positions == null ? null
+					: new ItemPositions(jsonObjectsWritten, indexInterval);
+			slicePositions.add(sliceItemPositions);
+			slices.add(serializationExecutor.submit(new Callable<String>() {
+				@Override
+				public String call() {
+					return stringSerializer.serialize(slice, firstIndex, jsonObjectsWritten, sliceItemPositions);
+				}
+			}));
 		}
 		try {
-			state.write(jsonOutput.toString());
+			long chunkStart = positions == null ? 0 : state.position();
+			long sliceStart = 0;
+			for (int i = 0; i < slices.size(); i++) {
+				String jsonOutput = slices.get(i).get();
+				if (positions != null) {
+					slicePositions.get(i).toBytePositions(jsonOutput, state.getCharset());
+					positions.addAll(slicePositions.get(i), sliceStart);
+					sliceStart += ItemPositions.encodedLength(jsonOutput, 0, jsonOutput.length(), state.getCharset());
+				}
+				state.serializer.writeSerialized(jsonOutput);
+			}
+			if (positions != null) {
+				state.writeIndex(positions, chunkStart);
+			}
+			state.serializer.flush();
 		} catch (IOException e) {
+			state.serializer.discard();
 			throw new WriteFailedException(
 					"Could not write data.  The file may be corrupt.", e);
+		} catch (ExecutionException e) {
+			state.serializer.discard();
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		} finally {
+			for (Future<String> slice : slices) {
+				slice.cancel(false);
+			}
 		}
-		state.jsonObjectsWritten += jsonItemCount;
-
+		state.jsonObjectsWritten += items.size();
 	}
 
+
 	@Override
 	public void afterPropertiesSet() throws Exception {
 		Assert.notNull(jsonItemAggregator, "A JsonItemAggregator must be provided.");
+		if (metricsObjectName != null && metrics == null) {
+			metrics = new JsonItemWriterMetrics();
+		}
 		if (append) {
 			shouldDeleteIfExists = false;
 		}
+		if (async) {
+			Assert.isTrue(asyncBufferSize > 0, "The async buffer size must be positive.");
+			Assert.isTrue(asyncQueueCapacity > 0, "The async queue capacity must be positive.");
+		}
+		if (concurrent) {
+			Assert.isTrue(!async && !streaming, "The concurrent mode can be combined neither with the async nor with the streaming mode.");
+			// each thread of the step already serializes its own chunk
+			Assert.isNull(serializationExecutor, "The concurrent mode does not support the parallel serialization.");
+		}
+		if (compressed) {
+			Assert.isTrue(!async && !concurrent, "The compressed mode can be combined neither with the async nor with the concurrent mode.");
+			Assert.isTrue(compressionBlockSize > 0, "The compression block size must be positive.");
+		}
+		if (directUtf8) {
+			Assert.isTrue(!async && !concurrent && !compressed && !mapped, "The direct UTF-8 mode can be combined neither with the async, the concurrent, the compressed nor the mapped mode.");
+		}
+		if (mapped) {
+			Assert.isTrue(!async && !concurrent && !compressed, "The mapped mode can be combined neither with the async, the concurrent nor the compressed mode.");
+			Assert.isTrue(mappedRegionSize > 0, "The mapped region size must be positive.");
+		}
+		if (indexed) {
+			Assert.isTrue(!compressed && !append, "The offset index can be combined neither with the compressed output nor with append.");
+			Assert.isTrue(indexInterval > 0, "The index interval must be positive.");
+		}
+		Assert.notNull(outputFormat, "The output format must be set.");
+		if (outputFormat.isBinary()) {
+			Assert.isTrue(!async && !concurrent && !compressed && !mapped && !jsonLines && !fragment,
+					"The binary output formats can be combined neither with the async, the concurrent, the compressed, the mapped, the json lines nor the fragment mode.");
+			Assert.isNull(serializationExecutor, "The binary output formats do not support the parallel serialization.");
+		}
+		if (bufferPool != null) {
+			Assert.isTrue(directUtf8 || outputFormat.isBinary(), "The buffer pool needs the direct UTF-8 mode or a binary output format.");
+		}
+		if (serializationExecutor != null) {
+			Assert.isTrue(serializationSliceSize > 0, "The serialization slice size must be positive.");
+		}
+		if (jsonLines) {
+			// a pretty printed item would span several lines
+			Assert.isTrue(!jsonItemAggregator.isPrettyPrint(),
+					"The json lines mode needs an aggregator which does not pretty print the items.");
+		}
 	}
 
 	@Override
@@ -164,6 +381,285 @@ public class JsonFlatFileItemWriter<T> extends AbstractItemStreamItemWriter<T>
 		this.shouldDeleteIfExists = shouldDeleteIfExists;
 	}
 
+	/**
+	 * Flag to indicate that writing to the buffer should be delayed if a
+	 * transaction is active. Defaults to true.
+	 * 
+	 * @param transactional
+	 */
+	public void setTransactional(boolean transactional) {
+		this.transactional = transactional;
+	}
+
+	/**
+	 * Flag to indicate that changes should be force-synced to disk on each commit, with an
+	 * {@link AlwaysForceSyncPolicy}. Ignored when a force sync policy is set. Default is false.
+	 * 
+	 * @param forceSync
+	 */
+	public void setForceSync(boolean forceSync) {
+		this.forceSync = forceSync;
+	}
+
+	/**
+	 * Policy deciding when the output is forced to the device: after every commit, every n commits or t
+	 * milliseconds ({@link IntervalForceSyncPolicy}), or in group commits shared by several writers
+	 * ({@link GroupCommitForceSyncPolicy}). Default is null: the output is never forced, unless
+	 * {@link #setForceSync(boolean)} is set.
+	 * 
+	 * @param forceSyncPolicy
+	 */
+	public void setForceSyncPolicy(ForceSyncPolicy forceSyncPolicy) {
+		this.forceSyncPolicy = forceSyncPolicy;
+	}
+
+	/**
+	 * When set to true, the output is written as json lines (NDJSON): one compact json object per line,
+	 * with neither root node nor separator. Such a file can be appended to, restarted and split on line
+	 * boundaries without any bookkeeping. The json item separator and the header/footer callback are ignored.
+	 * The aggregator must not pretty print the items. Default is false.
+	 * 
+	 * @param jsonLines
+	 */
+	public void setJsonLines(boolean jsonLines) {
+		this.jsonLines = jsonLines;
+	}
+
+	/**
+	 * When set to true, the writer only outputs the comma separated items, without root node nor header/footer.
+	 * It is meant for partitioned steps: each partition writes its own fragment, and the fragments are then
+	 * assembled into a single json document by {@link JsonFragmentMergeTasklet}. Default is false.
+	 * 
+	 * @param fragment
+	 */
+	public void setFragment(boolean fragment) {
+		this.fragment = fragment;
+	}
+
+	/**
+	 * When set to true, the output is handed over to a dedicated I/O thread through a bounded queue, so that
+	 * serialization overlaps with disk writes. Inside a transaction, the commit waits for the output of the
+	 * chunk to be written, and a rollback truncates the file back to the last commit. This mode replaces the
+	 * transactional buffering of the default mode. Default is false.
+	 * 
+	 * @param async
+	 */
+	public void setAsync(boolean async) {
+		this.async = async;
+	}
+
+	/**
+	 * Number of characters buffered by the chunk thread before being handed over to the I/O thread, in async mode.
+	 * 
+	 * @param asyncBufferSize
+	 */
+	public void setAsyncBufferSize(int asyncBufferSize) {
+		this.asyncBufferSize = asyncBufferSize;
+	}
+
+	/**
+	 * Number of buffers waiting for the I/O thread before the chunk thread blocks, in async mode.
+	 * 
+	 * @param asyncQueueCapacity
+	 */
+	public void setAsyncQueueCapacity(int asyncQueueCapacity) {
+		this.asyncQueueCapacity = asyncQueueCapacity;
+	}
+
+	/**
+	 * When set to true, the writer supports concurrent calls to {@link #write(List)}, as in a multi-threaded step.
+	 * Each thread serializes its chunk without lock, only the final append of the serialized chunk to the output
+	 * is serialized between threads. With a transaction, the chunk is appended when the step saves its state, or
+	 * before the commit, and no other chunk is appended until it completes: the saved restart offset is always
+	 * the end of the committed chunks. It cannot be combined with a serialization executor. Default is false.
+	 * 
+	 * @param concurrent
+	 */
+	public void setConcurrent(boolean concurrent) {
+		this.concurrent = concurrent;
+	}
+
+	/**
+	 * When set to true, the output is gzip compressed as a sequence of independent gzip members, closed at each
+	 * chunk. The restart offset is always a member boundary, so a restarted or appended file stays a valid
+	 * gzip file, readable as a single stream by any gzip reader. Default is false.
+	 * 
+	 * @param compressed
+	 */
+	public void setCompressed(boolean compressed) {
+		this.compressed = compressed;
+	}
+
+	/**
+	 * Maximum number of characters compressed into a single gzip member. Large chunks are cut into several
+	 * members, which can then be compressed in parallel. Default is 1048576.
+	 * 
+	 * @param compressionBlockSize
+	 */
+	public void setCompressionBlockSize(int compressionBlockSize) {
+		this.compressionBlockSize = compressionBlockSize;
+	}
+
+	/**
+	 * Executor compressing the members of a chunk in parallel. Default is null: members are compressed on the
+	 * calling thread.
+	 * 
+	 * @param compressionExecutor
+	 */
+	public void setCompressionExecutor(ExecutorService compressionExecutor) {
+		this.compressionExecutor = compressionExecutor;
+	}
+
+	/**
+	 * When set to true, the output is encoded straight into the file mapped in memory by windows, instead of
+	 * going through a buffered writer and a write per flush. The file is pre-allocated window by window and
+	 * truncated to the end of the output on close and on restart. In a transaction, a rollback discards the
+	 * output of the chunk. Default is false.
+	 * 
+	 * @param mapped
+	 */
+	public void setMapped(boolean mapped) {
+		this.mapped = mapped;
+	}
+
+	/**
+	 * Number of bytes mapped at once in mapped mode. Default is 67108864.
+	 * 
+	 * @param mappedRegionSize
+	 */
+	public void setMappedRegionSize(int mappedRegionSize) {
+		this.mappedRegionSize = mappedRegionSize;
+	}
+
+	/**
+	 * When set to true and the encoding is UTF-8, items are serialized by a byte oriented Jackson generator
+	 * into a reusable byte buffer written as is to the file channel: no String is built and no charset
+	 * encoder is involved. Implies the streaming write logic. Other encodings keep the Writer path. Default is
+	 * false.
+	 * 
+	 * Note that the byte generator escapes the characters outside of the basic multilingual plane as surrogate
+	 * pairs (\uD83D\uDE00), which any json parser reads back as the original character.
+	 * 
+	 * @param directUtf8
+	 */
+	public void setDirectUtf8(boolean directUtf8) {
+		this.directUtf8 = directUtf8;
+	}
+
+	/**
+	 * Pool of direct buffers the chunks are serialized into, in direct UTF-8 mode and with the binary formats.
+	 * The buffer of a chunk is taken when it starts and given back once written to the file, instead of each
+	 * writer growing its own heap buffer. Can be shared by several writers. Default is null.
+	 * 
+	 * @param bufferPool
+	 */
+	public void setBufferPool(DirectBufferPool bufferPool) {
+		this.bufferPool = bufferPool;
+	}
+
+	/**
+	 * When set to true, the byte offset of every {@link #setIndexInterval(int) n-th} item is written, as the items
+	 * are written, to a binary {@link OffsetIndex} next to the output (same name followed by ".idx"). Readers can
+	 * then seek to an item, or split the output on item boundaries, without scanning it, and a restart checks
+	 * its offset against the index. Not available with the compressed output, nor when appending. Default is
+	 * false.
+	 * 
+	 * @param indexed
+	 */
+	public void setIndexed(boolean indexed) {
+		this.indexed = indexed;
+	}
+
+	/**
+	 * Number of items between two entries of the offset index. Default is 1000.
+	 * 
+	 * @param indexInterval
+	 */
+	public void setIndexInterval(int indexInterval) {
+		this.indexInterval = indexInterval;
+	}
+
+	/**
+	 * Format of the output: json text, or the Smile or CBOR binary json. The binary formats are written by the
+	 * streaming write logic into a reusable byte buffer, as in direct UTF-8 mode, with the same header, footer
+	 * and restart behaviour; there are no separators between the items, and the encoding is ignored. They can be
+	 * combined neither with the async, concurrent, compressed, mapped, json lines or fragment modes, nor with the
+	 * parallel serialization. Default is {@link JsonOutputFormat#JSON}.
+	 * 
+	 * @param outputFormat
+	 */
+	public void setOutputFormat(JsonOutputFormat outputFormat) {
+		this.outputFormat = outputFormat;
+	}
+
+	/**
+	 * Executor serializing the items of large chunks in parallel, e.g. a {@link java.util.concurrent.ForkJoinPool}.
+	 * Items are still written in their original order. The aggregator must be thread-safe, which
+	 * {@link JsonItemAggregator} is. Default is null: items are serialized on the calling thread.
+	 * 
+	 * @param serializationExecutor
+	 */
+	public void setSerializationExecutor(ExecutorService serializationExecutor) {
+		this.serializationExecutor = serializationExecutor;
+	}
+
+	/**
+	 * Minimum number of items of a chunk for it to be serialized in parallel. Default is 1000.
+	 * 
+	 * @param parallelSerializationThreshold
+	 */
+	public void setParallelSerializationThreshold(int parallelSerializationThreshold) {
+		this.parallelSerializationThreshold = parallelSerializationThreshold;
+	}
+
+	/**
+	 * Number of consecutive items serialized by a single task when serializing in parallel. Default is 128.
+	 * 
+	 * @param serializationSliceSize
+	 */
+	public void setSerializationSliceSize(int serializationSliceSize) {
+		this.serializationSliceSize = serializationSliceSize;
+	}
+
+	/**
+	 * When set to true, items are serialized straight into a single Jackson generator bound to the output
+	 * writer instead of being concatenated into a String per chunk. Default is false.
+	 * 
+	 * @param streaming
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+
+	/**
+	 * Metrics the writer records its activity into: items and bytes written, serialization, I/O and force
+	 * times, chunk and item sizes. They are summarized into the execution context under "metrics.*" keys on
+	 * each update and on close. Default is null: nothing is measured.
+	 * 
+	 * @param metrics
+	 */
+	public void setMetrics(JsonItemWriterMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * JMX object name the metrics are registered under in the platform MBean server while the writer is open,
+	 * e.g. "fr.soat.java.spring_batch:type=JsonFlatFileItemWriter,name=persons". Metrics are created if none
+	 * are set. Default is null: the metrics, if any, are not registered.
+	 * 
+	 * @param metricsObjectName
+	 */
+	public void setMetricsObjectName(String metricsObjectName) {
+		this.metricsObjectName = metricsObjectName;
+	}
+
+	/**
+	 * Metrics of the writer, null if they are neither set nor registered to JMX.
+	 */
+	public JsonItemWriterMetrics getMetrics() {
+		return metrics;
+	}
+
 	/**
 	 * Initialize the reader. This method may be called multiple times before
 	 * close is called.
@@ -177,6 +673,10 @@ public class JsonFlatFileItemWriter<T> extends AbstractItemStreamItemWriter<T>
 		if (!getOutputState().isInitialized()) {
 			this.doOpen(executionContext);
 		}
+		if (metrics != null) {
+			metricsExecutionContext = executionContext;
+			registerMetrics();
+		}
 	}
 
 	@Override
@@ -187,19 +687,97 @@ public class JsonFlatFileItemWriter<T> extends AbstractItemStreamItemWriter<T>
 		}
 		Assert.notNull(executionContext, "ExecutionContext must not be null");
 		if (saveState) {
+			if (concurrent) {
+				try {
+					state.saveConcurrentState(executionContext);
+				} catch (IOException e) {
+					throw new ItemStreamException(
+							"ItemStream does not return current position properly",
+							e);
+				}
+			} else {
+				saveState(executionContext);
+			}
+		}
+		if (metrics != null) {
+			saveMetrics(executionContext);
+		}
+	}
+
+	/**
+	 * The step saves its execution context before closing the streams: the summary is refreshed on every update
+	 * to be part of the last saved context, then once more on close.
+	 * 
+	 * @param executionContext
+	 */
+	private void saveMetrics(ExecutionContext executionContext) {
+		if (state != null) {
 			try {
-				executionContext.putLong(
-						getExecutionContextKey(RESTART_DATA_NAME),
-						state.position());
+				metrics.setCurrentOffset(state.position());
 			} catch (IOException e) {
 				throw new ItemStreamException(
 						"ItemStream does not return current position properly",
 						e);
 			}
+		}
+		executionContext.putLong(getExecutionContextKey(METRICS_NAME + "items"), metrics.getItemsWritten());
+		executionContext.putLong(getExecutionContextKey(METRICS_NAME + "chunks"), metrics.getChunksWritten());
+		executionContext.putLong(getExecutionContextKey(METRICS_NAME + "bytes"), metrics.getBytesWritten());
+		executionContext.putLong(getExecutionContextKey(METRICS_NAME + "offset"), metrics.getCurrentOffset());
+		executionContext.putLong(getExecutionContextKey(METRICS_NAME + "serialization.ms"),
+				metrics.getSerializationTime());
+		executionContext.putLong(getExecutionContextKey(METRICS_NAME + "io.ms"), metrics.getIoTime());
+		executionContext.putLong(getExecutionContextKey(METRICS_NAME + "force.ms"), metrics.getForceTime());
+		executionContext.putLong(getExecutionContextKey(METRICS_NAME + "async.wait.ms"), metrics.getAsyncWaitTime());
+		executionContext.putLong(getExecutionContextKey(METRICS_NAME + "item.size.mean"),
+				metrics.getItemSizeMean());
+		executionContext.putLong(getExecutionContextKey(METRICS_NAME + "item.size.p99"),
+				metrics.getItemSizeP99());
+	}
+
+	private void registerMetrics() {
+		if (metricsObjectName == null || registeredObjectName != null) {
+			return;
+		}
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName(metricsObjectName);
+			// shared metrics may already be registered by another writer
+			if (!server.isRegistered(objectName)) {
+				server.registerMBean(metrics, objectName);
+				registeredObjectName = objectName;
+			}
+		} catch (JMException e) {
+			throw new ItemStreamException("Could not register the metrics as " + metricsObjectName, e);
+		}
+	}
+
+	private void unregisterMetrics() {
+		if (registeredObjectName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredObjectName);
+		} catch (JMException e) {
+			logger.warn("Could not unregister the metrics {}", registeredObjectName, e);
+		} finally {
+			registeredObjectName = null;
+		}
+	}
+
+	private void saveState(ExecutionContext executionContext) {
+		try {
 			executionContext.putLong(
-					getExecutionContextKey(WRITTEN_STATISTICS_NAME),
-					state.jsonObjectsWritten);
+					getExecutionContextKey(RESTART_DATA_NAME),
+					state.position());
+		} catch (IOException e) {
+			throw new ItemStreamException(
+					"ItemStream does not return current position properly",
+					e);
 		}
+		executionContext.putLong(
+				getExecutionContextKey(WRITTEN_STATISTICS_NAME),
+				state.jsonObjectsWritten);
 	}
 
 	/**
@@ -217,24 +795,81 @@ public class JsonFlatFileItemWriter<T> extends AbstractItemStreamItemWriter<T>
 			outputState.restoreFrom(executionContext);
 		}
 		try {
-			outputState.initializeBufferedWriter();
+			outputState.initializeOutput();
 		} catch (IOException ioe) {
 			throw new ItemStreamException("Failed to initialize writer", ioe);
 		}
 		if (outputState.lastMarkedByteOffsetPosition == 0
 				&& !outputState.appending) {
-			if (headerFooterCallback != null) {
-				try {
-					headerFooterCallback
-							.writeHeader(outputState.outputBufferedWriter);					
-					outputState.write(DEFAULT_ITEM_SEPARATOR);
-				} catch (IOException e) {
-					throw new ItemStreamException(
-							"Could not write headers.  The file may be corrupt.",
-							e);
+			try {
+				byte[] header = getHeader(outputState);
+				if (header.length > 0) {
+					outputState.output.writeHeader(header);
 				}
+			} catch (IOException e) {
+				throw new ItemStreamException(
+						"Could not write headers.  The file may be corrupt.",
+						e);
+			}
+		}
+	}
+
+	/**
+	 * The header of a new file, encoded: the header callback followed by the @DEFAULT_ITEM_SEPARATOR, or the
+	 * Smile header and the tokens of the header callback for the binary formats. It goes straight to the file,
+	 * even when the file is opened within a chunk transaction.
+	 */
+	private byte[] getHeader(OutputState outputState) throws IOException {
+		if (outputFormat.isBinary()) {
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			JsonGenerator jsonGenerator = outputFormat.createGenerator(output, true);
+			if (writesHeaderAndFooter()) {
+				headerFooterCallback.writeHeader(jsonGenerator);
 			}
+			jsonGenerator.flush();
+			return output.toByteArray();
 		}
+		if (!writesHeaderAndFooter()) {
+			return new byte[0];
+		}
+		return renderHeader(headerFooterCallback).getBytes(outputState.getCharset());
+	}
+
+	/**
+	 * The header of a text file: the header callback followed by the @DEFAULT_ITEM_SEPARATOR. Also written by
+	 * the {@link JsonFragmentMergeTasklet} in front of the merged fragments.
+	 */
+	static String renderHeader(JsonHeaderFooterCallback headerFooterCallback) throws IOException {
+		StringWriter header = new StringWriter();
+		headerFooterCallback.writeHeader(header);
+		header.write(DEFAULT_ITEM_SEPARATOR);
+		return header.toString();
+	}
+
+	/**
+	 * The footer of a text file, written by the footer callback.
+	 */
+	static String renderFooter(JsonHeaderFooterCallback headerFooterCallback) throws IOException {
+		StringWriter footer = new StringWriter();
+		headerFooterCallback.writeFooter(footer);
+		return footer.toString();
+	}
+
+	/**
+	 * The footer of the binary formats is written by another generator than the header, possibly after a
+	 * restart: it is cut from a header and footer written together, the generator having to see the start of
+	 * the array and the object it closes.
+	 */
+	private byte[] getBinaryFooter() throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		JsonGenerator jsonGenerator = outputFormat.createGenerator(output, false);
+		headerFooterCallback.writeHeader(jsonGenerator);
+		jsonGenerator.flush();
+		int headerLength = output.size();
+		headerFooterCallback.writeFooter(jsonGenerator);
+		jsonGenerator.flush();
+		byte[] bytes = output.toByteArray();
+		return Arrays.copyOfRange(bytes, headerLength, bytes.length);
 	}
 
 	/**
@@ -244,48 +879,99 @@ public class JsonFlatFileItemWriter<T> extends AbstractItemStreamItemWriter<T>
 	public void close() {
 		if (state != null) {
 			try {
-				if (headerFooterCallback != null
-						&& state.outputBufferedWriter != null) {
-
-					headerFooterCallback.writeFooter(state.outputBufferedWriter);
-					state.outputBufferedWriter.flush();
+				if (writesHeaderAndFooter()
+						&& state.output != null) {
+
+					state.serializer.flush();
+					if (outputFormat.isBinary()) {
+						state.output.getOutputStream().write(getBinaryFooter());
+					} else {
+						state.output.getWriter().write(renderFooter(headerFooterCallback));
+					}
+					state.output.flush();
 				}
 			} catch (IOException e) {
 				throw new ItemStreamException(
 						"Failed to write footer before closing", e);
 			} finally {
+				if (metrics != null && metricsExecutionContext != null) {
+					saveMetrics(metricsExecutionContext);
+				}
 				state.close();
 				if (state.jsonObjectsWritten == 0 && shouldDeleteIfEmpty) {
 					try {
 						resource.getFile().delete();
+						if (indexed) {
+							OffsetIndex.getIndexFile(resource.getFile()).delete();
+						}
 					} catch (IOException e) {
 						throw new ItemStreamException(
 								"Failed to delete empty file on close", e);
 					}
 				}
 				state = null;
+				metricsExecutionContext = null;
+				unregisterMetrics();
 			}
 		}
 	}
 
+	/**
+	 * Byte offset of the output, including the chunk being written.
+	 */
+	long getPosition() throws IOException {
+		return state == null ? 0 : state.position();
+	}
+
+	boolean isConcurrent() {
+		return concurrent;
+	}
+
+	/**
+	 * Whether the output of a rolled back transaction is dropped (buffered until commit, or truncated).
+	 */
+	boolean discardsOutputOnRollback() {
+		return transactional || async;
+	}
+
+	private ForceSyncPolicy getForceSyncPolicy() {
+		if (forceSyncPolicy == null && forceSync) {
+			return ALWAYS_FORCE_SYNC_POLICY;
+		}
+		return forceSyncPolicy;
+	}
+
+	private boolean writesHeaderAndFooter() {
+		return headerFooterCallback != null && !jsonLines && !fragment;
+	}
+
 	private OutputState getOutputState() {
 		if (state == null) {
-			File file;
-			try {
-				file = resource.getFile();
-			} catch (IOException e) {
-				throw new ItemStreamException(
-						"Could not convert resource to file: [" + resource
-								+ "]", e);
+			synchronized (this) {
+				if (state == null) {
+					state = createOutputState();
+				}
 			}
-			Assert.state(!file.exists() || file.canWrite(),
-					"Resource is not writable: [" + resource + "]");
-			state = new OutputState();
-			state.setDeleteIfExists(shouldDeleteIfExists);
-			state.setAppendAllowed(append);
-			state.setEncoding(encoding);
 		}
 		return state;
+	}
+
+	private OutputState createOutputState() {
+		File file;
+		try {
+			file = resource.getFile();
+		} catch (IOException e) {
+			throw new ItemStreamException(
+					"Could not convert resource to file: [" + resource
+							+ "]", e);
+		}
+		Assert.state(!file.exists() || file.canWrite(),
+				"Resource is not writable: [" + resource + "]");
+		OutputState outputState = new OutputState();
+		outputState.setDeleteIfExists(shouldDeleteIfExists);
+		outputState.setAppendAllowed(append);
+		outputState.setEncoding(encoding);
+		return outputState;
 	}	
 
 	public void setHeaderFooterCallback(JsonHeaderFooterCallback headerFooterCallback) {
@@ -294,6 +980,41 @@ public class JsonFlatFileItemWriter<T> extends AbstractItemStreamItemWriter<T>
 
 
 
+	/**
+	 * Serialized run of items waiting to be appended in concurrent mode.
+	 */
+	private static class PendingAppend {
+
+		final byte[] jsonOutput;
+
+		final int jsonItemCount;
+
+		// byte positions of all the items, null when not indexing
+		final ItemPositions positions;
+
+		PendingAppend(byte[] jsonOutput, int jsonItemCount, ItemPositions positions) {
+			this.jsonOutput = jsonOutput;
+			this.jsonItemCount = jsonItemCount;
+			this.positions = positions;
+		}
+	}
+
+	/**
+	 * Runs of a chunk transaction in concurrent mode. Once the transaction has appended a run, it holds the
+	 * append lock until it completes, so that a rollback can truncate the output back to where it started.
+	 */
+	private static class TransactionAppends {
+
+		// serialized runs not appended yet
+		final List<PendingAppend> pendingAppends = new ArrayList<>();
+
+		boolean holdsLock = false;
+
+		long startPosition;
+
+		long startCount;
+	}
+
 	/**
 	 * Encapsulates the runtime state of the writer. All state changing
 	 * operations on the writer go through this class.
@@ -302,10 +1023,26 @@ public class JsonFlatFileItemWriter<T> extends AbstractItemStreamItemWriter<T>
 		// default encoding for writing to output files - set to UTF-8.
 		private static final String DEFAULT_CHARSET = "UTF-8";
 
-		private FileOutputStream os;
+		private Closeable os;
+
+		// The output engine over the file channel that is actually written, chosen by the mode of the writer
+		ChannelOutput output;
+
+		// The write logic of the writer, over the output
+		ChunkSerializer<T> serializer;
+
+		// Serializes the slices of the parallel mode and the runs of the concurrent mode, or the chunks by default
+		StringChunkSerializer<T> stringSerializer;
+
+		// Index of the item offsets, only used when indexing
+		private OffsetIndex index;
+
+		// Serializes the appends of the concurrent mode
+		private final ReentrantLock appendLock = new ReentrantLock();
 
-		// The bufferedWriter over the file channel that is actually written
-		Writer outputBufferedWriter;
+		private Charset charset;
+
+		private byte[] itemSeparatorBytes;
 
 		FileChannel fileChannel;
 
@@ -332,21 +1069,11 @@ public class JsonFlatFileItemWriter<T> extends AbstractItemStreamItemWriter<T>
 		 * long integer.
 		 */
 		public long position() throws IOException {
-			long pos = 0;
-
-			if (fileChannel == null) {
+			if (output == null) {
 				return 0;
 			}
-
-			outputBufferedWriter.flush();
-			pos = fileChannel.position();
-			if (transactional) {
-				pos += ((TransactionAwareBufferedWriter) outputBufferedWriter)
-						.getBufferSize();
-			}
-
-			return pos;
-
+			output.flush();
+			return output.position();
 		}
 
 		/**
@@ -395,23 +1122,27 @@ public class JsonFlatFileItemWriter<T> extends AbstractItemStreamItemWriter<T>
 
 			initialized = false;
 			restarted = false;
+			serializer = null;
+			stringSerializer = null;
 			try {
-				if (outputBufferedWriter != null) {
-					outputBufferedWriter.close();
+				if (output != null) {
+					output.close();
 				}
 			} catch (IOException ioe) {
 				throw new ItemStreamException(
 						"Unable to close the the ItemWriter", ioe);
 			} finally {
-				if (!transactional) {
-					closeStream();
-				}
+				output = null;
+				closeIndex();
 			}
 		}
 
 		private void closeStream() {
 			try {
 				if (fileChannel != null) {
+					if (getForceSyncPolicy() != null && fileChannel.isOpen()) {
+						getForceSyncPolicy().beforeClose(fileChannel);
+					}
 					fileChannel.close();
 				}
 			} catch (IOException ioe) {
@@ -429,17 +1160,284 @@ public class JsonFlatFileItemWriter<T> extends AbstractItemStreamItemWriter<T>
 			}
 		}
 
+		public synchronized Charset getCharset() {
+			if (charset == null) {
+				charset = Charset.forName(encoding);
+				itemSeparatorBytes = itemSeparator.getBytes(charset);
+			}
+			return charset;
+		}
+
 		/**
-		 * @param jsonObject
+		 * Appends serialized runs of items outside of any transaction. The bytes go straight to the file channel,
+		 * the output writer being only used for the header and footer.
+		 * 
+		 * @param appends
 		 * @throws IOException
 		 */
-		public void write(String jsonObject) throws IOException {
-			if (!initialized) {
-				initializeBufferedWriter();
+		public void append(List<PendingAppend> appends) throws IOException {
+			appendLock.lock();
+			try {
+				appendRuns(appends);
+				if (getForceSyncPolicy() != null) {
+					getForceSyncPolicy().afterWrite(fileChannel);
+				}
+			} finally {
+				appendLock.unlock();
 			}
+		}
 
-			outputBufferedWriter.write(jsonObject);
-			outputBufferedWriter.flush();
+		/**
+		 * Appends the runs, each one preceded by a separator unless it starts the output. Must be called under the
+		 * append lock.
+		 */
+		private void appendRuns(List<PendingAppend> appends) throws IOException {
+			getCharset();
+			for (PendingAppend pendingAppend : appends) {
+				if (!jsonLines && jsonObjectsWritten > 0) {
+					writeFully(itemSeparatorBytes);
+				}
+				if (pendingAppend.positions != null) {
+					long start = fileChannel.position();
+					for (int i = 0; i < pendingAppend.positions.size(); i++) {
+						index.put(jsonObjectsWritten + i, start + pendingAppend.positions.getPosition(i));
+					}
+				}
+				writeFully(pendingAppend.jsonOutput);
+				jsonObjectsWritten += pendingAppend.jsonItemCount;
+			}
+		}
+
+		private void writeFully(byte[] bytes) throws IOException {
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			while (buffer.hasRemaining()) {
+				fileChannel.write(buffer);
+			}
+		}
+
+		/**
+		 * Appends the pending runs of the transaction, taking the append lock if it does not hold it yet. The
+		 * lock is then held until the transaction completes.
+		 */
+		private void appendTransactionRuns(TransactionAppends transactionAppends) throws IOException {
+			if (!transactionAppends.holdsLock) {
+				appendLock.lock();
+				transactionAppends.holdsLock = true;
+				transactionAppends.startPosition = fileChannel.position();
+				transactionAppends.startCount = jsonObjectsWritten;
+			}
+			appendRuns(transactionAppends.pendingAppends);
+			transactionAppends.pendingAppends.clear();
+		}
+
+		/**
+		 * Truncates the runs appended by a rolled back transaction, and releases the append lock.
+		 */
+		private void completeTransactionRuns(TransactionAppends transactionAppends, int status) {
+			if (!transactionAppends.holdsLock) {
+				return;
+			}
+			try {
+				if (status != TransactionSynchronization.STATUS_COMMITTED && fileChannel.isOpen()) {
+					fileChannel.truncate(transactionAppends.startPosition);
+					fileChannel.position(transactionAppends.startPosition);
+					jsonObjectsWritten = transactionAppends.startCount;
+					if (index != null) {
+						index.truncate(jsonObjectsWritten);
+					}
+				}
+			} catch (IOException e) {
+				throw new WriteFailedException(
+						"Could not truncate output after rollback.  The file may be corrupt.", e);
+			} finally {
+				transactionAppends.holdsLock = false;
+				appendLock.unlock();
+			}
+		}
+
+		/**
+		 * Runs of the current transaction, appended when its state is saved or before it commits, and truncated
+		 * if it rolls back once appended.
+		 */
+		public TransactionAppends getTransactionAppends() {
+			TransactionAppends appends = (TransactionAppends) TransactionSynchronizationManager.getResource(this);
+			if (appends == null) {
+				final TransactionAppends transactionAppends = new TransactionAppends();
+				TransactionSynchronizationManager.bindResource(this, transactionAppends);
+				TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+					@Override
+					public void beforeCommit(boolean readOnly) {
+						try {
+							if (!transactionAppends.pendingAppends.isEmpty()) {
+								appendTransactionRuns(transactionAppends);
+							}
+							if (transactionAppends.holdsLock && getForceSyncPolicy() != null) {
+								getForceSyncPolicy().afterWrite(fileChannel);
+							}
+						} catch (IOException e) {
+							throw new WriteFailedException(
+									"Could not write data.  The file may be corrupt.", e);
+						}
+					}
+
+					@Override
+					public void afterCompletion(int status) {
+						TransactionSynchronizationManager.unbindResourceIfPossible(OutputState.this);
+						completeTransactionRuns(transactionAppends, status);
+					}
+				});
+				appends = transactionAppends;
+			}
+			return appends;
+		}
+
+		/**
+		 * Saves the position and count of the output. In a transaction, the runs of the chunk are appended first,
+		 * and the append lock is held until the transaction completes: no other chunk is appended before the
+		 * saved state is committed, and the saved state is truncated from the output if it rolls back.
+		 */
+		public void saveConcurrentState(ExecutionContext executionContext) throws IOException {
+			boolean inTransaction = transactional && TransactionSynchronizationManager.isSynchronizationActive();
+			if (inTransaction) {
+				appendTransactionRuns(getTransactionAppends());
+			} else {
+				appendLock.lock();
+			}
+			try {
+				executionContext.putLong(getExecutionContextKey(RESTART_DATA_NAME),
+						fileChannel == null ? 0 : fileChannel.position());
+				executionContext.putLong(getExecutionContextKey(WRITTEN_STATISTICS_NAME), jsonObjectsWritten);
+			} finally {
+				if (!inTransaction) {
+					appendLock.unlock();
+				}
+			}
+		}
+
+		/**
+		 * Whether the offsets of the items are written to an index.
+		 */
+		public boolean isIndexed() {
+			return index != null;
+		}
+
+		/**
+		 * Positions to record the sampled items of a chunk following the items written into, null if the chunk has
+		 * none or the output is not indexed.
+		 * 
+		 * @param itemCount items of the chunk
+		 */
+		public ItemPositions getIndexedPositions(int itemCount) {
+			if (index == null || itemCount == 0) {
+				return null;
+			}
+			long firstSampled = (jsonObjectsWritten + indexInterval - 1) / indexInterval * indexInterval;
+			if (firstSampled >= jsonObjectsWritten + itemCount) {
+				return null;
+			}
+			return new ItemPositions(jsonObjectsWritten, indexInterval);
+		}
+
+		/**
+		 * Writes the offsets of the sampled items of a chunk following the items written.
+		 * 
+		 * @param positions byte positions of the items in the chunk
+		 * @param chunkStart byte offset of the chunk
+		 * @throws IOException
+		 */
+		public void writeIndex(ItemPositions positions, long chunkStart) throws IOException {
+			for (int i = 0; i < positions.size(); i++) {
+				index.put(jsonObjectsWritten + positions.getItem(i), chunkStart + positions.getPosition(i));
+			}
+		}
+
+		/**
+		 * Opens the index of the output: a new one, or on restart the existing one, checked against the restart
+		 * point in constant time and truncated to the items written.
+		 * 
+		 * @param file the output file
+		 * @throws IOException
+		 */
+		private void openIndex(File file) throws IOException {
+			File indexFile = OffsetIndex.getIndexFile(file);
+			if (!restarted) {
+				index = OffsetIndex.create(indexFile, indexInterval);
+				return;
+			}
+			if (!indexFile.exists()) {
+				throw new ItemStreamException("Offset index not found for restart: [" + indexFile + "]");
+			}
+			index = OffsetIndex.openForUpdate(indexFile, indexInterval);
+			long entries = (jsonObjectsWritten + indexInterval - 1) / indexInterval;
+			if (index.getEntryCount() < entries) {
+				throw new ItemStreamException("Offset index [" + indexFile + "] does not cover the "
+						+ jsonObjectsWritten + " items written before restart");
+			}
+			if (entries > 0) {
+				long lastIndexed = index.getOffset(entries - 1);
+				if (lastIndexed >= lastMarkedByteOffsetPosition
+						|| (!outputFormat.isBinary() && !startsItem(file, lastIndexed))) {
+					throw new ItemStreamException("Restart offset " + lastMarkedByteOffsetPosition
+							+ " does not match offset index [" + indexFile + "]");
+				}
+			}
+			index.truncate(jsonObjectsWritten);
+		}
+
+		/**
+		 * Whether the byte at the given offset of the output may start a json value.
+		 */
+		private boolean startsItem(File file, long offset) throws IOException {
+			RandomAccessFile output = new RandomAccessFile(file, "r");
+			try {
+				if (offset >= output.length()) {
+					return false;
+				}
+				output.seek(offset);
+				return "{[\"-0123456789tfn".indexOf(output.read()) >= 0;
+			} finally {
+				output.close();
+			}
+		}
+
+		private void closeIndex() {
+			if (index == null) {
+				return;
+			}
+			try {
+				index.truncate(jsonObjectsWritten);
+				if (getForceSyncPolicy() != null) {
+					index.force();
+				}
+				index.close();
+			} catch (IOException ioe) {
+				throw new ItemStreamException(
+						"Unable to close the offset index", ioe);
+			} finally {
+				index = null;
+			}
+		}
+
+		/**
+		 * Restores the item count when the transaction of the chunk rolls back and its output is discarded, so
+		 * that the separators and the item ordinals stay right when the chunk is written again.
+		 */
+		public void restoreCountOnRollback() {
+			if (!discardsOutputOnRollback() || !TransactionSynchronizationManager.isActualTransactionActive()
+					|| TransactionSynchronizationManager.hasResource(this)) {
+				return;
+			}
+			final long count = jsonObjectsWritten;
+			TransactionSynchronizationManager.bindResource(this, count);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int status) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(OutputState.this);
+					if (status != STATUS_COMMITTED) {
+						jsonObjectsWritten = count;
+					}
+				}
+			});
 		}
 
 		/**
@@ -448,27 +1446,43 @@ public class JsonFlatFileItemWriter<T> extends AbstractItemStreamItemWriter<T>
 		 * @throws IOException
 		 */
 		public void truncate() throws IOException {
-			fileChannel.truncate(lastMarkedByteOffsetPosition);
-			fileChannel.position(lastMarkedByteOffsetPosition);
+			output.truncate(lastMarkedByteOffsetPosition);
 		}
 
 		/**
-		 * Creates the buffered writer for the output file channel based on
-		 * configuration information.
+		 * Opens the file channel and creates the output engine of the mode
+		 * of the writer over it.
 		 * 
 		 * @throws IOException
 		 */
-		private void initializeBufferedWriter() throws IOException {
+		private void initializeOutput() throws IOException {
 
 			File file = resource.getFile();
 			FileUtils.setUpOutputFile(file, restarted, append,
 					shouldDeleteIfExists);
 
-			os = new FileOutputStream(file.getAbsolutePath(), true);
-			fileChannel = os.getChannel();
+			if (mapped) {
+				// mapping requires a readable channel
+				RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+				os = randomAccessFile;
+				fileChannel = meter(randomAccessFile.getChannel());
+				fileChannel.position(fileChannel.size());
+			} else {
+				FileOutputStream fileOutputStream = new FileOutputStream(file.getAbsolutePath(), true);
+				os = fileOutputStream;
+				fileChannel = meter(fileOutputStream.getChannel());
+			}
 
-			outputBufferedWriter = getBufferedWriter(fileChannel, encoding);
-			outputBufferedWriter.flush();
+			output = createOutput(fileChannel, encoding);
+			output.flush();
+			stringSerializer = new StringChunkSerializer<T>(output, jsonItemAggregator, itemSeparator, jsonLines,
+					getCharset(), metrics);
+			if (streaming || isByteOutput()) {
+				serializer = new StreamingChunkSerializer<T>(output, jsonItemAggregator, itemSeparator, jsonLines,
+						outputFormat, isByteOutput(), getCharset(), metrics, indexed);
+			} else {
+				serializer = stringSerializer;
+			}
 
 			if (append) {
 				// Bug in IO library? This doesn't work...
@@ -479,54 +1493,74 @@ public class JsonFlatFileItemWriter<T> extends AbstractItemStreamItemWriter<T>
 				}
 			}
 
-			Assert.state(outputBufferedWriter != null);
+			Assert.state(output != null);
 			// in case of restarting reset position to last committed point
 			if (restarted) {
 				checkFileSize();
 				truncate();
 			}
+			if (indexed) {
+				openIndex(file);
+			}
 
 			initialized = true;
 		}
 
+		private FileChannel meter(FileChannel channel) {
+			return metrics == null ? channel : new MeteredFileChannel(channel, metrics);
+		}
+
+		/**
+		 * Whether bytes are written without going through a charset encoder: requires the UTF-8 encoding.
+		 */
+		public boolean isDirectUtf8() {
+			return directUtf8 && Charset.forName(encoding).name().equals(DEFAULT_CHARSET);
+		}
+
+		/**
+		 * Whether the generator writes bytes into the stream of the output: in direct UTF-8 mode, and for the
+		 * binary formats.
+		 */
+		public boolean isByteOutput() {
+			return isDirectUtf8() || outputFormat.isBinary();
+		}
+
 		public boolean isInitialized() {
 			return initialized;
 		}
 
 		/**
-		 * Returns the buffered writer opened to the beginning of the file
-		 * specified by the absolute path name contained in absoluteFileName.
+		 * Creates the output engine of the mode of the writer over the file channel. The concurrent mode only
+		 * writes the header and the footer through it.
 		 */
-		private Writer getBufferedWriter(FileChannel fileChannel,
-				String encoding) {
+		private ChannelOutput createOutput(FileChannel channel, String encoding) {
+			Runnable closeCallback = new Runnable() {
+				@Override
+				public void run() {
+					closeStream();
+				}
+			};
 			try {
-				final FileChannel channel = fileChannel;
-				if (transactional) {
-					TransactionAwareBufferedWriter writer = new TransactionAwareBufferedWriter(
-							channel, new Runnable() {
-								@Override
-								public void run() {
-									closeStream();
-								}
-							});
-
-					writer.setEncoding(encoding);
-					writer.setForceSync(forceSync);
-					return writer;
-				} else {
-					Writer writer = new BufferedWriter(Channels.newWriter(
-							fileChannel, encoding)) {
-						@Override
-						public void flush() throws IOException {
-							super.flush();
-							if (forceSync) {
-								channel.force(false);
-							}
-						}
-					};
-
-					return writer;
+				if (async) {
+					return new AsyncChannelWriter(channel, encoding, asyncBufferSize, asyncQueueCapacity,
+							getForceSyncPolicy(), metrics, closeCallback);
+				}
+				if (compressed) {
+					return new GzipChannelWriter(channel, encoding, compressionBlockSize, compressionExecutor,
+							transactional, getForceSyncPolicy(), closeCallback);
+				}
+				if (mapped) {
+					return new MappedChannelWriter(channel, encoding, mappedRegionSize, transactional,
+							getForceSyncPolicy(), closeCallback);
+				}
+				if (isByteOutput()) {
+					return new Utf8ChannelWriter(channel, DEFAULT_UTF8_BUFFER_SIZE, transactional,
+							getForceSyncPolicy(), closeCallback, bufferPool);
+				}
+				if (transactional && !concurrent) {
+					return new TransactionalChannelOutput(channel, encoding, getForceSyncPolicy(), closeCallback);
 				}
+				return new BufferedChannelOutput(channel, encoding, getForceSyncPolicy(), closeCallback);
 			} catch (UnsupportedCharsetException ucse) {
 				throw new ItemStreamException(
 						"Bad encoding configuration for output file "
@@ -546,7 +1580,7 @@ public class JsonFlatFileItemWriter<T> extends AbstractItemStreamItemWriter<T>
 		private void checkFileSize() throws IOException {
 			long size = -1;
 
-			outputBufferedWriter.flush();
+			output.flush();
 			size = fileChannel.size();
 
 			if (size < lastMarkedByteOffsetPosition) {
@@ -0,0 +1,162 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+
+/**
+ * Assembles the fragments written by partitioned {@link JsonFlatFileItemWriter}s (see
+ * {@link JsonFlatFileItemWriter#setFragment(boolean)}) into a single json document.
+ * 
+ * The header and footer are rendered as the writer renders them, by a {@link JsonHeaderFooterCallback} with the
+ * configured root node, and the content of each fragment is copied as is with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}:
+ * items are neither parsed nor serialized again. Fragments are merged in the given order, missing or empty
+ * ones are skipped.
+ * 
+ * The fragments must have been written with the same encoding as the one configured here.
+ */
+public class JsonFragmentMergeTasklet implements Tasklet, InitializingBean {
+
+	private static final org.slf4j.Logger logger = LoggerFactory.getLogger(JsonFragmentMergeTasklet.class);
+
+
+	private Resource[] fragments;
+	private Resource resource;
+	private String rootNode;
+	private String encoding = "UTF-8";
+	private String itemSeparator = JsonFlatFileItemWriter.COMMA_SEPARATOR;
+	private boolean jsonLines = false;
+	private boolean deleteFragments = false;
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(fragments, "The fragments must be set");
+		Assert.notNull(resource, "The resource must be set");
+	}
+
+	@Override
+	public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+		Charset charset = Charset.forName(encoding);
+		File target = resource.getFile();
+		int merged = 0;
+		try (FileOutputStream os = new FileOutputStream(target, false); FileChannel targetChannel = os.getChannel()) {
+			String[] headerAndFooter = renderHeaderAndFooter();
+			write(targetChannel, headerAndFooter[0], charset);
+			for (Resource fragment : fragments) {
+				File fragmentFile = fragment.getFile();
+				if (!fragmentFile.exists() || fragmentFile.length() == 0) {
+					continue;
+				}
+				if (merged > 0 && !jsonLines) {
+					write(targetChannel, itemSeparator, charset);
+				}
+				transfer(fragmentFile, targetChannel);
+				merged++;
+			}
+			write(targetChannel, headerAndFooter[1], charset);
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Merged {} fragments into {}", merged, resource);
+		}
+		if (deleteFragments) {
+			for (Resource fragment : fragments) {
+				File fragmentFile = fragment.getFile();
+				if (fragmentFile.exists() && !fragmentFile.delete()) {
+					logger.warn("Could not delete fragment {}", fragment);
+				}
+			}
+		}
+		return RepeatStatus.FINISHED;
+	}
+
+	/**
+	 * Header and footer exactly as {@link JsonFlatFileItemWriter} writes them around the items.
+	 */
+	private String[] renderHeaderAndFooter() throws IOException {
+		if (jsonLines) {
+			return new String[] { "", "" };
+		}
+		JsonHeaderFooterCallback headerFooterCallback = new JsonHeaderFooterCallback();
+		headerFooterCallback.setRootNode(rootNode);
+		return new String[] { JsonFlatFileItemWriter.renderHeader(headerFooterCallback),
+				JsonFlatFileItemWriter.renderFooter(headerFooterCallback) };
+	}
+
+	private void write(FileChannel channel, String content, Charset charset) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(content.getBytes(charset));
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private void transfer(File fragmentFile, FileChannel targetChannel) throws IOException {
+		try (FileInputStream is = new FileInputStream(fragmentFile); FileChannel fragmentChannel = is.getChannel()) {
+			long size = fragmentChannel.size();
+			long position = 0;
+			while (position < size) {
+				long transferred = fragmentChannel.transferTo(position, size - position, targetChannel);
+				if (transferred <= 0) {
+					throw new ItemStreamException("Could not copy fragment " + fragmentFile + " at position " + position);
+				}
+				position += transferred;
+			}
+		}
+	}
+
+	/**
+	 * Fragments to merge, in the order the items must appear in the document.
+	 */
+	public void setFragments(Resource[] fragments) {
+		this.fragments = fragments;
+	}
+
+	/**
+	 * The merged document. It is overwritten if it already exists.
+	 */
+	public void setResource(Resource resource) {
+		this.resource = resource;
+	}
+
+	/**
+	 * Same root node as the one given to the {@link JsonFlatFileItemWriter}s, may be null.
+	 */
+	public void setRootNode(String rootNode) {
+		this.rootNode = rootNode;
+	}
+
+	public void setEncoding(String encoding) {
+		this.encoding = encoding;
+	}
+
+	public void setJsonItemSeparator(String itemSeparator) {
+		this.itemSeparator = itemSeparator;
+	}
+
+	/**
+	 * When the fragments are json lines, they are simply concatenated. Default is false.
+	 */
+	public void setJsonLines(boolean jsonLines) {
+		this.jsonLines = jsonLines;
+	}
+
+	/**
+	 * Whether the fragments are deleted once merged. Default is false.
+	 */
+	public void setDeleteFragments(boolean deleteFragments) {
+		this.deleteFragments = deleteFragments;
+	}
+}
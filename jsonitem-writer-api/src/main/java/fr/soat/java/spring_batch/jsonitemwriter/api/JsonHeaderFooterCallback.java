@@ -3,6 +3,7 @@ package fr.soat.java.spring_batch.jsonitemwriter.api;
 import java.io.IOException;
 import java.io.Writer;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.google.gson.stream.JsonWriter;
 
 /**
@@ -12,29 +13,54 @@ import com.google.gson.stream.JsonWriter;
  */
 public class JsonHeaderFooterCallback implements JsonFileHeaderFooterCallback {
 	
-	private JsonWriter jsonWriter;
 	private String rootNode;	
 
 	@Override
 	public void writeHeader(Writer writer) throws IOException {		
-		this.jsonWriter = new JsonWriter(writer);
+		JsonWriter jsonWriter = new JsonWriter(writer);
 		if (rootNode != null && !rootNode.isEmpty()){
 			jsonWriter.beginObject().name(rootNode).beginArray();
 		}else {
 			jsonWriter.beginArray();
 		}
+		// the output writer belongs to the item writer: it must not be closed here
+		jsonWriter.flush();
 	}
 
+	/**
+	 * Writes the closing tokens matching the header. No state is kept from {@link #writeHeader(Writer)}, so the
+	 * footer can be written after a restart or to another output than the header.
+	 */
 	@Override
 	public void writeFooter(Writer writer) throws IOException {
 		if (rootNode != null && !rootNode.isEmpty()){
-			jsonWriter.endArray().endObject();
+			writer.write("]}");
 		}else {
-			jsonWriter.endArray();
+			writer.write("]");
 		}
-		jsonWriter.close();		
 	}
 	
+	/**
+	 * Writes the same header as tokens of the given generator, for the binary output formats.
+	 */
+	public void writeHeader(JsonGenerator jsonGenerator) throws IOException {
+		if (rootNode != null && !rootNode.isEmpty()){
+			jsonGenerator.writeStartObject();
+			jsonGenerator.writeFieldName(rootNode);
+		}
+		jsonGenerator.writeStartArray();
+	}
+
+	/**
+	 * Writes the same footer as tokens of the given generator, which must have written the header.
+	 */
+	public void writeFooter(JsonGenerator jsonGenerator) throws IOException {
+		jsonGenerator.writeEndArray();
+		if (rootNode != null && !rootNode.isEmpty()){
+			jsonGenerator.writeEndObject();
+		}
+	}
+
 	public void setRootNode(String rootNode) {
 		this.rootNode = rootNode;
 	}
@@ -1,11 +1,14 @@
 package fr.soat.java.spring_batch.jsonitemwriter.api;
 
+import java.io.IOException;
+
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.item.file.transform.LineAggregator;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 
-import fr.soat.java.spring_batch.jsonitemwriter.api.utils.JsonUtils;
+import fr.soat.java.spring_batch.jsonitemwriter.api.utils.ObjectWriterRegistry;
 
 /**
  * 
@@ -18,15 +21,53 @@ public class JsonItemAggregator<T> implements LineAggregator<T> {
 	
 	private static final org.slf4j.Logger logger = LoggerFactory.getLogger(JsonItemAggregator.class);
 
+	private ObjectWriterRegistry objectWriterRegistry = ObjectWriterRegistry.getDefault();
+
+	private boolean prettyPrint = true;
+
 	@Override
 	public String aggregate(T item) {
 		String result = null;
 		try {
-			result = JsonUtils.convertObjectToJsonString(item); 
+			result = objectWriterRegistry.getObjectWriterFor(item, prettyPrint).writeValueAsString(item);
 
 		} catch (JsonProcessingException jpe) {
 			logger.error("An error has occured. Error message {} ", jpe.getMessage() );
 		}		
 		return result;
 	}
+
+	/**
+	 * Streaming version of {@link #aggregate(Object)}: the item is serialized directly into the generator.
+	 * Unlike the String version, errors are propagated so that the writer can discard the partial output.
+	 * 
+	 * @param item
+	 * @param jsonGenerator
+	 * @throws IOException
+	 */
+	public void aggregate(T item, JsonGenerator jsonGenerator) throws IOException {
+		objectWriterRegistry.getObjectWriterFor(item, prettyPrint).writeValue(jsonGenerator, item);
+	}
+
+	/**
+	 * Registry the serializers are taken from. Defaults to the shared {@link ObjectWriterRegistry#getDefault()}.
+	 * 
+	 * @param objectWriterRegistry
+	 */
+	public void setObjectWriterRegistry(ObjectWriterRegistry objectWriterRegistry) {
+		this.objectWriterRegistry = objectWriterRegistry;
+	}
+
+	/**
+	 * Whether items are pretty printed. Default is true.
+	 * 
+	 * @param prettyPrint
+	 */
+	public void setPrettyPrint(boolean prettyPrint) {
+		this.prettyPrint = prettyPrint;
+	}
+
+	public boolean isPrettyPrint() {
+		return prettyPrint;
+	}
 }
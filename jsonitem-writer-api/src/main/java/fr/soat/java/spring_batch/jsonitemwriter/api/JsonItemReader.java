@@ -0,0 +1,319 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ParseException;
+import org.springframework.batch.item.file.ResourceAwareItemReaderItemStream;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.utils.ObjectWriterRegistry;
+
+/**
+ * Reads back the items of a file written by {@link JsonFlatFileItemWriter}, one at a time, with Jackson's
+ * streaming parser: memory does not depend on the size of the file.
+ *
+ * The layouts of {@link JsonHeaderFooterCallback} are expected: a bare array, or an object holding the array
+ * under the root node. In json lines mode, the file is a sequence of items separated by line feeds.
+ *
+ * Besides the item count, the byte offset of the end of the last item read is saved in the execution context,
+ * so a restart seeks to it instead of parsing the items already read. The offset is only tracked in UTF-8: in
+ * other encodings, a restart skips the items one by one.
+ *
+ * @param <T>
+ */
+public class JsonItemReader<T> extends AbstractItemCountingItemStreamItemReader<T>
+		implements ResourceAwareItemReaderItemStream<T>, InitializingBean {
+
+	private static final org.slf4j.Logger logger = LoggerFactory.getLogger(JsonItemReader.class);
+
+	private static final String READ_OFFSET_NAME = "read.offset";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final byte[] ARRAY_START = { '[' };
+
+	private Resource resource;
+	private Class<? extends T> itemType;
+	private String rootNode;
+	private boolean jsonLines = false;
+	private String encoding = UTF_8.name();
+	private boolean strict = true;
+	private ObjectMapper objectMapper = ObjectWriterRegistry.getDefault().getObjectMapper();
+
+	private ObjectReader objectReader;
+	private JsonParser jsonParser;
+	private boolean noInput;
+	private boolean trackOffset;
+
+	// offset of the first byte seen by the parser in the file, negative when it is not the file start
+	private long parserOffset;
+
+	// offset right after the last item read
+	private long currentOffset;
+
+	// offset to seek to on restart, -1 if none was saved
+	private long restartOffset = -1;
+
+	public JsonItemReader() {
+		this.setName(ClassUtils.getShortName(JsonItemReader.class));
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(itemType, "The item type must be set");
+		Assert.isTrue(!jsonLines || rootNode == null || rootNode.isEmpty(),
+				"A root node can not be used in json lines mode.");
+		Assert.isTrue(Charset.isSupported(encoding), "Unsupported encoding " + encoding);
+	}
+
+	@Override
+	public void setResource(Resource resource) {
+		this.resource = resource;
+	}
+
+	/**
+	 * Class the items are bound to.
+	 *
+	 * @param itemType
+	 */
+	public void setItemType(Class<? extends T> itemType) {
+		this.itemType = itemType;
+	}
+
+	/**
+	 * Name of the field holding the array of items, as given to the writer. Null or empty for a bare array,
+	 * which is the default.
+	 *
+	 * @param rootNode
+	 */
+	public void setRootNode(String rootNode) {
+		this.rootNode = rootNode;
+	}
+
+	/**
+	 * Whether the file is in json lines format, as written by {@link JsonFlatFileItemWriter#setJsonLines(boolean)}.
+	 * Default is false.
+	 *
+	 * @param jsonLines
+	 */
+	public void setJsonLines(boolean jsonLines) {
+		this.jsonLines = jsonLines;
+	}
+
+	/**
+	 * Encoding of the file. Default is UTF-8, the only one in which the byte offset is saved for restart.
+	 *
+	 * @param encoding
+	 */
+	public void setEncoding(String encoding) {
+		this.encoding = encoding;
+	}
+
+	/**
+	 * Whether a missing resource fails the step. Otherwise no item is read. Default is true.
+	 *
+	 * @param strict
+	 */
+	public void setStrict(boolean strict) {
+		this.strict = strict;
+	}
+
+	/**
+	 * Mapper the items are bound with. Defaults to the one of the default {@link ObjectWriterRegistry}.
+	 *
+	 * @param objectMapper
+	 */
+	public void setObjectMapper(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+	}
+
+	@Override
+	public void open(ExecutionContext executionContext) throws ItemStreamException {
+		restartOffset = executionContext.getLong(getExecutionContextKey(READ_OFFSET_NAME), -1);
+		super.open(executionContext);
+		restartOffset = -1;
+	}
+
+	@Override
+	public void update(ExecutionContext executionContext) throws ItemStreamException {
+		super.update(executionContext);
+		if (isSaveState() && trackOffset && jsonParser != null) {
+			executionContext.putLong(getExecutionContextKey(READ_OFFSET_NAME), currentOffset);
+		}
+	}
+
+	@Override
+	protected void doOpen() throws Exception {
+		Assert.notNull(resource, "The resource must be set");
+		noInput = !resource.exists();
+		if (noInput) {
+			if (strict) {
+				throw new IllegalStateException("Input resource must exist (reader is in 'strict' mode): " + resource);
+			}
+			logger.warn("Input resource does not exist {}", resource.getDescription());
+			return;
+		}
+		objectReader = objectMapper.readerFor(itemType);
+		trackOffset = UTF_8.equals(Charset.forName(encoding));
+		openParser(resource.getInputStream(), 0);
+		if (!jsonLines) {
+			moveToItems();
+		}
+	}
+
+	/**
+	 * Moves the parser to the start of the array of items.
+	 */
+	private void moveToItems() throws IOException {
+		JsonToken token = jsonParser.nextToken();
+		if (token == null) {
+			// empty file: no header was written
+			noInput = true;
+			return;
+		}
+		if (rootNode != null && !rootNode.isEmpty()) {
+			if (token != JsonToken.START_OBJECT) {
+				throw new ParseException("Expected an object holding the " + rootNode + " node in " + resource
+						+ " at " + jsonParser.getCurrentLocation());
+			}
+			while ((token = jsonParser.nextToken()) == JsonToken.FIELD_NAME
+					&& !rootNode.equals(jsonParser.getCurrentName())) {
+				jsonParser.nextToken();
+				jsonParser.skipChildren();
+			}
+			if (token != JsonToken.FIELD_NAME) {
+				throw new ParseException("No " + rootNode + " node in " + resource);
+			}
+			token = jsonParser.nextToken();
+		}
+		if (token != JsonToken.START_ARRAY) {
+			throw new ParseException("Expected an array of items in " + resource + " at "
+					+ jsonParser.getCurrentLocation());
+		}
+	}
+
+	@Override
+	protected T doRead() throws Exception {
+		if (noInput) {
+			return null;
+		}
+		JsonToken token = jsonParser.nextToken();
+		if (token == null || token == JsonToken.END_ARRAY) {
+			noInput = true;
+			return null;
+		}
+		T item = objectReader.readValue(jsonParser);
+		if (trackOffset) {
+			currentOffset = parserOffset + jsonParser.getCurrentLocation().getByteOffset();
+		}
+		return item;
+	}
+
+	/**
+	 * Seeks to the saved offset when there is one, instead of reading the items before it.
+	 */
+	@Override
+	protected void jumpToItem(int itemIndex) throws Exception {
+		if (restartOffset < 0 || !trackOffset || noInput) {
+			super.jumpToItem(itemIndex);
+			return;
+		}
+		jsonParser.close();
+		InputStream inputStream = resource.getInputStream();
+		try {
+			skipFully(inputStream, restartOffset);
+			PushbackInputStream input = new PushbackInputStream(new BufferedInputStream(inputStream));
+			long skipped = skipSeparator(input);
+			long offset = restartOffset + skipped;
+			if (jsonLines) {
+				openParser(input, offset);
+			} else {
+				// the remaining items are parsed as an array: the footer after its end is never read
+				openParser(new SequenceInputStream(new ByteArrayInputStream(ARRAY_START), input), offset - 1);
+				jsonParser.nextToken();
+			}
+		} catch (IOException | RuntimeException e) {
+			inputStream.close();
+			throw e;
+		}
+		currentOffset = restartOffset;
+	}
+
+	/**
+	 * Skips the whitespaces and the comma between the last item read and the next one.
+	 *
+	 * @return the number of bytes skipped
+	 */
+	private long skipSeparator(PushbackInputStream input) throws IOException {
+		long skipped = 0;
+		boolean comma = false;
+		int b;
+		while ((b = input.read()) == ' ' || b == '\t' || b == '\r' || b == '\n' || (b == ',' && !jsonLines && !comma)) {
+			comma |= b == ',';
+			skipped++;
+		}
+		if (!jsonLines && !comma && b != ']') {
+			throw new ItemStreamException("Offset " + restartOffset + " of " + resource
+					+ " is not the end of an item: the file has changed since the last run");
+		}
+		if (b >= 0) {
+			input.unread(b);
+		}
+		return skipped;
+	}
+
+	private void skipFully(InputStream inputStream, long count) throws IOException {
+		long remaining = count;
+		while (remaining > 0) {
+			long skipped = inputStream.skip(remaining);
+			if (skipped <= 0) {
+				if (inputStream.read() < 0) {
+					throw new ItemStreamException("Offset " + count + " is past the end of " + resource);
+				}
+				skipped = 1;
+			}
+			remaining -= skipped;
+		}
+	}
+
+	private void openParser(InputStream inputStream, long offset) throws IOException {
+		if (trackOffset) {
+			jsonParser = objectMapper.getFactory().createParser(inputStream);
+		} else {
+			jsonParser = objectMapper.getFactory().createParser(new InputStreamReader(inputStream, encoding));
+		}
+		parserOffset = offset;
+	}
+
+	@Override
+	protected void doClose() throws Exception {
+		noInput = false;
+		currentOffset = 0;
+		if (jsonParser != null) {
+			try {
+				jsonParser.close();
+			} finally {
+				jsonParser = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+
+/**
+ * Splits a json lines file into byte ranges of about the same size, each one starting at the beginning of a
+ * line, to be read in parallel by {@link JsonLinesRangeItemReader}s. Only a few bytes are read around each
+ * boundary to align it on the next line feed: the items are not parsed. Any line oriented file can be split the
+ * same way, e.g. a delimited file read by {@link MappedDelimitedItemReader}s.
+ *
+ * The range of each partition is put in its execution context under {@link #START_OFFSET_KEY} and
+ * {@link #END_OFFSET_KEY}, to be bound to the reader of a step scoped partition step.
+ */
+public class JsonLinesPartitioner implements Partitioner, InitializingBean {
+
+	/**
+	 * Key of the offset of the first byte of the range.
+	 */
+	public static final String START_OFFSET_KEY = "startOffset";
+
+	/**
+	 * Key of the offset following the last byte of the range.
+	 */
+	public static final String END_OFFSET_KEY = "endOffset";
+
+	private static final String PARTITION_PREFIX = "partition";
+
+	private static final int SCAN_BUFFER_SIZE = 8 * 1024;
+
+	private Resource resource;
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(resource, "The resource must be set");
+	}
+
+	/**
+	 * The file to split. It must be a file of the file system.
+	 *
+	 * @param resource
+	 */
+	public void setResource(Resource resource) {
+		this.resource = resource;
+	}
+
+	/**
+	 * Returns at most gridSize partitions: fewer when lines are longer than the ranges, and a single empty one
+	 * for an empty file, so that the step still runs.
+	 */
+	@Override
+	public Map<String, ExecutionContext> partition(int gridSize) {
+		Assert.isTrue(gridSize > 0, "The grid size must be positive.");
+		Map<String, ExecutionContext> partitions = new LinkedHashMap<String, ExecutionContext>();
+		try (RandomAccessFile file = new RandomAccessFile(resource.getFile(), "r")) {
+			FileChannel channel = file.getChannel();
+			long size = channel.size();
+			long start = 0;
+			for (int i = 1; i <= gridSize && (start < size || partitions.isEmpty()); i++) {
+				long end = i == gridSize ? size : Math.max(start, nextLineStart(channel, size * i / gridSize, size));
+				if (end > start || i == gridSize) {
+					ExecutionContext context = new ExecutionContext();
+					context.putLong(START_OFFSET_KEY, start);
+					context.putLong(END_OFFSET_KEY, end);
+					partitions.put(PARTITION_PREFIX + partitions.size(), context);
+					start = end;
+				}
+			}
+		} catch (IOException e) {
+			throw new ItemStreamException("Could not split " + resource, e);
+		}
+		return partitions;
+	}
+
+	/**
+	 * @return the offset of the first line starting at or after the given offset, the size of the file if none
+	 */
+	private long nextLineStart(FileChannel channel, long offset, long size) throws IOException {
+		if (offset == 0) {
+			return 0;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+		// the line starts at the offset if the previous byte is a line feed
+		long position = offset - 1;
+		while (position < size) {
+			buffer.clear();
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				break;
+			}
+			for (int i = 0; i < read; i++) {
+				if (buffer.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += read;
+		}
+		return size;
+	}
+}
@@ -0,0 +1,219 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ParseException;
+import org.springframework.batch.item.file.ResourceAwareItemReaderItemStream;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.utils.ObjectWriterRegistry;
+
+/**
+ * Reads the items of a byte range of a UTF-8 json lines file, as given by {@link JsonLinesPartitioner}. The
+ * file is mapped in memory by windows and each line is parsed from a copy of its bytes, without any
+ * {@code InputStream} or decoding.
+ *
+ * The reader owns the lines starting in its range: if the range does not start at the beginning of a line, the
+ * partial line is skipped, and the last line is read to its end even if it goes past the range. Adjacent ranges
+ * thus read every line exactly once, whatever their boundaries. Blank lines are ignored.
+ *
+ * The offset of the next line is saved in the execution context, so a restart maps the file from it.
+ *
+ * @param <T>
+ */
+public class JsonLinesRangeItemReader<T> extends AbstractItemCountingItemStreamItemReader<T>
+		implements ResourceAwareItemReaderItemStream<T>, InitializingBean {
+
+	private static final String READ_OFFSET_NAME = "read.offset";
+
+	private static final int DEFAULT_MAPPED_REGION_SIZE = 64 * 1024 * 1024;
+
+	private Resource resource;
+	private Class<? extends T> itemType;
+	private long startOffset = 0;
+	private long endOffset = Long.MAX_VALUE;
+	private int mappedRegionSize = DEFAULT_MAPPED_REGION_SIZE;
+	private ObjectMapper objectMapper = ObjectWriterRegistry.getDefault().getObjectMapper();
+
+	private ObjectReader objectReader;
+	private MappedFile file;
+	private long fileSize;
+	private byte[] line = new byte[1024];
+
+	// offset of the next line to read
+	private long position;
+
+	// offset to start from on restart, -1 if none was saved
+	private long restartOffset = -1;
+
+	public JsonLinesRangeItemReader() {
+		this.setName(ClassUtils.getShortName(JsonLinesRangeItemReader.class));
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(itemType, "The item type must be set");
+		Assert.isTrue(startOffset >= 0 && startOffset <= endOffset, "Invalid range " + startOffset + "-" + endOffset);
+		Assert.isTrue(mappedRegionSize > 0, "The mapped region size must be positive.");
+	}
+
+	/**
+	 * The json lines file. A resource out of the file system is loaded in memory instead of being mapped.
+	 */
+	@Override
+	public void setResource(Resource resource) {
+		this.resource = resource;
+	}
+
+	/**
+	 * Class the items are bound to.
+	 *
+	 * @param itemType
+	 */
+	public void setItemType(Class<? extends T> itemType) {
+		this.itemType = itemType;
+	}
+
+	/**
+	 * Offset of the first byte of the range. Default is 0.
+	 *
+	 * @param startOffset
+	 */
+	public void setStartOffset(long startOffset) {
+		this.startOffset = startOffset;
+	}
+
+	/**
+	 * Offset following the last byte of the range. Default is the end of the file.
+	 *
+	 * @param endOffset
+	 */
+	public void setEndOffset(long endOffset) {
+		this.endOffset = endOffset;
+	}
+
+	/**
+	 * Number of bytes mapped at once. A line may span several windows. Default is 64 MB.
+	 *
+	 * @param mappedRegionSize
+	 */
+	public void setMappedRegionSize(int mappedRegionSize) {
+		this.mappedRegionSize = mappedRegionSize;
+	}
+
+	/**
+	 * Mapper the items are bound with. Defaults to the one of the default {@link ObjectWriterRegistry}.
+	 *
+	 * @param objectMapper
+	 */
+	public void setObjectMapper(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+	}
+
+	@Override
+	public void open(ExecutionContext executionContext) throws ItemStreamException {
+		restartOffset = executionContext.getLong(getExecutionContextKey(READ_OFFSET_NAME), -1);
+		super.open(executionContext);
+		restartOffset = -1;
+	}
+
+	@Override
+	public void update(ExecutionContext executionContext) throws ItemStreamException {
+		super.update(executionContext);
+		if (isSaveState() && file != null) {
+			executionContext.putLong(getExecutionContextKey(READ_OFFSET_NAME), position);
+		}
+	}
+
+	@Override
+	protected void doOpen() throws Exception {
+		Assert.notNull(resource, "The resource must be set");
+		objectReader = objectMapper.readerFor(itemType);
+		file = new MappedFile(resource, mappedRegionSize);
+		fileSize = file.size();
+		position = Math.min(startOffset, fileSize);
+		if (position > 0 && file.byteAt(position - 1) != '\n') {
+			// the line belongs to the previous range
+			long lineEnd = file.findLineEnd(position);
+			position = lineEnd < fileSize ? lineEnd + 1 : fileSize;
+		}
+	}
+
+	@Override
+	protected T doRead() throws Exception {
+		while (position < endOffset && position < fileSize) {
+			long lineEnd = file.findLineEnd(position);
+			int length = copyLine(position, lineEnd);
+			long lineStart = position;
+			position = lineEnd < fileSize ? lineEnd + 1 : fileSize;
+			if (!isBlank(length)) {
+				try {
+					return objectReader.readValue(line, 0, length);
+				} catch (IOException e) {
+					throw new ParseException("Could not parse the line at offset " + lineStart + " of " + resource, e);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Starts from the saved offset when there is one, instead of reading the items before it.
+	 */
+	@Override
+	protected void jumpToItem(int itemIndex) throws Exception {
+		if (restartOffset < 0) {
+			super.jumpToItem(itemIndex);
+			return;
+		}
+		if (restartOffset > fileSize || (restartOffset > 0 && file.byteAt(restartOffset - 1) != '\n')) {
+			throw new ItemStreamException("Offset " + restartOffset + " of " + resource
+					+ " is not the start of a line: the file has changed since the last run");
+		}
+		position = restartOffset;
+	}
+
+	private int copyLine(long start, long end) throws IOException {
+		long length = end - start;
+		if (length > Integer.MAX_VALUE - 8) {
+			throw new ParseException("Line at offset " + start + " of " + resource + " is too long");
+		}
+		if (line.length < length) {
+			line = Arrays.copyOf(line, (int) Math.max(length, Math.min(line.length * 2L, Integer.MAX_VALUE - 8)));
+		}
+		file.copy(start, end, line);
+		return (int) length;
+	}
+
+	private boolean isBlank(int length) {
+		for (int i = 0; i < length; i++) {
+			byte b = line[i];
+			if (b != ' ' && b != '\t' && b != '\r') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	protected void doClose() throws Exception {
+		position = 0;
+		if (file != null) {
+			try {
+				file.close();
+			} finally {
+				file = null;
+			}
+		}
+	}
+}
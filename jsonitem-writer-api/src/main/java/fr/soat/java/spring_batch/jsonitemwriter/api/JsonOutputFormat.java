@@ -0,0 +1,100 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.utils.JsonUtils;
+import fr.soat.java.spring_batch.jsonitemwriter.api.utils.ObjectWriterRegistry;
+
+/**
+ * Format of the output of {@link JsonFlatFileItemWriter}. The binary formats keep the json data model, so the
+ * items, the root node and the array holding them are the same, only encoded differently. They need
+ * jackson-dataformat-smile or jackson-dataformat-cbor on the classpath.
+ */
+public enum JsonOutputFormat {
+
+	/**
+	 * Json text, the default.
+	 */
+	JSON,
+
+	/**
+	 * Smile, the binary json of Jackson. The file starts with the ":)\n" Smile header. Names and string values
+	 * are never shared between items, so that any item can be decoded on its own, after a restart or a rollback.
+	 */
+	SMILE,
+
+	/**
+	 * CBOR (RFC 7049). The object and the array of the header have an indefinite length, closed by the footer.
+	 */
+	CBOR;
+
+	/**
+	 * Whether the format is binary: items are then neither separated nor followed by a line feed.
+	 */
+	public boolean isBinary() {
+		return this != JSON;
+	}
+
+	/**
+	 * Creates a long-lived generator writing this format to the given stream, with the same settings as
+	 * {@link JsonUtils#createJsonGenerator(OutputStream)}: it never closes the stream.
+	 *
+	 * @param outputStream
+	 * @param documentStart whether the stream is at the start of the file, where the Smile header is written
+	 * @throws IOException
+	 */
+	public JsonGenerator createGenerator(OutputStream outputStream, boolean documentStart) throws IOException {
+		JsonGenerator jsonGenerator;
+		switch (this) {
+		case SMILE:
+			jsonGenerator = SmileFactoryHolder.createGenerator(outputStream, documentStart);
+			break;
+		case CBOR:
+			jsonGenerator = CborFactoryHolder.createGenerator(outputStream);
+			break;
+		default:
+			return JsonUtils.createJsonGenerator(outputStream);
+		}
+		jsonGenerator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		// objects written by the aggregators are serialized with the default mapper
+		jsonGenerator.setCodec(ObjectWriterRegistry.getDefault().getObjectMapper());
+		return jsonGenerator;
+	}
+
+	/**
+	 * Only loaded when the Smile format is used, so the dependency stays optional.
+	 */
+	private static class SmileFactoryHolder {
+
+		private static final SmileFactory FACTORY = new SmileFactory()
+				.disable(SmileGenerator.Feature.WRITE_HEADER)
+				.disable(SmileGenerator.Feature.CHECK_SHARED_NAMES)
+				.disable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+
+		static JsonGenerator createGenerator(OutputStream outputStream, boolean documentStart) throws IOException {
+			SmileGenerator smileGenerator = FACTORY.createGenerator(outputStream);
+			if (documentStart) {
+				smileGenerator.writeHeader();
+			}
+			return smileGenerator;
+		}
+	}
+
+	/**
+	 * Only loaded when the CBOR format is used, so the dependency stays optional.
+	 */
+	private static class CborFactoryHolder {
+
+		private static final CBORFactory FACTORY = new CBORFactory();
+
+		static JsonGenerator createGenerator(OutputStream outputStream) throws IOException {
+			return FACTORY.createGenerator(outputStream);
+		}
+	}
+}
@@ -0,0 +1,257 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import org.springframework.batch.item.WriteFailedException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.sync.ForceSyncPolicy;
+
+/**
+ * Writer encoding the characters straight into a region of the file mapped in memory, without any system
+ * call per write. The file is mapped in windows of a given size, pre-allocated on the disk, and a new window
+ * is mapped from the current offset when the previous one is full. {@link #close()} truncates the file to the
+ * logical end of the output.
+ *
+ * If the writer is transactional, a rollback moves the logical end back to its value at the beginning of the
+ * transaction: the bytes written in between are overwritten by the next writes or cut by the final truncation.
+ *
+ * The channel must be readable and writable. Mapped regions are released by the garbage collector only, so
+ * this writer is intended for file systems allowing to truncate a mapped file.
+ */
+class MappedChannelWriter extends Writer implements ChannelOutput {
+
+	private final FileChannel channel;
+
+	private final CharsetEncoder encoder;
+
+	private final int regionSize;
+
+	private final boolean transactional;
+
+	private final ForceSyncPolicy forceSyncPolicy;
+
+	private final Runnable closeCallback;
+
+	private MappedByteBuffer region;
+
+	private long regionStart = -1;
+
+	// high surrogate ending the previous write, encoded with the next one
+	private char pendingHighSurrogate = 0;
+
+	private boolean closed = false;
+
+	private long syncedPosition = -1;
+
+	/**
+	 * @param channel a readable and writable channel
+	 * @param encoding
+	 * @param regionSize number of bytes mapped at once
+	 * @param transactional whether a rollback discards the output of the transaction
+	 * @param forceSyncPolicy policy applied on flush when something was written, may be null
+	 * @param closeCallback closes the channel, once truncated
+	 */
+	MappedChannelWriter(FileChannel channel, String encoding, int regionSize, boolean transactional,
+			ForceSyncPolicy forceSyncPolicy, Runnable closeCallback) {
+		this.channel = channel;
+		this.closeCallback = closeCallback;
+		this.encoder = Charset.forName(encoding).newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.regionSize = regionSize;
+		this.transactional = transactional;
+		this.forceSyncPolicy = forceSyncPolicy;
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		encode(CharBuffer.wrap(cbuf, off, len));
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		encode(CharBuffer.wrap(str, off, off + len));
+	}
+
+	/**
+	 * Applies the force sync policy if something was written since the last flush: forcing the channel also
+	 * writes the pages modified through the mapping. The content is visible to other readers of the file as
+	 * soon as it is written.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (forceSyncPolicy == null || region == null || position() == syncedPosition) {
+			return;
+		}
+		syncedPosition = position();
+		forceSyncPolicy.afterWrite(channel);
+	}
+
+	/**
+	 * Truncates the file to the logical end of the output, then closes the channel.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			if (region != null) {
+				flush();
+				truncate(position());
+			}
+		} finally {
+			closeCallback.run();
+		}
+	}
+
+	/**
+	 * Written through the channel, not the mapping: a rollback does not truncate it.
+	 */
+	@Override
+	public void writeHeader(byte[] header) throws IOException {
+		if (region != null) {
+			truncate(position());
+		}
+		ByteBuffer bytes = ByteBuffer.wrap(header);
+		while (bytes.hasRemaining()) {
+			channel.write(bytes);
+		}
+		if (forceSyncPolicy != null) {
+			forceSyncPolicy.afterWrite(channel);
+		}
+	}
+
+	@Override
+	public Writer getWriter() {
+		return this;
+	}
+
+	@Override
+	public OutputStream getOutputStream() {
+		return null;
+	}
+
+	/**
+	 * Drops the mapped window, and truncates the file: the pre-allocated bytes past the offset are cut. The
+	 * next write maps a window from the offset.
+	 */
+	@Override
+	public void truncate(long position) throws IOException {
+		region = null;
+		pendingHighSurrogate = 0;
+		channel.truncate(position);
+		channel.position(position);
+	}
+
+	/**
+	 * Logical end of the output.
+	 */
+	@Override
+	public long position() throws IOException {
+		if (region == null) {
+			return channel.position();
+		}
+		return regionStart + region.position();
+	}
+
+	private void encode(CharBuffer chars) throws IOException {
+		if (closed) {
+			throw new IOException("Writer already closed");
+		}
+		registerTransactionRollback();
+		if (pendingHighSurrogate != 0) {
+			CharBuffer joined = CharBuffer.allocate(chars.remaining() + 1);
+			joined.put(pendingHighSurrogate).put(chars).flip();
+			chars = joined;
+			pendingHighSurrogate = 0;
+		}
+		if (chars.hasRemaining() && Character.isHighSurrogate(chars.get(chars.limit() - 1))) {
+			pendingHighSurrogate = chars.get(chars.limit() - 1);
+			chars.limit(chars.limit() - 1);
+		}
+		if (region == null) {
+			map(channel.position());
+		}
+		CoderResult result = encoder.encode(chars, region, true);
+		while (!result.isUnderflow()) {
+			handle(result);
+			result = encoder.encode(chars, region, true);
+		}
+		result = encoder.flush(region);
+		while (!result.isUnderflow()) {
+			handle(result);
+			result = encoder.flush(region);
+		}
+		encoder.reset();
+	}
+
+	/**
+	 * Maps the next window when the current one is full.
+	 */
+	private void handle(CoderResult result) throws IOException {
+		if (!result.isOverflow()) {
+			try {
+				result.throwException();
+			} catch (CharacterCodingException e) {
+				throw new IOException("Could not encode output", e);
+			}
+		}
+		map(regionStart + region.position());
+	}
+
+	private void map(long start) throws IOException {
+		region = channel.map(MapMode.READ_WRITE, start, regionSize);
+		regionStart = start;
+	}
+
+	private void rollbackTo(long position) throws IOException {
+		pendingHighSurrogate = 0;
+		if (position >= regionStart && position <= regionStart + regionSize) {
+			region.position((int) (position - regionStart));
+		} else {
+			map(position);
+		}
+	}
+
+	/**
+	 * Registers, once per transaction, the reset of the logical end on rollback.
+	 */
+	private void registerTransactionRollback() throws IOException {
+		if (!transactional || !TransactionSynchronizationManager.isActualTransactionActive()
+				|| TransactionSynchronizationManager.hasResource(this)) {
+			return;
+		}
+		final long transactionStartPosition = position();
+		TransactionSynchronizationManager.bindResource(this, transactionStartPosition);
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCompletion(int status) {
+				TransactionSynchronizationManager.unbindResourceIfPossible(MappedChannelWriter.this);
+				if (status != TransactionSynchronization.STATUS_COMMITTED && !closed && region != null) {
+					try {
+						rollbackTo(transactionStartPosition);
+					} catch (IOException e) {
+						throw new WriteFailedException("Could not reset output after rollback.  The file may be corrupt.", e);
+					}
+				}
+			}
+		});
+	}
+}
@@ -0,0 +1,569 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ParseException;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.batch.item.file.ResourceAwareItemReaderItemStream;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Reads a delimited file, such as a CSV file, into items of the given type, in place of a
+ * {@code FlatFileItemReader} configured with a {@code DelimitedLineTokenizer} and a
+ * {@code BeanWrapperFieldSetMapper}. The file is mapped in memory by windows and each line is tokenized over its
+ * bytes: no line String, token array nor {@code FieldSet} is built, and numbers are parsed from the bytes. The
+ * fields are set through a plan of setters resolved once on open, instead of a {@code BeanWrapper} per item.
+ *
+ * The names are matched to the properties of the type by name, ignoring case, as the fuzzy matching of
+ * {@code BeanWrapperFieldSetMapper} does for the usual cases. The properties may be strings, primitives and their
+ * wrappers, or {@link BigDecimal}s. The fields are trimmed of their leading and trailing whitespace, quoted or
+ * not, as {@code DefaultFieldSet} does. An empty field leaves a primitive property unset, and sets a wrapper to
+ * null. Fields may be quoted, a quote being escaped by doubling it. The delimiter and the quote must be ASCII
+ * characters, and the encoding UTF-8 or a single byte encoding.
+ *
+ * Like {@link JsonLinesRangeItemReader}, the reader can be restricted to a byte range of the file, as given by
+ * {@link JsonLinesPartitioner}, which splits any line oriented file: it then reads the lines starting in the
+ * range. The offset of the next line is saved in the execution context, so a restart maps the file from it.
+ *
+ * @param <T>
+ */
+public class MappedDelimitedItemReader<T> extends AbstractItemCountingItemStreamItemReader<T>
+		implements ResourceAwareItemReaderItemStream<T>, InitializingBean {
+
+	private static final String READ_OFFSET_NAME = "read.offset";
+
+	private static final int DEFAULT_MAPPED_REGION_SIZE = 64 * 1024 * 1024;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private Resource resource;
+	private Class<? extends T> itemType;
+	private String[] names;
+	private char delimiter = ',';
+	private char quoteCharacter = '"';
+	private boolean strict = true;
+	private String[] comments = new String[] { "#" };
+	private int linesToSkip = 0;
+	private String encoding = UTF_8.name();
+	private long startOffset = 0;
+	private long endOffset = Long.MAX_VALUE;
+	private int mappedRegionSize = DEFAULT_MAPPED_REGION_SIZE;
+
+	private Constructor<? extends T> constructor;
+	private FieldSetter[] setters;
+	private byte[][] commentPrefixes;
+	private Charset charset;
+
+	private MappedFile file;
+	private long fileSize;
+	private byte[] line = new byte[1024];
+	private int[] tokenStarts;
+	private int[] tokenEnds;
+	private boolean[] tokenEscaped;
+
+	// offset of the next line to read
+	private long position;
+
+	// offset to start from on restart, -1 if none was saved
+	private long restartOffset = -1;
+
+	public MappedDelimitedItemReader() {
+		this.setName(ClassUtils.getShortName(MappedDelimitedItemReader.class));
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(itemType, "The item type must be set");
+		Assert.notEmpty(names, "The names of the fields must be set");
+		Assert.isTrue(delimiter < 0x80 && quoteCharacter < 0x80, "The delimiter and the quote must be ASCII characters.");
+		Assert.isTrue(delimiter != quoteCharacter, "The delimiter and the quote must differ.");
+		Assert.isTrue(Charset.isSupported(encoding), "Unsupported encoding " + encoding);
+		Charset cs = Charset.forName(encoding);
+		Assert.isTrue(UTF_8.equals(cs) || cs.newEncoder().maxBytesPerChar() == 1,
+				"The encoding must be UTF-8 or a single byte encoding: " + encoding);
+		Assert.isTrue(startOffset >= 0 && startOffset <= endOffset, "Invalid range " + startOffset + "-" + endOffset);
+		Assert.isTrue(mappedRegionSize > 0, "The mapped region size must be positive.");
+		Assert.isTrue(linesToSkip >= 0, "The lines to skip must not be negative.");
+	}
+
+	/**
+	 * The delimited file. A resource out of the file system is loaded in memory instead of being mapped.
+	 */
+	@Override
+	public void setResource(Resource resource) {
+		this.resource = resource;
+	}
+
+	/**
+	 * Class the items are created from. It needs a constructor without arguments.
+	 *
+	 * @param itemType
+	 */
+	public void setItemType(Class<? extends T> itemType) {
+		this.itemType = itemType;
+	}
+
+	/**
+	 * Names of the fields of a line, in order, matched to the properties of the item type. A null name skips the
+	 * field.
+	 *
+	 * @param names
+	 */
+	public void setNames(String[] names) {
+		this.names = names;
+	}
+
+	/**
+	 * Delimiter between the fields. Default is a comma.
+	 *
+	 * @param delimiter
+	 */
+	public void setDelimiter(char delimiter) {
+		this.delimiter = delimiter;
+	}
+
+	/**
+	 * Character quoting the fields holding a delimiter. Default is a double quote.
+	 *
+	 * @param quoteCharacter
+	 */
+	public void setQuoteCharacter(char quoteCharacter) {
+		this.quoteCharacter = quoteCharacter;
+	}
+
+	/**
+	 * Whether a line must have as many fields as names. Otherwise the missing fields are left unset, and the
+	 * extra ones ignored. Default is true.
+	 *
+	 * @param strict
+	 */
+	public void setStrict(boolean strict) {
+		this.strict = strict;
+	}
+
+	/**
+	 * Prefixes of the lines to ignore. Default is "#".
+	 *
+	 * @param comments
+	 */
+	public void setComments(String[] comments) {
+		this.comments = comments;
+	}
+
+	/**
+	 * Number of header lines skipped at the start of the file, by the reader of the range starting there.
+	 * Default is 0.
+	 *
+	 * @param linesToSkip
+	 */
+	public void setLinesToSkip(int linesToSkip) {
+		this.linesToSkip = linesToSkip;
+	}
+
+	/**
+	 * Encoding of the file. Default is UTF-8.
+	 *
+	 * @param encoding
+	 */
+	public void setEncoding(String encoding) {
+		this.encoding = encoding;
+	}
+
+	/**
+	 * Offset of the first byte of the range. Default is 0.
+	 *
+	 * @param startOffset
+	 */
+	public void setStartOffset(long startOffset) {
+		this.startOffset = startOffset;
+	}
+
+	/**
+	 * Offset following the last byte of the range. Default is the end of the file.
+	 *
+	 * @param endOffset
+	 */
+	public void setEndOffset(long endOffset) {
+		this.endOffset = endOffset;
+	}
+
+	/**
+	 * Number of bytes mapped at once. A line may span several windows. Default is 64 MB.
+	 *
+	 * @param mappedRegionSize
+	 */
+	public void setMappedRegionSize(int mappedRegionSize) {
+		this.mappedRegionSize = mappedRegionSize;
+	}
+
+	@Override
+	public void open(ExecutionContext executionContext) throws ItemStreamException {
+		restartOffset = executionContext.getLong(getExecutionContextKey(READ_OFFSET_NAME), -1);
+		super.open(executionContext);
+		restartOffset = -1;
+	}
+
+	@Override
+	public void update(ExecutionContext executionContext) throws ItemStreamException {
+		super.update(executionContext);
+		if (isSaveState() && file != null) {
+			executionContext.putLong(getExecutionContextKey(READ_OFFSET_NAME), position);
+		}
+	}
+
+	@Override
+	protected void doOpen() throws Exception {
+		Assert.notNull(resource, "The resource must be set");
+		charset = Charset.forName(encoding);
+		compilePlan();
+		file = new MappedFile(resource, mappedRegionSize);
+		fileSize = file.size();
+		position = Math.min(startOffset, fileSize);
+		if (position > 0 && file.byteAt(position - 1) != '\n') {
+			// the line belongs to the previous range
+			position = nextLine(position);
+		}
+		if (position == 0) {
+			for (int i = 0; i < linesToSkip && position < fileSize; i++) {
+				position = nextLine(position);
+			}
+		}
+	}
+
+	/**
+	 * Resolves the constructor of the item type and the setter of each field.
+	 */
+	private void compilePlan() {
+		try {
+			constructor = itemType.getDeclaredConstructor();
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException("No constructor without arguments in " + itemType.getName(), e);
+		}
+		ReflectionUtils.makeAccessible(constructor);
+		PropertyDescriptor[] descriptors = BeanUtils.getPropertyDescriptors(itemType);
+		setters = new FieldSetter[names.length];
+		for (int i = 0; i < names.length; i++) {
+			if (names[i] != null) {
+				setters[i] = new FieldSetter(findWriteMethod(descriptors, names[i]));
+			}
+		}
+		tokenStarts = new int[names.length];
+		tokenEnds = new int[names.length];
+		tokenEscaped = new boolean[names.length];
+		commentPrefixes = new byte[comments == null ? 0 : comments.length][];
+		for (int i = 0; i < commentPrefixes.length; i++) {
+			commentPrefixes[i] = comments[i].getBytes(charset);
+		}
+	}
+
+	private Method findWriteMethod(PropertyDescriptor[] descriptors, String name) {
+		PropertyDescriptor match = null;
+		for (PropertyDescriptor descriptor : descriptors) {
+			if (descriptor.getWriteMethod() == null) {
+				continue;
+			}
+			if (descriptor.getName().equals(name)) {
+				match = descriptor;
+				break;
+			}
+			if (match == null && descriptor.getName().equalsIgnoreCase(name)) {
+				match = descriptor;
+			}
+		}
+		if (match == null) {
+			throw new IllegalStateException("No writable property matching " + name + " in " + itemType.getName());
+		}
+		Method method = match.getWriteMethod();
+		if (!FieldSetter.isSupported(method.getParameterTypes()[0])) {
+			throw new IllegalStateException("Unsupported type " + method.getParameterTypes()[0].getName()
+					+ " of property " + match.getName() + " in " + itemType.getName());
+		}
+		ReflectionUtils.makeAccessible(method);
+		return method;
+	}
+
+	@Override
+	protected T doRead() throws Exception {
+		while (position < endOffset && position < fileSize) {
+			long lineStart = position;
+			long lineEnd = file.findLineEnd(position);
+			int length = copyLine(position, lineEnd);
+			position = lineEnd < fileSize ? lineEnd + 1 : fileSize;
+			if (length > 0 && line[length - 1] == '\r') {
+				length--;
+			}
+			if (length > 0 && !isComment(length)) {
+				return mapLine(length, lineStart);
+			}
+		}
+		return null;
+	}
+
+	private T mapLine(int length, long lineStart) throws Exception {
+		int count = tokenize(length, lineStart);
+		if (strict && count != names.length) {
+			throw new FlatFileParseException("Expected " + names.length + " fields but found " + count
+					+ " in the line at offset " + lineStart + " of " + resource, lineString(length), getCurrentItemCount());
+		}
+		T item = constructor.newInstance();
+		for (int i = 0; i < Math.min(count, names.length); i++) {
+			if (setters[i] != null) {
+				try {
+					setters[i].set(item, this, i);
+				} catch (NumberFormatException e) {
+					throw new FlatFileParseException("Invalid " + names[i] + " in the line at offset " + lineStart
+							+ " of " + resource, lineString(length), getCurrentItemCount());
+				} catch (InvocationTargetException e) {
+					ReflectionUtils.rethrowException(e.getTargetException());
+				}
+			}
+		}
+		return item;
+	}
+
+	/**
+	 * Finds the bounds of the fields of the line, up to the number of names.
+	 *
+	 * @return the number of fields of the line
+	 */
+	private int tokenize(int length, long lineStart) {
+		int count = 0;
+		int i = 0;
+		while (true) {
+			int start = i;
+			int end;
+			boolean escaped = false;
+			if (i < length && line[i] == quoteCharacter) {
+				start = ++i;
+				while (true) {
+					if (i >= length) {
+						throw new FlatFileParseException("Unterminated quoted field in the line at offset " + lineStart
+								+ " of " + resource, lineString(length), getCurrentItemCount());
+					}
+					if (line[i] == quoteCharacter) {
+						if (i + 1 < length && line[i + 1] == quoteCharacter) {
+							escaped = true;
+							i += 2;
+							continue;
+						}
+						break;
+					}
+					i++;
+				}
+				end = i++;
+				// characters between the closing quote and the delimiter are ignored
+				while (i < length && line[i] != delimiter) {
+					i++;
+				}
+			} else {
+				while (i < length && line[i] != delimiter) {
+					i++;
+				}
+				end = i;
+			}
+			if (count < names.length) {
+				// the fields are trimmed, as by the FieldSet of a FlatFileItemReader
+				while (start < end && (line[start] & 0xff) <= ' ') {
+					start++;
+				}
+				while (end > start && (line[end - 1] & 0xff) <= ' ') {
+					end--;
+				}
+				tokenStarts[count] = start;
+				tokenEnds[count] = end;
+				tokenEscaped[count] = escaped;
+			}
+			count++;
+			if (i >= length) {
+				return count;
+			}
+			// skips the delimiter
+			i++;
+		}
+	}
+
+	private boolean isComment(int length) {
+		for (byte[] prefix : commentPrefixes) {
+			if (prefix.length > 0 && prefix.length <= length) {
+				int i = 0;
+				while (i < prefix.length && line[i] == prefix[i]) {
+					i++;
+				}
+				if (i == prefix.length) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	String getString(int token) {
+		String value = new String(line, tokenStarts[token], tokenEnds[token] - tokenStarts[token], charset);
+		if (tokenEscaped[token]) {
+			String quote = String.valueOf(quoteCharacter);
+			value = value.replace(quote + quote, quote);
+		}
+		return value;
+	}
+
+	boolean isEmpty(int token) {
+		return tokenStarts[token] == tokenEnds[token];
+	}
+
+	/**
+	 * Parses an integer from the ASCII digits of the field.
+	 */
+	long getLong(int token) {
+		int i = tokenStarts[token];
+		int end = tokenEnds[token];
+		boolean negative = i < end && line[i] == '-';
+		if (negative || (i < end && line[i] == '+')) {
+			i++;
+		}
+		if (i == end || end - i > 18) {
+			// nothing to parse, or too long to be sure not to overflow
+			return Long.parseLong(getString(token).trim());
+		}
+		long value = 0;
+		for (; i < end; i++) {
+			int digit = line[i] - '0';
+			if (digit < 0 || digit > 9) {
+				throw new NumberFormatException("Not a number: " + getString(token));
+			}
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	private String lineString(int length) {
+		return new String(line, 0, length, charset);
+	}
+
+	private long nextLine(long offset) throws IOException {
+		long lineEnd = file.findLineEnd(offset);
+		return lineEnd < fileSize ? lineEnd + 1 : fileSize;
+	}
+
+	/**
+	 * Starts from the saved offset when there is one, instead of reading the items before it.
+	 */
+	@Override
+	protected void jumpToItem(int itemIndex) throws Exception {
+		if (restartOffset < 0) {
+			super.jumpToItem(itemIndex);
+			return;
+		}
+		if (restartOffset > fileSize || (restartOffset > 0 && file.byteAt(restartOffset - 1) != '\n')) {
+			throw new ItemStreamException("Offset " + restartOffset + " of " + resource
+					+ " is not the start of a line: the file has changed since the last run");
+		}
+		// the header lines are already skipped
+		position = Math.max(position, restartOffset);
+	}
+
+	private int copyLine(long start, long end) throws IOException {
+		long length = end - start;
+		if (length > Integer.MAX_VALUE - 8) {
+			throw new ParseException("Line at offset " + start + " of " + resource + " is too long");
+		}
+		if (line.length < length) {
+			line = Arrays.copyOf(line, (int) Math.max(length, Math.min(line.length * 2L, Integer.MAX_VALUE - 8)));
+		}
+		file.copy(start, end, line);
+		return (int) length;
+	}
+
+	@Override
+	protected void doClose() throws Exception {
+		position = 0;
+		if (file != null) {
+			try {
+				file.close();
+			} finally {
+				file = null;
+			}
+		}
+	}
+
+	/**
+	 * Sets a field of the current line to a property, converted to the type of the setter.
+	 */
+	private static class FieldSetter {
+
+		private final Method method;
+		private final Class<?> type;
+
+		FieldSetter(Method method) {
+			this.method = method;
+			this.type = ClassUtils.resolvePrimitiveIfNecessary(method.getParameterTypes()[0]);
+		}
+
+		static boolean isSupported(Class<?> type) {
+			Class<?> wrapper = ClassUtils.resolvePrimitiveIfNecessary(type);
+			return wrapper == String.class || wrapper == BigDecimal.class
+					|| ClassUtils.isPrimitiveWrapper(wrapper) && wrapper != Void.class;
+		}
+
+		void set(Object item, MappedDelimitedItemReader<?> reader, int token)
+				throws IllegalAccessException, InvocationTargetException {
+			if (type == String.class) {
+				method.invoke(item, reader.getString(token));
+				return;
+			}
+			if (reader.isEmpty(token)) {
+				if (!method.getParameterTypes()[0].isPrimitive()) {
+					method.invoke(item, (Object) null);
+				}
+				return;
+			}
+			method.invoke(item, convert(reader, token));
+		}
+
+		private Object convert(MappedDelimitedItemReader<?> reader, int token) {
+			if (type == Integer.class) {
+				long value = reader.getLong(token);
+				if (value != (int) value) {
+					throw new NumberFormatException("Out of range: " + value);
+				}
+				return (int) value;
+			}
+			if (type == Long.class) {
+				return reader.getLong(token);
+			}
+			if (type == Short.class) {
+				return Short.valueOf(reader.getString(token).trim());
+			}
+			if (type == Byte.class) {
+				return Byte.valueOf(reader.getString(token).trim());
+			}
+			if (type == Double.class) {
+				return Double.valueOf(reader.getString(token).trim());
+			}
+			if (type == Float.class) {
+				return Float.valueOf(reader.getString(token).trim());
+			}
+			if (type == Boolean.class) {
+				return Boolean.valueOf(reader.getString(token).trim());
+			}
+			if (type == Character.class) {
+				return reader.getString(token).charAt(0);
+			}
+			return new BigDecimal(reader.getString(token).trim());
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+
+import org.springframework.core.io.Resource;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Read-only view of a line oriented file, mapped in memory by windows of a fixed size, for the readers working
+ * on bytes. A resource out of the file system, such as a class path resource packaged in a jar, can not be
+ * mapped: it is loaded in memory instead.
+ */
+class MappedFile implements Closeable {
+
+	private final RandomAccessFile file;
+	private final long size;
+	private final int regionSize;
+	private ByteBuffer region;
+	private long regionStart;
+
+	MappedFile(Resource resource, int regionSize) throws IOException {
+		this.regionSize = regionSize;
+		File path = getFile(resource);
+		if (path == null) {
+			file = null;
+			region = ByteBuffer.wrap(StreamUtils.copyToByteArray(resource.getInputStream()));
+			size = region.limit();
+		} else {
+			file = new RandomAccessFile(path, "r");
+			size = file.getChannel().size();
+		}
+	}
+
+	private static File getFile(Resource resource) throws IOException {
+		try {
+			return resource.getFile();
+		} catch (FileNotFoundException e) {
+			if (!resource.exists()) {
+				throw e;
+			}
+			return null;
+		}
+	}
+
+	long size() {
+		return size;
+	}
+
+	byte byteAt(long offset) throws IOException {
+		map(offset);
+		return region.get((int) (offset - regionStart));
+	}
+
+	/**
+	 * @return the offset of the line feed ending the line, the size of the file if it is the last one
+	 */
+	long findLineEnd(long lineStart) throws IOException {
+		long offset = lineStart;
+		while (offset < size) {
+			map(offset);
+			int limit = region.limit();
+			for (int i = (int) (offset - regionStart); i < limit; i++) {
+				if (region.get(i) == '\n') {
+					return regionStart + i;
+				}
+			}
+			offset = regionStart + limit;
+		}
+		return size;
+	}
+
+	/**
+	 * Copies the bytes between the offsets to the start of the array, which must be large enough.
+	 */
+	void copy(long start, long end, byte[] bytes) throws IOException {
+		long offset = start;
+		while (offset < end) {
+			map(offset);
+			int from = (int) (offset - regionStart);
+			int count = (int) Math.min(end - offset, region.limit() - from);
+			ByteBuffer window = region.duplicate();
+			window.position(from);
+			window.get(bytes, (int) (offset - start), count);
+			offset += count;
+		}
+	}
+
+	/**
+	 * Maps the window holding the given offset, if not already mapped.
+	 */
+	private void map(long offset) throws IOException {
+		if (region != null && offset >= regionStart && offset < regionStart + region.limit()) {
+			return;
+		}
+		long length = Math.min(regionSize, size - offset);
+		region = file.getChannel().map(MapMode.READ_ONLY, offset, length);
+		regionStart = offset;
+	}
+
+	@Override
+	public void close() throws IOException {
+		region = null;
+		if (file != null) {
+			file.close();
+		}
+	}
+}
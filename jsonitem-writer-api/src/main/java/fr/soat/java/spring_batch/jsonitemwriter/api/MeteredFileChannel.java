@@ -0,0 +1,125 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.metrics.JsonItemWriterMetrics;
+
+/**
+ * File channel recording the bytes and time of its writes and forces into {@link JsonItemWriterMetrics}. Every
+ * output mode writes through its file channel, so decorating it measures the I/O of all of them at one place.
+ */
+class MeteredFileChannel extends FileChannel {
+
+	private final FileChannel channel;
+
+	private final JsonItemWriterMetrics metrics;
+
+	MeteredFileChannel(FileChannel channel, JsonItemWriterMetrics metrics) {
+		this.channel = channel;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public int write(ByteBuffer src) throws IOException {
+		long start = System.nanoTime();
+		int written = channel.write(src);
+		metrics.recordWrite(written, System.nanoTime() - start);
+		return written;
+	}
+
+	@Override
+	public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+		long start = System.nanoTime();
+		long written = channel.write(srcs, offset, length);
+		metrics.recordWrite(written, System.nanoTime() - start);
+		return written;
+	}
+
+	@Override
+	public int write(ByteBuffer src, long position) throws IOException {
+		long start = System.nanoTime();
+		int written = channel.write(src, position);
+		metrics.recordWrite(written, System.nanoTime() - start);
+		return written;
+	}
+
+	@Override
+	public void force(boolean metaData) throws IOException {
+		long start = System.nanoTime();
+		channel.force(metaData);
+		metrics.recordForce(System.nanoTime() - start);
+	}
+
+	@Override
+	public int read(ByteBuffer dst) throws IOException {
+		return channel.read(dst);
+	}
+
+	@Override
+	public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+		return channel.read(dsts, offset, length);
+	}
+
+	@Override
+	public int read(ByteBuffer dst, long position) throws IOException {
+		return channel.read(dst, position);
+	}
+
+	@Override
+	public long position() throws IOException {
+		return channel.position();
+	}
+
+	@Override
+	public FileChannel position(long newPosition) throws IOException {
+		channel.position(newPosition);
+		return this;
+	}
+
+	@Override
+	public long size() throws IOException {
+		return channel.size();
+	}
+
+	@Override
+	public FileChannel truncate(long size) throws IOException {
+		channel.truncate(size);
+		return this;
+	}
+
+	@Override
+	public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+		return channel.transferTo(position, count, target);
+	}
+
+	@Override
+	public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+		return channel.transferFrom(src, position, count);
+	}
+
+	@Override
+	public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+		return channel.map(mode, position, size);
+	}
+
+	@Override
+	public FileLock lock(long position, long size, boolean shared) throws IOException {
+		return channel.lock(position, size, shared);
+	}
+
+	@Override
+	public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+		return channel.tryLock(position, size, shared);
+	}
+
+	@Override
+	protected void implCloseChannel() throws IOException {
+		channel.close();
+	}
+}
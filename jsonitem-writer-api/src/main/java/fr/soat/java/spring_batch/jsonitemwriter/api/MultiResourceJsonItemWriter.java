@@ -0,0 +1,259 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.support.AbstractItemStreamItemWriter;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.Resource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Splits the output of a {@link JsonFlatFileItemWriter} into several valid json documents, rolling to the next
+ * file once a number of items or a number of bytes has been written to the current one.
+ *
+ * Files are named after the base resource and a {@link String#format(String, Object...)} pattern taking the
+ * index of the file, starting at 1 (by default the index is inserted before the extension:
+ * persons.json gives persons-1.json, persons-2.json...).
+ *
+ * Limits are checked at the end of each chunk, so a file may exceed them by at most one chunk. The footer of
+ * the full file is written with its last chunk, in the same transaction, and the next file is opened by the
+ * next chunk: the roll adds no flush or pass over the output. The creation of a file is not transactional, so
+ * the delegate writes its header straight to the file. If a transaction is rolled back, the delegate discards
+ * the chunk; if the chunk rolled the file, the roll is cancelled and the full file is reopened at its offset
+ * before the chunk, as on a restart.
+ *
+ * The index of the current file and its item count are saved in the execution context along with the state
+ * of the delegate, so a restart resumes in the right file at the right offset.
+ *
+ * @param <T>
+ */
+public class MultiResourceJsonItemWriter<T> extends AbstractItemStreamItemWriter<T> implements InitializingBean {
+
+	private static final org.slf4j.Logger logger = LoggerFactory.getLogger(MultiResourceJsonItemWriter.class);
+
+	private static final String RESOURCE_INDEX_KEY = "resource.index";
+	private static final String CURRENT_RESOURCE_ITEM_COUNT_KEY = "resource.item.count";
+
+	private JsonFlatFileItemWriter<T> delegate;
+	private Resource resource;
+	private String fileNamePattern;
+	private long itemCountLimitPerResource = Long.MAX_VALUE;
+	private long byteCountLimitPerResource = Long.MAX_VALUE;
+	private boolean saveState = true;
+
+	private int resourceIndex = 1;
+	private long currentResourceItemCount = 0;
+	private boolean opened = false;
+
+	// delegate state to reopen the full file with, after the rollback of the chunk that rolled it
+	private ExecutionContext reopenContext;
+
+	public MultiResourceJsonItemWriter() {
+		this.setExecutionContextName(ClassUtils.getShortName(MultiResourceJsonItemWriter.class));
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(delegate, "The delegate must be set");
+		Assert.notNull(resource, "The resource must be set");
+		Assert.isTrue(!delegate.isConcurrent(), "The delegate can not be in concurrent mode.");
+		Assert.isTrue(itemCountLimitPerResource > 0, "The item count limit must be positive.");
+		Assert.isTrue(byteCountLimitPerResource > 0, "The byte count limit must be positive.");
+		if (fileNamePattern == null) {
+			fileNamePattern = defaultFileNamePattern(resource.getFilename());
+		}
+	}
+
+	@Override
+	public void write(List<? extends T> items) throws Exception {
+		if (items.isEmpty()) {
+			return;
+		}
+		if (reopenContext != null) {
+			openDelegate(reopenContext);
+			reopenContext = null;
+		} else if (!opened) {
+			openDelegate(new ExecutionContext());
+		}
+		ExecutionContext chunkStartContext = null;
+		if (delegate.discardsOutputOnRollback() && TransactionSynchronizationManager.isSynchronizationActive()) {
+			chunkStartContext = new ExecutionContext();
+			delegate.update(chunkStartContext);
+		}
+		delegate.write(items);
+		long itemCountBefore = currentResourceItemCount;
+		currentResourceItemCount += items.size();
+
+		boolean roll = currentResourceItemCount >= itemCountLimitPerResource
+				|| (byteCountLimitPerResource < Long.MAX_VALUE && delegate.getPosition() >= byteCountLimitPerResource);
+		if (chunkStartContext != null) {
+			registerRollback(chunkStartContext, itemCountBefore, roll);
+		}
+		if (roll) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Rolling over {} after {} items", delegate.getResource(), currentResourceItemCount);
+			}
+			delegate.close();
+			resourceIndex++;
+			currentResourceItemCount = 0;
+			opened = false;
+		}
+	}
+
+	/**
+	 * Opens the first file right away on a new execution, so that an empty step still produces a valid
+	 * document, and the current file on restart. After a roll, the next file is opened by the next chunk.
+	 */
+	@Override
+	public void open(ExecutionContext executionContext) throws ItemStreamException {
+		resourceIndex = executionContext.getInt(getExecutionContextKey(RESOURCE_INDEX_KEY), 1);
+		currentResourceItemCount = executionContext.getLong(getExecutionContextKey(CURRENT_RESOURCE_ITEM_COUNT_KEY), 0);
+		reopenContext = null;
+		if (currentResourceItemCount > 0) {
+			openDelegate(executionContext);
+		} else if (resourceIndex == 1) {
+			openDelegate(new ExecutionContext());
+		}
+	}
+
+	@Override
+	public void update(ExecutionContext executionContext) throws ItemStreamException {
+		if (!saveState) {
+			return;
+		}
+		if (opened) {
+			delegate.update(executionContext);
+		}
+		executionContext.putInt(getExecutionContextKey(RESOURCE_INDEX_KEY), resourceIndex);
+		executionContext.putLong(getExecutionContextKey(CURRENT_RESOURCE_ITEM_COUNT_KEY), currentResourceItemCount);
+	}
+
+	@Override
+	public void close() throws ItemStreamException {
+		if (opened) {
+			delegate.close();
+			opened = false;
+		}
+	}
+
+	/**
+	 * Resource of the file with the given index.
+	 *
+	 * @param index starting at 1
+	 */
+	public Resource getResource(int index) {
+		try {
+			return resource.createRelative(String.format(fileNamePattern, index));
+		} catch (IOException e) {
+			throw new ItemStreamException("Could not create resource for file " + index, e);
+		}
+	}
+
+	private void openDelegate(ExecutionContext executionContext) {
+		if (opened) {
+			delegate.close();
+		}
+		delegate.setResource(getResource(resourceIndex));
+		delegate.open(executionContext);
+		opened = true;
+	}
+
+	/**
+	 * On rollback, forgets the items of the chunk: the delegate has discarded them. If the chunk rolled the file,
+	 * the roll is cancelled: the delegate has discarded the footer too, and the next write reopens the full file
+	 * at the beginning of the chunk.
+	 */
+	private void registerRollback(final ExecutionContext chunkStartContext, final long itemCountBefore,
+			final boolean roll) {
+		final int rollingResourceIndex = resourceIndex;
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCompletion(int status) {
+				if (status == TransactionSynchronization.STATUS_COMMITTED) {
+					return;
+				}
+				currentResourceItemCount = itemCountBefore;
+				resourceIndex = rollingResourceIndex;
+				if (roll) {
+					reopenContext = chunkStartContext;
+				}
+			}
+		});
+	}
+
+	private static String defaultFileNamePattern(String filename) {
+		String escaped = filename.replace("%", "%%");
+		String extension = StringUtils.getFilenameExtension(escaped);
+		if (extension == null) {
+			return escaped + "-%d";
+		}
+		return StringUtils.stripFilenameExtension(escaped) + "-%d." + extension;
+	}
+
+	/**
+	 * The writer the items are delegated to. Its resource is set by this writer.
+	 *
+	 * @param delegate
+	 */
+	public void setDelegate(JsonFlatFileItemWriter<T> delegate) {
+		this.delegate = delegate;
+	}
+
+	/**
+	 * Base resource, the files are created next to it.
+	 *
+	 * @param resource
+	 */
+	public void setResource(Resource resource) {
+		this.resource = resource;
+	}
+
+	/**
+	 * Format of the file names, taking the index of the file as only argument. Defaults to the name of the base
+	 * resource with "-%d" before the extension.
+	 *
+	 * @param fileNamePattern
+	 */
+	public void setFileNamePattern(String fileNamePattern) {
+		this.fileNamePattern = fileNamePattern;
+	}
+
+	/**
+	 * Number of items after which the next file is started. Unlimited by default.
+	 *
+	 * @param itemCountLimitPerResource
+	 */
+	public void setItemCountLimitPerResource(long itemCountLimitPerResource) {
+		this.itemCountLimitPerResource = itemCountLimitPerResource;
+	}
+
+	/**
+	 * Number of bytes after which the next file is started. Unlimited by default.
+	 *
+	 * @param byteCountLimitPerResource
+	 */
+	public void setByteCountLimitPerResource(long byteCountLimitPerResource) {
+		this.byteCountLimitPerResource = byteCountLimitPerResource;
+	}
+
+	/**
+	 * Set the flag indicating whether or not state should be saved in the
+	 * provided {@link ExecutionContext} during the {@link org.springframework.batch.item.ItemStream} call to
+	 * update. Setting this to false means that it will always start at the
+	 * beginning on a restart.
+	 *
+	 * @param saveState
+	 */
+	public void setSaveState(boolean saveState) {
+		this.saveState = saveState;
+	}
+}
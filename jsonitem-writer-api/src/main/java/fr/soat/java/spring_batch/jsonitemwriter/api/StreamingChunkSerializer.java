@@ -0,0 +1,214 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import java.io.FilterOutputStream;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.metrics.JsonItemWriterMetrics;
+import fr.soat.java.spring_batch.jsonitemwriter.api.utils.JsonUtils;
+
+/**
+ * Streaming write logic: items are serialized one after the other into a long-lived {@link JsonGenerator} bound
+ * to the output, so the chunk is never materialized as a String. The generator writes characters into the
+ * writer of the output, or bytes into its stream in direct UTF-8 mode and for the binary formats.
+ *
+ * When the sizes or the positions of the items are needed, the output of the generator is counted in bytes on
+ * its way to the output.
+ *
+ * @param <T>
+ */
+class StreamingChunkSerializer<T> implements ChunkSerializer<T> {
+
+	private final ChannelOutput output;
+
+	private final JsonItemAggregator<T> jsonItemAggregator;
+
+	private final String itemSeparator;
+
+	private final boolean jsonLines;
+
+	private final JsonOutputFormat outputFormat;
+
+	private final boolean byteOutput;
+
+	private final Charset charset;
+
+	private final JsonItemWriterMetrics metrics;
+
+	private final boolean counted;
+
+	// created on first use, and again after a failure
+	private JsonGenerator jsonGenerator;
+
+	// Bytes produced by the generator once encoded, only counted when metrics are set or indexing
+	private long generatedBytes;
+
+	// Set while pushing the generator content to the output without flushing the latter
+	private boolean holdFlush = false;
+
+	/**
+	 * @param output
+	 * @param jsonItemAggregator
+	 * @param itemSeparator written between items, unless writing json lines or a binary format
+	 * @param jsonLines whether each item is written on its own line, without separator
+	 * @param outputFormat
+	 * @param byteOutput whether the generator writes bytes into the stream of the output
+	 * @param charset encoding of the output
+	 * @param metrics records the item sizes, may be null
+	 * @param indexed whether the positions of the items are recorded
+	 */
+	StreamingChunkSerializer(ChannelOutput output, JsonItemAggregator<T> jsonItemAggregator, String itemSeparator,
+			boolean jsonLines, JsonOutputFormat outputFormat, boolean byteOutput, Charset charset,
+			JsonItemWriterMetrics metrics, boolean indexed) {
+		this.output = output;
+		this.jsonItemAggregator = jsonItemAggregator;
+		this.itemSeparator = itemSeparator;
+		this.jsonLines = jsonLines;
+		this.outputFormat = outputFormat;
+		this.byteOutput = byteOutput;
+		this.charset = charset;
+		this.metrics = metrics;
+		this.counted = metrics != null || indexed;
+	}
+
+	@Override
+	public void write(List<? extends T> items, long itemsWritten, ItemPositions positions) throws IOException {
+		JsonGenerator jsonGenerator = getJsonGenerator();
+		long chunkBytes = positions == null ? 0 : getGeneratedBytes();
+		int index = 0;
+		for (T item : items) {
+			if (!jsonLines && !outputFormat.isBinary() && (index > 0 || itemsWritten > 0)) {
+				jsonGenerator.writeRaw(itemSeparator);
+			}
+			if (positions != null && positions.isSampled(index)) {
+				positions.add(index, getGeneratedBytes() - chunkBytes);
+			}
+			long generated = metrics == null ? 0 : getGeneratedBytes();
+			jsonItemAggregator.aggregate(item, jsonGenerator);
+			if (metrics != null) {
+				metrics.recordItemSize(getGeneratedBytes() - generated);
+			}
+			if (jsonLines) {
+				jsonGenerator.writeRaw(JsonFlatFileItemWriter.JSON_LINES_SEPARATOR);
+			}
+			index++;
+		}
+	}
+
+	@Override
+	public void writeSerialized(String json) throws IOException {
+		getJsonGenerator().writeRaw(json);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (jsonGenerator != null) {
+			jsonGenerator.flush();
+		} else {
+			output.flush();
+		}
+	}
+
+	/**
+	 * Drops the generator without flushing it, a new one is created on next write.
+	 */
+	@Override
+	public void discard() {
+		jsonGenerator = null;
+	}
+
+	private JsonGenerator getJsonGenerator() throws IOException {
+		if (jsonGenerator == null) {
+			if (outputFormat.isBinary()) {
+				OutputStream outputStream = output.getOutputStream();
+				jsonGenerator = outputFormat.createGenerator(
+						counted ? countGenerated(outputStream) : outputStream, false);
+			} else if (byteOutput) {
+				OutputStream outputStream = output.getOutputStream();
+				jsonGenerator = JsonUtils.createJsonGenerator(
+						counted ? countGenerated(outputStream) : outputStream);
+			} else {
+				jsonGenerator = JsonUtils.createJsonGenerator(
+						counted ? countGenerated(output.getWriter()) : output.getWriter());
+			}
+		}
+		return jsonGenerator;
+	}
+
+	/**
+	 * Bytes produced by the generator so far, once encoded. Pushes the content buffered by the generator down
+	 * to the output, without flushing the output itself. Only counted when metrics are set or indexing.
+	 *
+	 * @throws IOException
+	 */
+	private long getGeneratedBytes() throws IOException {
+		holdFlush = true;
+		try {
+			jsonGenerator.flush();
+		} finally {
+			holdFlush = false;
+		}
+		return generatedBytes;
+	}
+
+	private Writer countGenerated(Writer writer) {
+		generatedBytes = 0;
+		return new FilterWriter(writer) {
+			@Override
+			public void write(int c) throws IOException {
+				super.write(c);
+				generatedBytes += ItemPositions.encodedLength((char) c, charset);
+			}
+
+			@Override
+			public void write(char[] cbuf, int off, int len) throws IOException {
+				super.write(cbuf, off, len);
+				generatedBytes += ItemPositions.encodedLength(CharBuffer.wrap(cbuf), off, off + len, charset);
+			}
+
+			@Override
+			public void write(String str, int off, int len) throws IOException {
+				super.write(str, off, len);
+				generatedBytes += ItemPositions.encodedLength(str, off, off + len, charset);
+			}
+
+			@Override
+			public void flush() throws IOException {
+				if (!holdFlush) {
+					super.flush();
+				}
+			}
+		};
+	}
+
+	private OutputStream countGenerated(OutputStream outputStream) {
+		generatedBytes = 0;
+		return new FilterOutputStream(outputStream) {
+			@Override
+			public void write(int b) throws IOException {
+				out.write(b);
+				generatedBytes++;
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+				generatedBytes += len;
+			}
+
+			@Override
+			public void flush() throws IOException {
+				if (!holdFlush) {
+					super.flush();
+				}
+			}
+		};
+	}
+}
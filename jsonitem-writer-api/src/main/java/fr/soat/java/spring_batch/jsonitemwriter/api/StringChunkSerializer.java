@@ -0,0 +1,104 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.metrics.JsonItemWriterMetrics;
+
+/**
+ * Default write logic: each item is serialized to a String by the aggregator, and the chunk is written to the
+ * output at once. Also serializes the slices of the parallel mode and the runs of the concurrent mode, whatever
+ * the write logic of the writer.
+ *
+ * @param <T>
+ */
+class StringChunkSerializer<T> implements ChunkSerializer<T> {
+
+	private final ChannelOutput output;
+
+	private final JsonItemAggregator<T> jsonItemAggregator;
+
+	private final String itemSeparator;
+
+	private final boolean jsonLines;
+
+	private final Charset charset;
+
+	private final JsonItemWriterMetrics metrics;
+
+	/**
+	 * @param output
+	 * @param jsonItemAggregator
+	 * @param itemSeparator written between items, unless writing json lines
+	 * @param jsonLines whether each item is written on its own line, without separator
+	 * @param charset encoding of the output
+	 * @param metrics records the item sizes, may be null
+	 */
+	StringChunkSerializer(ChannelOutput output, JsonItemAggregator<T> jsonItemAggregator, String itemSeparator,
+			boolean jsonLines, Charset charset, JsonItemWriterMetrics metrics) {
+		this.output = output;
+		this.jsonItemAggregator = jsonItemAggregator;
+		this.itemSeparator = itemSeparator;
+		this.jsonLines = jsonLines;
+		this.charset = charset;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public void write(List<? extends T> items, long itemsWritten, ItemPositions positions) throws IOException {
+		String jsonOutput = serialize(items, 0, itemsWritten, positions);
+		if (positions != null) {
+			positions.toBytePositions(jsonOutput, charset);
+		}
+		output.write(jsonOutput);
+	}
+
+	@Override
+	public void writeSerialized(String json) throws IOException {
+		output.write(json);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		output.flush();
+	}
+
+	@Override
+	public void discard() {
+		// nothing is held between chunks
+	}
+
+	/**
+	 * Serializes consecutive items of a chunk, each one preceded by a separator unless it is the very first
+	 * item of the output. Thread safe.
+	 *
+	 * @param slice
+	 * @param firstIndex index of the first item of the slice in its chunk
+	 * @param itemsWritten items written before the chunk
+	 * @param positions where the character positions of the sampled items in the slice are recorded, may be null
+	 * @return
+	 */
+	String serialize(List<? extends T> slice, int firstIndex, long itemsWritten, ItemPositions positions) {
+		StringBuilder jsonOutput = new StringBuilder();
+		int index = firstIndex;
+		for (T item : slice) {
+			if (!jsonLines && (index > 0 || itemsWritten > 0)) {
+				jsonOutput.append(itemSeparator);
+			}
+			if (positions != null && positions.isSampled(index)) {
+				positions.add(index, jsonOutput.length());
+			}
+			String json = jsonItemAggregator.aggregate(item);
+			if (metrics != null && json != null) {
+				metrics.recordItemSize(ItemPositions.encodedLength(json, 0, json.length(), charset));
+			}
+			jsonOutput.append(json);
+			if (jsonLines) {
+				jsonOutput.append(JsonFlatFileItemWriter.JSON_LINES_SEPARATOR);
+			}
+			index++;
+		}
+		return jsonOutput.toString();
+	}
+}
@@ -0,0 +1,128 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.springframework.batch.item.WriteFailedException;
+import org.springframework.batch.support.transaction.TransactionAwareBufferedWriter;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.sync.ForceSyncPolicy;
+
+/**
+ * Output of the default text mode: in a transaction, the characters are buffered until the commit and dropped on
+ * rollback by the {@link TransactionAwareBufferedWriter} it extends. Without transaction, they go straight to the
+ * channel.
+ */
+class TransactionalChannelOutput extends TransactionAwareBufferedWriter implements ChannelOutput {
+
+	private final FileChannel channel;
+
+	private final ForceSyncPolicy forceSyncPolicy;
+
+	private boolean written = false;
+
+	/**
+	 * @param channel the channel the characters are written to
+	 * @param encoding
+	 * @param forceSyncPolicy policy applied before each commit, or on flush without transaction, may be null
+	 * @param closeCallback closes the channel, once the buffer of the current transaction is written
+	 */
+	TransactionalChannelOutput(FileChannel channel, String encoding, ForceSyncPolicy forceSyncPolicy,
+			Runnable closeCallback) {
+		super(channel, closeCallback);
+		this.channel = channel;
+		this.forceSyncPolicy = forceSyncPolicy;
+		setEncoding(encoding);
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		super.write(cbuf, off, len);
+		if (TransactionSynchronizationManager.isActualTransactionActive()) {
+			registerForceSyncPolicy();
+		} else {
+			written = true;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		super.flush();
+		// without transaction, the header and the footer are written directly to the channel
+		if (written && forceSyncPolicy != null) {
+			written = false;
+			forceSyncPolicy.afterWrite(channel);
+		}
+	}
+
+	/**
+	 * Bypasses the buffer of the transaction.
+	 */
+	@Override
+	public void writeHeader(byte[] header) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(header);
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		if (forceSyncPolicy != null) {
+			forceSyncPolicy.afterWrite(channel);
+		}
+	}
+
+	@Override
+	public Writer getWriter() {
+		return this;
+	}
+
+	@Override
+	public OutputStream getOutputStream() {
+		return null;
+	}
+
+	@Override
+	public long position() throws IOException {
+		return channel.position() + getBufferSize();
+	}
+
+	@Override
+	public void truncate(long position) throws IOException {
+		channel.truncate(position);
+		channel.position(position);
+	}
+
+	/**
+	 * Applies the force sync policy before the commit, once the buffer of the transaction has been written to
+	 * the channel.
+	 */
+	private void registerForceSyncPolicy() {
+		if (forceSyncPolicy == null || TransactionSynchronizationManager.hasResource(this)) {
+			return;
+		}
+		TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void beforeCommit(boolean readOnly) {
+				// a channel closed meanwhile has been forced before closing
+				if (!channel.isOpen()) {
+					return;
+				}
+				try {
+					forceSyncPolicy.afterWrite(channel);
+				} catch (IOException e) {
+					throw new WriteFailedException(
+							"Could not force data.  The file may be corrupt.", e);
+				}
+			}
+
+			@Override
+			public void afterCompletion(int status) {
+				TransactionSynchronizationManager.unbindResourceIfPossible(TransactionalChannelOutput.this);
+			}
+		});
+	}
+}
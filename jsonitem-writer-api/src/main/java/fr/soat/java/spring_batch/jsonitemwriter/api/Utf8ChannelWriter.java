@@ -0,0 +1,264 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import org.springframework.batch.item.WriteFailedException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.sync.ForceSyncPolicy;
+
+/**
+ * UTF-8 output buffering bytes instead of characters: json generators write their bytes through
+ * {@link #getOutputStream()} into a reusable {@link ByteBuffer}, which is written as is to the channel, without
+ * any {@link java.nio.charset.CharsetEncoder}. The {@link Writer} methods, used for the header, the footer and
+ * the separators, encode their characters into the same buffer. The binary output formats only use the stream.
+ *
+ * If the writer is transactional and a transaction is active, the buffer is only written to the channel before
+ * the commit, and cleared on rollback, as a
+ * {@link org.springframework.batch.support.transaction.TransactionAwareBufferedWriter} does. Otherwise it is
+ * written when full and on {@link #flush()}.
+ *
+ * Given a {@link DirectBufferPool}, the buffer is taken from the pool when bytes are written, and given back as
+ * soon as they reach the channel, instead of being owned by the writer.
+ */
+class Utf8ChannelWriter extends Writer implements ChannelOutput {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final FileChannel channel;
+
+	private final boolean transactional;
+
+	private final ForceSyncPolicy forceSyncPolicy;
+
+	private final Runnable closeCallback;
+
+	private final DirectBufferPool bufferPool;
+
+	private final OutputStream outputStream = new OutputStream() {
+		@Override
+		public void write(int b) throws IOException {
+			ensureCapacity(1);
+			buffer.put((byte) b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			append(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			Utf8ChannelWriter.this.flush();
+		}
+	};
+
+	// null while no pooled buffer is held
+	private ByteBuffer buffer;
+
+	private boolean closeAfterCompletion = false;
+
+	/**
+	 * @param channel the channel the bytes are written to
+	 * @param bufferSize initial size of the buffer, which grows as needed within a transaction
+	 * @param transactional whether the buffer is only written when the transaction commits
+	 * @param forceSyncPolicy policy applied after each write, may be null
+	 * @param closeCallback closes the channel, once the buffer of the current transaction is written
+	 * @param bufferPool pool the buffers are taken from, in place of the initial buffer, may be null
+	 */
+	Utf8ChannelWriter(FileChannel channel, int bufferSize, boolean transactional, ForceSyncPolicy forceSyncPolicy,
+			Runnable closeCallback, DirectBufferPool bufferPool) {
+		this.channel = channel;
+		this.bufferPool = bufferPool;
+		this.buffer = bufferPool == null ? ByteBuffer.allocate(bufferSize) : null;
+		this.transactional = transactional;
+		this.forceSyncPolicy = forceSyncPolicy;
+		this.closeCallback = closeCallback;
+	}
+
+	@Override
+	public Writer getWriter() {
+		return this;
+	}
+
+	/**
+	 * Stream writing into the same buffer as this writer. Closing it has no effect.
+	 */
+	@Override
+	public OutputStream getOutputStream() {
+		return outputStream;
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		byte[] bytes = new String(cbuf, off, len).getBytes(UTF_8);
+		append(bytes, 0, bytes.length);
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		byte[] bytes = str.substring(off, off + len).getBytes(UTF_8);
+		append(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Bypasses the buffer, which holds nothing yet.
+	 */
+	@Override
+	public void writeHeader(byte[] header) throws IOException {
+		ByteBuffer bytes = ByteBuffer.wrap(header);
+		while (bytes.hasRemaining()) {
+			channel.write(bytes);
+		}
+		if (forceSyncPolicy != null) {
+			forceSyncPolicy.afterWrite(channel);
+		}
+	}
+
+	/**
+	 * Writes the buffer to the channel, unless it is kept until the commit of the current transaction.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (!inTransaction()) {
+			drain();
+		}
+	}
+
+	/**
+	 * Closes the channel, after the completion of the current transaction if it has bytes waiting for the
+	 * commit.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (inTransaction() && buffer != null && buffer.position() > 0) {
+			closeAfterCompletion = true;
+			return;
+		}
+		try {
+			drain();
+		} finally {
+			closeCallback.run();
+		}
+	}
+
+	/**
+	 * Drops the buffered bytes, if any, and truncates the channel.
+	 */
+	@Override
+	public void truncate(long position) throws IOException {
+		if (buffer != null) {
+			discard();
+		}
+		channel.truncate(position);
+		channel.position(position);
+	}
+
+	/**
+	 * Byte offset of the output once the buffer is written.
+	 */
+	@Override
+	public long position() throws IOException {
+		return channel.position() + (buffer == null ? 0 : buffer.position());
+	}
+
+	private void append(byte[] b, int off, int len) throws IOException {
+		ensureCapacity(len);
+		buffer.put(b, off, len);
+	}
+
+	private void ensureCapacity(int len) throws IOException {
+		if (buffer != null && buffer.remaining() >= len) {
+			return;
+		}
+		if (!inTransaction()) {
+			drain();
+		}
+		if (buffer == null) {
+			buffer = bufferPool.acquire(len);
+			return;
+		}
+		if (buffer.remaining() >= len) {
+			return;
+		}
+		int capacity = Math.max(buffer.capacity() * 2, buffer.position() + len);
+		ByteBuffer larger = bufferPool == null ? ByteBuffer.allocate(capacity) : bufferPool.acquire(capacity);
+		buffer.flip();
+		larger.put(buffer);
+		if (bufferPool != null) {
+			bufferPool.release(buffer);
+		}
+		buffer = larger;
+	}
+
+	private void drain() throws IOException {
+		if (buffer == null || buffer.position() == 0) {
+			return;
+		}
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		if (bufferPool != null) {
+			bufferPool.recordChunkSize(buffer.limit());
+		}
+		discard();
+		if (forceSyncPolicy != null) {
+			forceSyncPolicy.afterWrite(channel);
+		}
+	}
+
+	/**
+	 * Drops the content of the buffer, giving it back to the pool if any.
+	 */
+	private void discard() {
+		if (bufferPool == null) {
+			buffer.clear();
+		} else if (buffer != null) {
+			bufferPool.release(buffer);
+			buffer = null;
+		}
+	}
+
+	/**
+	 * Whether the buffer belongs to the current transaction, registering the synchronization on first call.
+	 */
+	private boolean inTransaction() {
+		if (!transactional || !TransactionSynchronizationManager.isActualTransactionActive()) {
+			return false;
+		}
+		if (!TransactionSynchronizationManager.hasResource(this)) {
+			TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void beforeCommit(boolean readOnly) {
+					try {
+						drain();
+					} catch (IOException e) {
+						throw new WriteFailedException("Could not write data.  The file may be corrupt.", e);
+					}
+				}
+
+				@Override
+				public void afterCompletion(int status) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(Utf8ChannelWriter.this);
+					if (status != TransactionSynchronization.STATUS_COMMITTED) {
+						discard();
+					}
+					if (closeAfterCompletion) {
+						closeAfterCompletion = false;
+						closeCallback.run();
+					}
+				}
+			});
+		}
+		return true;
+	}
+}
@@ -0,0 +1,22 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an item class for which the jsonitem-writer-apt annotation processor generates, in the same package,
+ * a {@link fr.soat.java.spring_batch.jsonitemwriter.api.GeneratedJsonItemAggregator} named after the class
+ * ({@code Person} gives {@code PersonGeneratedJsonItemAggregator}).
+ *
+ * The properties are those Jackson finds with its default configuration: public getters and public fields,
+ * in the order of the fields. {@code @JsonIgnore} and {@code @JsonProperty} are honored, any other Jackson
+ * annotation on the class or its members is rejected at compile time.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface JsonItem {
+}
@@ -0,0 +1,218 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api.index;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Sidecar index of a json output: the byte offset of every interval-th item, item 0 included. The offset is
+ * the one of the first byte of the item, after its separator. Binary format, big endian:
+ *
+ * <pre>
+ * int magic ("JSIX"), int version (1), int interval, int reserved
+ * long offset of item 0, long offset of item interval, long offset of item 2 * interval...
+ * </pre>
+ *
+ * An entry is written at a fixed position, so reaching item n takes one read at the entry n / interval, then
+ * skipping n % interval items. While the output is being written, the entries past its last commit may belong
+ * to rolled back items; the index is truncated to the committed items on close and on restart.
+ */
+public class OffsetIndex implements Closeable {
+
+	/**
+	 * Suffix added to the name of the output file to get the name of its index.
+	 */
+	public static final String FILE_SUFFIX = ".idx";
+
+	private static final int MAGIC = 0x4A534958;
+
+	private static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 16;
+
+	private static final int ENTRY_SIZE = 8;
+
+	private final RandomAccessFile file;
+
+	private final FileChannel channel;
+
+	private final int interval;
+
+	private final ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+
+	private OffsetIndex(RandomAccessFile file, int interval) {
+		this.file = file;
+		this.channel = file.getChannel();
+		this.interval = interval;
+	}
+
+	/**
+	 * @param output the indexed json file
+	 * @return the index file of the output
+	 */
+	public static File getIndexFile(File output) {
+		return new File(output.getPath() + FILE_SUFFIX);
+	}
+
+	/**
+	 * Opens an existing index for reading.
+	 *
+	 * @param indexFile
+	 * @throws IOException if the file is not an index
+	 */
+	public static OffsetIndex open(File indexFile) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+		try {
+			return new OffsetIndex(file, readHeader(file));
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Creates an empty index, replacing any existing file.
+	 *
+	 * @param indexFile
+	 * @param interval number of items between two entries
+	 * @throws IOException
+	 */
+	public static OffsetIndex create(File indexFile, int interval) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(indexFile, "rw");
+		try {
+			file.setLength(0);
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION).putInt(interval).putInt(0);
+			header.flip();
+			while (header.hasRemaining()) {
+				file.getChannel().write(header);
+			}
+			return new OffsetIndex(file, interval);
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Opens an existing index to go on writing it.
+	 *
+	 * @param indexFile
+	 * @param interval expected number of items between two entries
+	 * @throws IOException if the file is not an index or has another interval
+	 */
+	public static OffsetIndex openForUpdate(File indexFile, int interval) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(indexFile, "rw");
+		try {
+			int fileInterval = readHeader(file);
+			if (fileInterval != interval) {
+				throw new IOException("Index " + indexFile + " has an interval of " + fileInterval
+						+ " items instead of " + interval);
+			}
+			return new OffsetIndex(file, interval);
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	private static int readHeader(RandomAccessFile file) throws IOException {
+		if (file.length() < HEADER_SIZE || file.readInt() != MAGIC) {
+			throw new IOException("Not an offset index");
+		}
+		int version = file.readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported offset index version " + version);
+		}
+		return file.readInt();
+	}
+
+	/**
+	 * Number of items between two entries.
+	 */
+	public int getInterval() {
+		return interval;
+	}
+
+	public long getEntryCount() throws IOException {
+		return (channel.size() - HEADER_SIZE) / ENTRY_SIZE;
+	}
+
+	/**
+	 * @param entryIndex
+	 * @return the byte offset of the item entryIndex * interval
+	 * @throws IOException
+	 */
+	public synchronized long getOffset(long entryIndex) throws IOException {
+		entry.clear();
+		long position = HEADER_SIZE + entryIndex * ENTRY_SIZE;
+		while (entry.hasRemaining()) {
+			if (channel.read(entry, position + entry.position()) < 0) {
+				throw new IOException("No entry " + entryIndex + " in the index");
+			}
+		}
+		return entry.getLong(0);
+	}
+
+	/**
+	 * @param item ordinal of an item, from 0
+	 * @return the byte offset of the closest indexed item at or before it, which is
+	 *         {@code item % interval} items before it
+	 * @throws IOException
+	 */
+	public long getSampledOffset(long item) throws IOException {
+		return getOffset(item / interval);
+	}
+
+	/**
+	 * Records the offset of an item, if it is an indexed one.
+	 *
+	 * @param item ordinal of the item, from 0
+	 * @param offset byte offset of the item
+	 * @throws IOException
+	 */
+	public synchronized void put(long item, long offset) throws IOException {
+		if (item % interval != 0) {
+			return;
+		}
+		entry.clear();
+		entry.putLong(0, offset);
+		long position = HEADER_SIZE + item / interval * ENTRY_SIZE;
+		while (entry.hasRemaining()) {
+			channel.write(entry, position + entry.position());
+		}
+	}
+
+	/**
+	 * Whether the given item is an indexed one.
+	 */
+	public boolean isIndexed(long item) {
+		return item % interval == 0;
+	}
+
+	/**
+	 * Drops the entries of the items past the given count.
+	 *
+	 * @param itemCount
+	 * @throws IOException
+	 */
+	public void truncate(long itemCount) throws IOException {
+		long entries = (itemCount + interval - 1) / interval;
+		channel.truncate(HEADER_SIZE + entries * ENTRY_SIZE);
+	}
+
+	/**
+	 * Forces the index to the device.
+	 */
+	public void force() throws IOException {
+		channel.force(false);
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+}
@@ -0,0 +1,87 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of positive values with power of two buckets: bucket 0 counts the zeros, bucket i counts the values
+ * v such that 2^(i-1) <= v < 2^i. Recording is lock free, so a histogram may be fed by several threads.
+ */
+public class Histogram {
+
+	private static final int BUCKETS = 64;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong sum = new AtomicLong();
+
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long value) {
+		buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(Math.max(value, 0)));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		long currentMax;
+		while (value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value)) {
+			// retry
+		}
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public long getMean() {
+		long n = count.get();
+		return n == 0 ? 0 : sum.get() / n;
+	}
+
+	/**
+	 * Upper bound of the bucket holding the given percentile, capped by the maximum: an estimate within a
+	 * factor of two.
+	 *
+	 * @param percentile between 0 and 100
+	 */
+	public long getPercentile(double percentile) {
+		long rank = (long) Math.ceil(count.get() * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += buckets.get(i);
+			if (seen >= rank && seen > 0) {
+				return i == 0 ? 0 : Math.min((1L << i) - 1, max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Counts per bucket, up to the last non empty one.
+	 */
+	public long[] getBuckets() {
+		long[] counts = new long[BUCKETS];
+		int length = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+			if (counts[i] > 0) {
+				length = i + 1;
+			}
+		}
+		return Arrays.copyOf(counts, length);
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets.set(i, 0);
+		}
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+}
@@ -0,0 +1,214 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of a {@link fr.soat.java.spring_batch.jsonitemwriter.api.JsonFlatFileItemWriter}: items and bytes
+ * written, time split between serialization, channel writes, forces and async waits, chunk and item size
+ * histograms. Tells whether a slow job is bound by the serialization or by the volume.
+ *
+ * Thread safe. An instance may be shared by several writers (partitions, rolling files) to get their total, and
+ * exported to JMX as a standard MBean, by the writer itself or by a Spring {@code MBeanExporter}.
+ */
+public class JsonItemWriterMetrics implements JsonItemWriterMetricsMBean {
+
+	private final AtomicLong itemsWritten = new AtomicLong();
+
+	private final AtomicLong chunksWritten = new AtomicLong();
+
+	private final AtomicLong bytesWritten = new AtomicLong();
+
+	private final AtomicLong currentOffset = new AtomicLong();
+
+	private final AtomicLong serializationNanos = new AtomicLong();
+
+	private final AtomicLong ioNanos = new AtomicLong();
+
+	private final AtomicLong forceNanos = new AtomicLong();
+
+	private final AtomicLong forceCount = new AtomicLong();
+
+	private final AtomicLong asyncWaitNanos = new AtomicLong();
+
+	private final Histogram chunkSizes = new Histogram();
+
+	private final Histogram itemSizes = new Histogram();
+
+	// channel write and async wait time of the current thread, to take it out of the time spent in write()
+	private final ThreadLocal<long[]> threadBlockedNanos = new ThreadLocal<long[]>() {
+		@Override
+		protected long[] initialValue() {
+			return new long[1];
+		}
+	};
+
+	/**
+	 * @param itemCount items of the chunk
+	 * @param nanos time spent serializing the chunk, channel writes and async waits excluded
+	 */
+	public void recordChunk(int itemCount, long nanos) {
+		chunksWritten.incrementAndGet();
+		itemsWritten.addAndGet(itemCount);
+		chunkSizes.record(itemCount);
+		serializationNanos.addAndGet(nanos);
+	}
+
+	/**
+	 * @param size bytes of the serialized item, once encoded
+	 */
+	public void recordItemSize(long size) {
+		itemSizes.record(size);
+	}
+
+	public void recordWrite(long bytes, long nanos) {
+		bytesWritten.addAndGet(bytes);
+		ioNanos.addAndGet(nanos);
+		threadBlockedNanos.get()[0] += nanos;
+	}
+
+	/**
+	 * @param nanos time the calling thread waited for the I/O thread of the async mode to take a buffer
+	 */
+	public void recordAsyncWait(long nanos) {
+		asyncWaitNanos.addAndGet(nanos);
+		threadBlockedNanos.get()[0] += nanos;
+	}
+
+	public void recordForce(long nanos) {
+		forceCount.incrementAndGet();
+		forceNanos.addAndGet(nanos);
+	}
+
+	public void setCurrentOffset(long offset) {
+		currentOffset.set(offset);
+	}
+
+	/**
+	 * Time the calling thread spent in channel writes and async waits since it started, in nanoseconds.
+	 */
+	public long getCurrentThreadBlockedNanos() {
+		return threadBlockedNanos.get()[0];
+	}
+
+	@Override
+	public long getItemsWritten() {
+		return itemsWritten.get();
+	}
+
+	@Override
+	public long getChunksWritten() {
+		return chunksWritten.get();
+	}
+
+	@Override
+	public long getBytesWritten() {
+		return bytesWritten.get();
+	}
+
+	@Override
+	public long getCurrentOffset() {
+		return currentOffset.get();
+	}
+
+	@Override
+	public long getSerializationTime() {
+		return TimeUnit.NANOSECONDS.toMillis(serializationNanos.get());
+	}
+
+	@Override
+	public long getIoTime() {
+		return TimeUnit.NANOSECONDS.toMillis(ioNanos.get());
+	}
+
+	@Override
+	public long getForceTime() {
+		return TimeUnit.NANOSECONDS.toMillis(forceNanos.get());
+	}
+
+	@Override
+	public long getForceCount() {
+		return forceCount.get();
+	}
+
+	@Override
+	public long getAsyncWaitTime() {
+		return TimeUnit.NANOSECONDS.toMillis(asyncWaitNanos.get());
+	}
+
+	@Override
+	public double getMeanSerializationTimePerChunk() {
+		return perChunk(serializationNanos.get());
+	}
+
+	@Override
+	public double getMeanIoTimePerChunk() {
+		return perChunk(ioNanos.get());
+	}
+
+	@Override
+	public double getMeanForceTimePerChunk() {
+		return perChunk(forceNanos.get());
+	}
+
+	@Override
+	public long getChunkSizeMean() {
+		return chunkSizes.getMean();
+	}
+
+	@Override
+	public long getChunkSizeMax() {
+		return chunkSizes.getMax();
+	}
+
+	@Override
+	public long[] getChunkSizeHistogram() {
+		return chunkSizes.getBuckets();
+	}
+
+	@Override
+	public long getItemSizeMean() {
+		return itemSizes.getMean();
+	}
+
+	@Override
+	public long getItemSizeMax() {
+		return itemSizes.getMax();
+	}
+
+	@Override
+	public long getItemSizeP99() {
+		return itemSizes.getPercentile(99);
+	}
+
+	@Override
+	public long[] getItemSizeHistogram() {
+		return itemSizes.getBuckets();
+	}
+
+	@Override
+	public void reset() {
+		itemsWritten.set(0);
+		chunksWritten.set(0);
+		bytesWritten.set(0);
+		serializationNanos.set(0);
+		ioNanos.set(0);
+		forceNanos.set(0);
+		forceCount.set(0);
+		asyncWaitNanos.set(0);
+		chunkSizes.reset();
+		itemSizes.reset();
+	}
+
+	@Override
+	public String toString() {
+		return "items=" + getItemsWritten() + ", chunks=" + getChunksWritten() + ", bytes=" + getBytesWritten()
+				+ ", serialization=" + getSerializationTime() + "ms, io=" + getIoTime() + "ms, force="
+				+ getForceTime() + "ms, async wait=" + getAsyncWaitTime() + "ms";
+	}
+
+	private double perChunk(long nanos) {
+		long chunks = chunksWritten.get();
+		return chunks == 0 ? 0 : (double) nanos / chunks / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+}
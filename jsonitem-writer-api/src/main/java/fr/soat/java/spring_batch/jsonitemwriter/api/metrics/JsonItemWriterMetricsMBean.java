@@ -0,0 +1,81 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api.metrics;
+
+/**
+ * JMX view of {@link JsonItemWriterMetrics}. Times are in milliseconds, sizes in bytes.
+ */
+public interface JsonItemWriterMetricsMBean {
+
+	/**
+	 * Items handed to {@code write()}, those of rolled back chunks included.
+	 */
+	long getItemsWritten();
+
+	long getChunksWritten();
+
+	/**
+	 * Bytes handed to the file channel, compressed ones in gzip mode. Includes the output of rolled back chunks
+	 * written before the rollback, and nothing in mapped mode, which writes through memory.
+	 */
+	long getBytesWritten();
+
+	/**
+	 * Byte offset of the output at the last commit.
+	 */
+	long getCurrentOffset();
+
+	/**
+	 * Time spent in {@code write()} outside of file channel writes and async waits: serialization, encoding and
+	 * buffering.
+	 */
+	long getSerializationTime();
+
+	/**
+	 * Time spent in file channel writes, whatever the thread: the I/O thread in async mode, the commit in
+	 * transactional mode.
+	 */
+	long getIoTime();
+
+	/**
+	 * Time spent forcing the file channel to the device.
+	 */
+	long getForceTime();
+
+	long getForceCount();
+
+	/**
+	 * Time spent in {@code write()} waiting for the I/O thread of the async mode to take a buffer, the queue
+	 * being full: the disk does not keep up with the serialization.
+	 */
+	long getAsyncWaitTime();
+
+	double getMeanSerializationTimePerChunk();
+
+	double getMeanIoTimePerChunk();
+
+	double getMeanForceTimePerChunk();
+
+	long getChunkSizeMean();
+
+	long getChunkSizeMax();
+
+	/**
+	 * Items per chunk, in power of two buckets: index i counts the chunks of 2^(i-1) to 2^i - 1 items.
+	 */
+	long[] getChunkSizeHistogram();
+
+	/**
+	 * Size of the serialized items, in bytes once encoded.
+	 */
+	long getItemSizeMean();
+
+	long getItemSizeMax();
+
+	long getItemSizeP99();
+
+	/**
+	 * Serialized item sizes, in power of two buckets: index i counts the items of 2^(i-1) to 2^i - 1.
+	 */
+	long[] getItemSizeHistogram();
+
+	void reset();
+}
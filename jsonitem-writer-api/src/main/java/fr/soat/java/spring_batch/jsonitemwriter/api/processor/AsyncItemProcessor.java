@@ -0,0 +1,197 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api.processor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+/**
+ * Processes each item on an executor and returns at once the future of the result, so that the items of a
+ * chunk are processed concurrently while the step goes on with the next ones. Meant for processors waiting on
+ * I/O, such as lookups in a database or a remote service. The futures are unwrapped in order by
+ * {@link AsyncItemWriter}, which must be the writer of the step.
+ *
+ * Plugged in a step with {@link ItemListStepBuilder}, it processes the chunk in slices of consecutive items
+ * instead, one task per slice, with an {@link ItemListProcessor} delegate or the item delegate wrapped in an
+ * {@link ItemProcessorListAdapter}. There is still one future per item of the chunk: the results of a slice,
+ * followed by null for the items the delegate filtered out.
+ *
+ * The step execution is made available to the processing threads, so that step scoped beans can be used by
+ * the delegate. Items filtered by the delegate are dropped by the writer: the step only sees their futures, so
+ * it counts them as written rather than filtered.
+ *
+ * @param <I> type of the items read
+ * @param <O> type of the items written
+ */
+public class AsyncItemProcessor<I, O> implements ItemProcessor<I, Future<O>>, ItemListProcessor<I, Future<O>>,
+		InitializingBean {
+
+	private static final int DEFAULT_SLICE_SIZE = 16;
+
+	private ItemProcessor<I, O> delegate;
+	private ItemListProcessor<I, O> listDelegate;
+	private ExecutorService executor;
+	private int sliceSize = DEFAULT_SLICE_SIZE;
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.isTrue(delegate != null ^ listDelegate != null,
+				"Either the delegate item processor or the delegate item list processor must be set");
+		Assert.notNull(executor, "The executor must be set");
+		Assert.isTrue(sliceSize > 0, "The slice size must be positive.");
+	}
+
+	@Override
+	public Future<O> process(final I item) throws Exception {
+		if (delegate == null) {
+			return new SliceItemFuture<O>(submit(listDelegate, Collections.singletonList(item)), 0);
+		}
+		return submit(new Callable<O>() {
+			@Override
+			public O call() throws Exception {
+				return delegate.process(item);
+			}
+		});
+	}
+
+	@Override
+	public List<Future<O>> process(List<? extends I> items) throws Exception {
+		ItemListProcessor<I, O> sliceProcessor = listDelegate != null ? listDelegate
+				: new ItemProcessorListAdapter<I, O>(delegate);
+		List<Future<O>> futures = new ArrayList<>(items.size());
+		for (int start = 0; start < items.size(); start += sliceSize) {
+			// the chunk is processed again from its input on rollback: the slice does not share it
+			List<I> slice = new ArrayList<I>(items.subList(start, Math.min(start + sliceSize, items.size())));
+			Future<List<O>> sliceFuture = submit(sliceProcessor, slice);
+			for (int i = 0; i < slice.size(); i++) {
+				futures.add(new SliceItemFuture<O>(sliceFuture, i));
+			}
+		}
+		return futures;
+	}
+
+	private Future<List<O>> submit(final ItemListProcessor<I, O> sliceProcessor, final List<I> slice) {
+		return submit(new Callable<List<O>>() {
+			@Override
+			public List<O> call() throws Exception {
+				return sliceProcessor.process(slice);
+			}
+		});
+	}
+
+	private <V> Future<V> submit(final Callable<V> task) {
+		final StepExecution stepExecution = getStepExecution();
+		return executor.submit(new Callable<V>() {
+			@Override
+			public V call() throws Exception {
+				if (stepExecution != null) {
+					StepSynchronizationManager.register(stepExecution);
+				}
+				try {
+					return task.call();
+				} finally {
+					if (stepExecution != null) {
+						StepSynchronizationManager.close();
+					}
+				}
+			}
+		});
+	}
+
+	private static StepExecution getStepExecution() {
+		StepContext context = StepSynchronizationManager.getContext();
+		return context == null ? null : context.getStepExecution();
+	}
+
+	/**
+	 * Result at an index of the results of a slice, null past the results kept by the delegate.
+	 */
+	private static class SliceItemFuture<O> implements Future<O> {
+
+		private final Future<List<O>> slice;
+		private final int index;
+
+		SliceItemFuture(Future<List<O>> slice, int index) {
+			this.slice = slice;
+			this.index = index;
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			return slice.cancel(mayInterruptIfRunning);
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return slice.isCancelled();
+		}
+
+		@Override
+		public boolean isDone() {
+			return slice.isDone();
+		}
+
+		@Override
+		public O get() throws InterruptedException, ExecutionException {
+			return itemOf(slice.get());
+		}
+
+		@Override
+		public O get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+			return itemOf(slice.get(timeout, unit));
+		}
+
+		private O itemOf(List<O> results) {
+			return index < results.size() ? results.get(index) : null;
+		}
+	}
+
+	/**
+	 * Item processor called on the executor for each item, or for each item of a slice.
+	 *
+	 * @param delegate
+	 */
+	public void setDelegate(ItemProcessor<I, O> delegate) {
+		this.delegate = delegate;
+	}
+
+	/**
+	 * Item list processor called on the executor for each slice of the chunk, in place of an item processor.
+	 *
+	 * @param listDelegate
+	 */
+	public void setListDelegate(ItemListProcessor<I, O> listDelegate) {
+		this.listDelegate = listDelegate;
+	}
+
+	/**
+	 * Executor processing the items, e.g. a pool of platform threads or one virtual thread per task, see
+	 * {@link ProcessingExecutors}. The delegate must be thread-safe.
+	 *
+	 * @param executor
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Number of consecutive items processed by a single task when the whole chunk is processed. Default is 16.
+	 *
+	 * @param sliceSize
+	 */
+	public void setSliceSize(int sliceSize) {
+		this.sliceSize = sliceSize;
+	}
+}
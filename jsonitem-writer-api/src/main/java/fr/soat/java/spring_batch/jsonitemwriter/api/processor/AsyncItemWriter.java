@@ -0,0 +1,103 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+/**
+ * Waits for the items processed by {@link AsyncItemProcessor} and writes them, in the order of the chunk, with
+ * a delegate writer such as {@link fr.soat.java.spring_batch.jsonitemwriter.api.JsonFlatFileItemWriter}. Items
+ * filtered by the processor are left out. The first processing failure fails the write, with its original
+ * exception, so the chunk is rolled back as if the item had been processed synchronously.
+ *
+ * The delegate is opened, updated and closed with this writer when it is a stream: it must not be registered
+ * on the step itself.
+ *
+ * @param <T> type of the items written
+ */
+public class AsyncItemWriter<T> implements ItemStreamWriter<Future<T>>, InitializingBean {
+
+	private ItemWriter<T> delegate;
+
+	public AsyncItemWriter() {
+	}
+
+	public AsyncItemWriter(ItemWriter<T> delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(delegate, "The delegate item writer must be set");
+	}
+
+	@Override
+	public void write(List<? extends Future<T>> futures) throws Exception {
+		List<T> items = new ArrayList<>(futures.size());
+		try {
+			for (Future<T> future : futures) {
+				T item = future.get();
+				if (item != null) {
+					items.add(item);
+				}
+			}
+		} catch (ExecutionException e) {
+			cancel(futures);
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		} catch (InterruptedException e) {
+			cancel(futures);
+			throw e;
+		}
+		if (!items.isEmpty()) {
+			delegate.write(items);
+		}
+	}
+
+	private static void cancel(List<? extends Future<?>> futures) {
+		for (Future<?> future : futures) {
+			future.cancel(false);
+		}
+	}
+
+	@Override
+	public void open(ExecutionContext executionContext) throws ItemStreamException {
+		if (delegate instanceof ItemStream) {
+			((ItemStream) delegate).open(executionContext);
+		}
+	}
+
+	@Override
+	public void update(ExecutionContext executionContext) throws ItemStreamException {
+		if (delegate instanceof ItemStream) {
+			((ItemStream) delegate).update(executionContext);
+		}
+	}
+
+	@Override
+	public void close() throws ItemStreamException {
+		if (delegate instanceof ItemStream) {
+			((ItemStream) delegate).close();
+		}
+	}
+
+	/**
+	 * Writer of the processed items.
+	 *
+	 * @param delegate
+	 */
+	public void setDelegate(ItemWriter<T> delegate) {
+		this.delegate = delegate;
+	}
+}
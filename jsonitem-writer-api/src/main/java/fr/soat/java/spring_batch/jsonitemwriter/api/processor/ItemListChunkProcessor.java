@@ -0,0 +1,63 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api.processor;
+
+import java.util.List;
+
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.step.item.Chunk;
+import org.springframework.batch.core.step.item.SimpleChunkProcessor;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.util.Assert;
+
+/**
+ * Chunk processor transforming the whole chunk with a single call to an {@link ItemListProcessor}, then
+ * writing it as {@link SimpleChunkProcessor} does. The filter count of the step is the number of items missing
+ * from the result.
+ *
+ * The write listeners are called as usual, but the item process listeners are not: there is no call per item.
+ *
+ * @param <I> type of the items read
+ * @param <O> type of the items written
+ */
+public class ItemListChunkProcessor<I, O> extends SimpleChunkProcessor<I, O> {
+
+	private ItemListProcessor<? super I, ? extends O> itemListProcessor;
+	private ItemWriter<? super O> itemWriter;
+
+	public ItemListChunkProcessor(ItemListProcessor<? super I, ? extends O> itemListProcessor,
+			ItemWriter<? super O> itemWriter) {
+		super(null, itemWriter);
+		this.itemListProcessor = itemListProcessor;
+		this.itemWriter = itemWriter;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(itemWriter, "ItemWriter must be set");
+		Assert.notNull(itemListProcessor, "ItemListProcessor must be set");
+	}
+
+	@Override
+	protected Chunk<O> transform(StepContribution contribution, Chunk<I> inputs) throws Exception {
+		List<? extends O> outputs;
+		try {
+			outputs = itemListProcessor.process(inputs.getItems());
+		} catch (Exception e) {
+			// same as a failing item processor
+			inputs.clear();
+			throw e;
+		}
+		Assert.state(outputs != null, "The item list processor must not return null");
+		Assert.state(outputs.size() <= inputs.size(), "The item list processor returned more items than it was given");
+		return new Chunk<O>(outputs);
+	}
+
+	public void setItemListProcessor(ItemListProcessor<? super I, ? extends O> itemListProcessor) {
+		this.itemListProcessor = itemListProcessor;
+	}
+
+	@Override
+	public void setItemWriter(ItemWriter<? super O> itemWriter) {
+		super.setItemWriter(itemWriter);
+		this.itemWriter = itemWriter;
+	}
+}
@@ -0,0 +1,27 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api.processor;
+
+import java.util.List;
+
+/**
+ * Processes the items of a chunk at once, instead of one call per item as
+ * {@link org.springframework.batch.item.ItemProcessor} does, so that an implementation can transform them in
+ * bulk, reuse its scratch buffers between items, or split the list over several threads.
+ *
+ * It is plugged in a step with {@link ItemListStepBuilder}. An existing item processor is plugged in with
+ * {@link ItemProcessorListAdapter}.
+ *
+ * @param <I> type of the items read
+ * @param <O> type of the items written
+ */
+public interface ItemListProcessor<I, O> {
+
+	/**
+	 * Processes the items of a chunk. Items to filter out are left out of the result, which otherwise keeps the
+	 * order of the input. The input list must not be modified: it is processed again if the chunk is rolled back.
+	 *
+	 * @param items the items of the chunk, never empty
+	 * @return the items to write, possibly empty but never null
+	 * @throws Exception thrown for any item fails the whole chunk
+	 */
+	List<O> process(List<? extends I> items) throws Exception;
+}
@@ -0,0 +1,78 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api.processor;
+
+import java.util.ArrayList;
+
+import org.springframework.batch.core.StepListener;
+import org.springframework.batch.core.step.builder.FaultTolerantStepBuilder;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
+import org.springframework.batch.core.step.builder.StepBuilderHelper;
+import org.springframework.batch.core.step.item.ChunkOrientedTasklet;
+import org.springframework.batch.core.step.item.SimpleChunkProvider;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.util.Assert;
+
+/**
+ * Step builder processing the chunks with an {@link ItemListProcessor}. The list processor is set first, since
+ * the inherited methods return a {@link SimpleStepBuilder}:
+ *
+ * <pre>
+ * new ItemListStepBuilder&lt;Person, Person&gt;(stepBuilderFactory.get("step1"))
+ * 		.listProcessor(processor)
+ * 		.chunk(100)
+ * 		.reader(reader)
+ * 		.writer(writer)
+ * 		.build();
+ * </pre>
+ *
+ * Without a list processor, it builds the same step as {@link SimpleStepBuilder}. The fault tolerant steps
+ * process the items one by one to find the ones to skip, so they do not support list processors.
+ *
+ * @param <I> type of the items read
+ * @param <O> type of the items written
+ */
+public class ItemListStepBuilder<I, O> extends SimpleStepBuilder<I, O> {
+
+	private ItemListProcessor<? super I, ? extends O> listProcessor;
+
+	public ItemListStepBuilder(StepBuilderHelper<?> parent) {
+		super(parent);
+	}
+
+	/**
+	 * Processor called once per chunk, in place of an item processor. It is registered as a stream if it is one.
+	 *
+	 * @param listProcessor
+	 * @return this builder
+	 */
+	public ItemListStepBuilder<I, O> listProcessor(ItemListProcessor<? super I, ? extends O> listProcessor) {
+		this.listProcessor = listProcessor;
+		if (listProcessor instanceof ItemStream) {
+			stream((ItemStream) listProcessor);
+		}
+		return this;
+	}
+
+	@Override
+	public FaultTolerantStepBuilder<I, O> faultTolerant() {
+		Assert.state(listProcessor == null, "A fault tolerant step does not support an item list processor");
+		return super.faultTolerant();
+	}
+
+	@Override
+	protected Tasklet createTasklet() {
+		if (listProcessor == null) {
+			return super.createTasklet();
+		}
+		Assert.state(getReader() != null, "ItemReader must be provided");
+		Assert.state(getWriter() != null, "ItemWriter must be provided");
+		Assert.state(getProcessor() == null, "Either an item processor or an item list processor can be provided");
+		SimpleChunkProvider<I> chunkProvider = new SimpleChunkProvider<I>(getReader(), createChunkOperations());
+		ItemListChunkProcessor<I, O> chunkProcessor = new ItemListChunkProcessor<I, O>(listProcessor, getWriter());
+		chunkProvider.setListeners(new ArrayList<StepListener>(getItemListeners()));
+		chunkProcessor.setListeners(new ArrayList<StepListener>(getItemListeners()));
+		ChunkOrientedTasklet<I> tasklet = new ChunkOrientedTasklet<I>(chunkProvider, chunkProcessor);
+		tasklet.setBuffering(!isReaderTransactionalQueue());
+		return tasklet;
+	}
+}
@@ -0,0 +1,133 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+/**
+ * Processes a chunk with an {@link ItemProcessor}, so that existing item processors can be used where an
+ * {@link ItemListProcessor} is expected. Items the delegate returns null for are filtered out.
+ *
+ * Given an executor, large chunks are split in slices of consecutive items processed in parallel, the results
+ * being gathered in the original order. The delegate must then be thread-safe.
+ *
+ * @param <I> type of the items read
+ * @param <O> type of the items written
+ */
+public class ItemProcessorListAdapter<I, O> implements ItemListProcessor<I, O>, InitializingBean {
+
+	private static final int DEFAULT_PARALLEL_THRESHOLD = 1000;
+	private static final int DEFAULT_SLICE_SIZE = 128;
+
+	private ItemProcessor<? super I, ? extends O> delegate;
+	private ExecutorService executor;
+	private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+	private int sliceSize = DEFAULT_SLICE_SIZE;
+
+	public ItemProcessorListAdapter() {
+	}
+
+	public ItemProcessorListAdapter(ItemProcessor<? super I, ? extends O> delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(delegate, "The delegate item processor must be set");
+		Assert.isTrue(sliceSize > 0, "The slice size must be positive.");
+	}
+
+	@Override
+	public List<O> process(List<? extends I> items) throws Exception {
+		if (executor == null || items.size() < parallelThreshold) {
+			List<O> outputs = new ArrayList<>(items.size());
+			processSlice(items, outputs);
+			return outputs;
+		}
+		return processParallel(items);
+	}
+
+	private List<O> processParallel(List<? extends I> items) throws Exception {
+		List<Future<List<O>>> slices = new ArrayList<>();
+		for (int start = 0; start < items.size(); start += sliceSize) {
+			final List<? extends I> slice = items.subList(start, Math.min(start + sliceSize, items.size()));
+			slices.add(executor.submit(new Callable<List<O>>() {
+				@Override
+				public List<O> call() throws Exception {
+					List<O> outputs = new ArrayList<>(slice.size());
+					processSlice(slice, outputs);
+					return outputs;
+				}
+			}));
+		}
+		try {
+			List<O> outputs = new ArrayList<>(items.size());
+			for (Future<List<O>> slice : slices) {
+				outputs.addAll(slice.get());
+			}
+			return outputs;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		} finally {
+			for (Future<List<O>> slice : slices) {
+				slice.cancel(false);
+			}
+		}
+	}
+
+	private void processSlice(List<? extends I> items, List<O> outputs) throws Exception {
+		for (I item : items) {
+			O output = delegate.process(item);
+			if (output != null) {
+				outputs.add(output);
+			}
+		}
+	}
+
+	/**
+	 * Item processor called for each item of the chunk.
+	 *
+	 * @param delegate
+	 */
+	public void setDelegate(ItemProcessor<? super I, ? extends O> delegate) {
+		this.delegate = delegate;
+	}
+
+	/**
+	 * Executor processing the slices of large chunks in parallel, e.g. a {@link java.util.concurrent.ForkJoinPool}.
+	 * Default is null: items are processed on the calling thread.
+	 *
+	 * @param executor
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Minimum number of items of a chunk for it to be processed in parallel. Default is 1000.
+	 *
+	 * @param parallelThreshold
+	 */
+	public void setParallelThreshold(int parallelThreshold) {
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	/**
+	 * Number of consecutive items processed by a single task when processing in parallel. Default is 128.
+	 *
+	 * @param sliceSize
+	 */
+	public void setSliceSize(int sliceSize) {
+		this.sliceSize = sliceSize;
+	}
+}
@@ -0,0 +1,77 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api.processor;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for {@link AsyncItemProcessor}. The virtual threads of JDK 21 are looked up at runtime, so that
+ * this module still builds and runs on Java 8.
+ */
+public final class ProcessingExecutors {
+
+	private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findVirtualThreadFactoryMethod();
+
+	private ProcessingExecutors() {
+	}
+
+	private static Method findVirtualThreadFactoryMethod() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Whether the running JDK has virtual threads.
+	 */
+	public static boolean isVirtualThreadSupported() {
+		return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+	}
+
+	/**
+	 * Starts a virtual thread per task: blocking processors then cost no platform thread while they wait.
+	 *
+	 * @throws IllegalStateException if the running JDK has no virtual threads
+	 */
+	public static ExecutorService newVirtualThreadPerTaskExecutor() {
+		if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR == null) {
+			throw new IllegalStateException("Virtual threads need JDK 21 or later");
+		}
+		try {
+			return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Could not create the virtual thread executor", e);
+		}
+	}
+
+	/**
+	 * Pool of platform threads. They are daemon threads, so that a pool left open does not keep the JVM alive
+	 * once the job is over.
+	 *
+	 * @param poolSize number of threads, as large as the number of items expected to wait at the same time
+	 */
+	public static ExecutorService newPlatformThreadPool(int poolSize) {
+		final AtomicInteger threadCount = new AtomicInteger();
+		return Executors.newFixedThreadPool(poolSize, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "processing-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Virtual threads when the JDK has them, a pool of platform threads otherwise.
+	 *
+	 * @param poolSize number of threads of the pool
+	 */
+	public static ExecutorService newProcessingExecutor(int poolSize) {
+		return isVirtualThreadSupported() ? newVirtualThreadPerTaskExecutor() : newPlatformThreadPool(poolSize);
+	}
+}
@@ -0,0 +1,23 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api.sync;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Forces the channel after every write: each committed chunk is on the device before the commit completes.
+ * This is the behavior of {@link fr.soat.java.spring_batch.jsonitemwriter.api.JsonFlatFileItemWriter#setForceSync(boolean)}.
+ * Stateless, may be shared.
+ */
+public class AlwaysForceSyncPolicy implements ForceSyncPolicy {
+
+	@Override
+	public void afterWrite(FileChannel channel) throws IOException {
+		channel.force(false);
+	}
+
+	@Override
+	public void beforeClose(FileChannel channel) throws IOException {
+		// the last write may reach the channel without being followed by afterWrite, when closing
+		channel.force(false);
+	}
+}
@@ -0,0 +1,33 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api.sync;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Decides when the output of a {@link fr.soat.java.spring_batch.jsonitemwriter.api.JsonFlatFileItemWriter} is
+ * forced to the storage device.
+ *
+ * The writer calls {@link #afterWrite(FileChannel)} once the output of a chunk has reached the channel (before
+ * the commit in a transaction), and {@link #beforeClose(FileChannel)} before closing the channel. The last
+ * output may reach the channel without being followed by {@link #afterWrite(FileChannel)} when the writer is
+ * closed, so the whole content must be forced when {@link #beforeClose(FileChannel)} returns.
+ */
+public interface ForceSyncPolicy {
+
+	/**
+	 * Called after the output of a chunk has been written to the channel. May force it right away, later, or
+	 * wait for another thread to force it.
+	 *
+	 * @param channel
+	 * @throws IOException if the channel could not be forced
+	 */
+	void afterWrite(FileChannel channel) throws IOException;
+
+	/**
+	 * Called before the channel is closed: anything not yet forced must be forced now.
+	 *
+	 * @param channel
+	 * @throws IOException if the channel could not be forced
+	 */
+	void beforeClose(FileChannel channel) throws IOException;
+}
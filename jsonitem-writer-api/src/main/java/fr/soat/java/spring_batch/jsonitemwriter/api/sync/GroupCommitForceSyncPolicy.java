@@ -0,0 +1,128 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api.sync;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Group commit shared by several writers, typically the writers of a partitioned or multi-threaded step
+ * writing to the same disk. A write is forced before {@link #afterWrite(FileChannel)} returns, but the forces
+ * are coalesced: the first caller waits up to a given delay for other commits to join, then forces every
+ * channel written in the meantime once, on behalf of all the waiting callers. Callers arriving while a round
+ * is being forced wait for the next one.
+ *
+ * This keeps the durability of {@link AlwaysForceSyncPolicy} while issuing one force per channel per round
+ * instead of one per commit.
+ */
+public class GroupCommitForceSyncPolicy implements ForceSyncPolicy {
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition roundCompleted = lock.newCondition();
+
+	private Set<FileChannel> dirtyChannels = new LinkedHashSet<>();
+
+	private long startedRounds = 0;
+
+	private long completedRounds = 0;
+
+	private boolean leading = false;
+
+	private long failedRound = -1;
+
+	private IOException failure;
+
+	private long maxDelay = 5;
+
+	@Override
+	public void afterWrite(FileChannel channel) throws IOException {
+		lock.lock();
+		try {
+			dirtyChannels.add(channel);
+			long round = startedRounds + 1;
+			while (completedRounds < round) {
+				if (leading) {
+					roundCompleted.await();
+				} else {
+					lead();
+				}
+			}
+			if (failedRound == round) {
+				throw new IOException("Could not force output", failure);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the output to be forced");
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void beforeClose(FileChannel channel) throws IOException {
+		lock.lock();
+		try {
+			dirtyChannels.remove(channel);
+		} finally {
+			lock.unlock();
+		}
+		channel.force(false);
+	}
+
+	/**
+	 * Waits for other commits to join the round, then forces the channels of the round. Called with the lock
+	 * held, released while waiting and forcing.
+	 */
+	private void lead() throws InterruptedException {
+		leading = true;
+		long round = startedRounds + 1;
+		IOException roundFailure = null;
+		try {
+			lock.unlock();
+			try {
+				TimeUnit.MILLISECONDS.sleep(maxDelay);
+			} finally {
+				lock.lock();
+			}
+			Set<FileChannel> channels = dirtyChannels;
+			dirtyChannels = new LinkedHashSet<>();
+			startedRounds = round;
+			lock.unlock();
+			try {
+				for (FileChannel dirtyChannel : channels) {
+					if (dirtyChannel.isOpen()) {
+						dirtyChannel.force(false);
+					}
+				}
+			} catch (IOException e) {
+				roundFailure = e;
+			} finally {
+				lock.lock();
+			}
+		} finally {
+			if (startedRounds == round) {
+				completedRounds = round;
+				if (roundFailure != null) {
+					failedRound = round;
+					failure = roundFailure;
+				}
+			}
+			leading = false;
+			roundCompleted.signalAll();
+		}
+	}
+
+	/**
+	 * Time in milliseconds the first commit of a round waits for others before forcing. Default is 5.
+	 *
+	 * @param maxDelay
+	 */
+	public void setMaxDelay(long maxDelay) {
+		this.maxDelay = maxDelay;
+	}
+}
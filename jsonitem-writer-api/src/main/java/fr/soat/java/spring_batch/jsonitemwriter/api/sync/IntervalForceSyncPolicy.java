@@ -0,0 +1,73 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api.sync;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Forces the channel every given number of writes, or when a given time has elapsed since its last force,
+ * whichever comes first. The time interval is checked on each write, so a quiet channel is forced on its next
+ * write or when it is closed.
+ *
+ * This trades durability for throughput: after a crash, the chunks committed since the last force may be lost
+ * and the restart offset may point past the end of the file, in which case the restart fails and the output
+ * must be produced again.
+ *
+ * The counters are kept per channel, so an instance may be shared by several writers.
+ */
+public class IntervalForceSyncPolicy implements ForceSyncPolicy {
+
+	private final Map<FileChannel, long[]> pendingWrites = new WeakHashMap<>();
+
+	private int commitInterval = 1;
+
+	private long timeInterval = 0;
+
+	@Override
+	public void afterWrite(FileChannel channel) throws IOException {
+		long now = System.currentTimeMillis();
+		synchronized (pendingWrites) {
+			// [writes since last force, time of last force]
+			long[] pending = pendingWrites.get(channel);
+			if (pending == null) {
+				pending = new long[] { 0, now };
+				pendingWrites.put(channel, pending);
+			}
+			pending[0]++;
+			if (pending[0] < commitInterval && (timeInterval <= 0 || now - pending[1] < timeInterval)) {
+				return;
+			}
+			pending[0] = 0;
+			pending[1] = now;
+		}
+		channel.force(false);
+	}
+
+	@Override
+	public void beforeClose(FileChannel channel) throws IOException {
+		synchronized (pendingWrites) {
+			pendingWrites.remove(channel);
+		}
+		channel.force(false);
+	}
+
+	/**
+	 * Number of writes, i.e. of commits, between two forces. Default is 1.
+	 *
+	 * @param commitInterval
+	 */
+	public void setCommitInterval(int commitInterval) {
+		this.commitInterval = commitInterval;
+	}
+
+	/**
+	 * Maximum time in milliseconds between two forces of a channel being written. Default is 0: no time
+	 * limit.
+	 *
+	 * @param timeInterval
+	 */
+	public void setTimeInterval(long timeInterval) {
+		this.timeInterval = timeInterval;
+	}
+}
@@ -1,8 +1,12 @@
 package fr.soat.java.spring_batch.jsonitemwriter.api.utils;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
 
 /**
  * Mapper converting any object to its String version
@@ -11,9 +15,34 @@ import com.fasterxml.jackson.databind.ObjectWriter;
  */
 public class JsonUtils {
 
+	/**
+	 * Pretty printed version of the object, using the writers cached by the default {@link ObjectWriterRegistry}.
+	 */
 	public static <T> String convertObjectToJsonString(T object) throws JsonProcessingException {
-		ObjectMapper objectMapper = new ObjectMapper();
-		ObjectWriter objectWriter = objectMapper.writer().withDefaultPrettyPrinter();
-		return objectWriter.writeValueAsString(object);
+		return ObjectWriterRegistry.getDefault().getObjectWriterFor(object, true).writeValueAsString(object);
+	}
+
+	/**
+	 * Creates a long-lived generator over the given writer. The generator never closes the writer,
+	 * and does not add any separator between root values.
+	 */
+	public static JsonGenerator createJsonGenerator(Writer writer) throws IOException {
+		JsonGenerator jsonGenerator = ObjectWriterRegistry.getDefault().getObjectMapper().getFactory()
+				.createGenerator(writer);
+		jsonGenerator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		jsonGenerator.setRootValueSeparator(null);
+		return jsonGenerator;
+	}
+
+	/**
+	 * Creates a long-lived UTF-8 generator writing bytes to the given stream, with the same settings as
+	 * {@link #createJsonGenerator(Writer)}.
+	 */
+	public static JsonGenerator createJsonGenerator(OutputStream outputStream) throws IOException {
+		JsonGenerator jsonGenerator = ObjectWriterRegistry.getDefault().getObjectMapper().getFactory()
+				.createGenerator(outputStream, JsonEncoding.UTF8);
+		jsonGenerator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		jsonGenerator.setRootValueSeparator(null);
+		return jsonGenerator;
 	}
 }
@@ -0,0 +1,87 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.util.Assert;
+
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Thread-safe registry of Jackson {@link ObjectWriter}s. One writer is built per item class and per
+ * configuration (pretty or compact), then cached, so that bean introspection and serializer lookup
+ * happen once per class instead of once per item.
+ * 
+ * A single instance can be shared by every aggregator of the application.
+ */
+public class ObjectWriterRegistry {
+
+	private static final ObjectWriterRegistry DEFAULT_REGISTRY = new ObjectWriterRegistry();
+
+	private final ObjectMapper objectMapper;
+
+	private final ConcurrentMap<Class<?>, ObjectWriter> prettyObjectWriters = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<Class<?>, ObjectWriter> compactObjectWriters = new ConcurrentHashMap<>();
+
+	public ObjectWriterRegistry() {
+		this(new ObjectMapper());
+	}
+
+	/**
+	 * @param objectMapper the configured mapper the writers are built from. It must not be modified afterwards.
+	 */
+	public ObjectWriterRegistry(ObjectMapper objectMapper) {
+		Assert.notNull(objectMapper, "An ObjectMapper must be provided.");
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * @return the registry shared by default by all the aggregators.
+	 */
+	public static ObjectWriterRegistry getDefault() {
+		return DEFAULT_REGISTRY;
+	}
+
+	public ObjectMapper getObjectMapper() {
+		return objectMapper;
+	}
+
+	/**
+	 * Returns the cached writer for the given class, building it on first call.
+	 * The pretty printer does not write any root value separator: separators between items are
+	 * handled by the item writer.
+	 * 
+	 * @param type
+	 * @param prettyPrint
+	 * @return
+	 */
+	public ObjectWriter getObjectWriter(Class<?> type, boolean prettyPrint) {
+		ConcurrentMap<Class<?>, ObjectWriter> objectWriters = prettyPrint ? prettyObjectWriters : compactObjectWriters;
+		ObjectWriter objectWriter = objectWriters.get(type);
+		if (objectWriter == null) {
+			objectWriter = objectMapper.writerFor(type);
+			if (prettyPrint) {
+				objectWriter = objectWriter.with(new DefaultPrettyPrinter((String) null));
+			}
+			ObjectWriter existing = objectWriters.putIfAbsent(type, objectWriter);
+			if (existing != null) {
+				objectWriter = existing;
+			}
+		}
+		return objectWriter;
+	}
+
+	/**
+	 * Returns the cached writer matching the runtime class of the item.
+	 * 
+	 * @param item
+	 * @param prettyPrint
+	 * @return
+	 */
+	public ObjectWriter getObjectWriterFor(Object item, boolean prettyPrint) {
+		return getObjectWriter(item == null ? Object.class : item.getClass(), prettyPrint);
+	}
+}
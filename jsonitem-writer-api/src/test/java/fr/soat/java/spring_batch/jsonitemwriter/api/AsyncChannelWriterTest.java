@@ -0,0 +1,116 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.batch.item.WriteFailedException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.sync.ForceSyncPolicy;
+
+/**
+ * A failure of the I/O thread fails the commit, and is cleared once the rollback has truncated the file. Forces
+ * are applied once per barrier.
+ */
+public class AsyncChannelWriterTest {
+
+	private final ChunkTransactions transactions = new ChunkTransactions();
+
+	private final CountingForceSyncPolicy forceSyncPolicy = new CountingForceSyncPolicy();
+
+	private File file;
+
+	private RandomAccessFile randomAccessFile;
+
+	private FailingFileChannel channel;
+
+	private AsyncChannelWriter writer;
+
+	@Before
+	public void openWriter() throws Exception {
+		file = File.createTempFile("async", ".json");
+		randomAccessFile = new RandomAccessFile(file, "rw");
+		channel = new FailingFileChannel(randomAccessFile.getChannel());
+		writer = new AsyncChannelWriter(channel, "UTF-8", 1024, 2, forceSyncPolicy, null, new Runnable() {
+			@Override
+			public void run() {
+				// the channel is closed by the test
+			}
+		});
+	}
+
+	@After
+	public void closeFile() throws IOException {
+		writer.close();
+		randomAccessFile.close();
+		file.delete();
+	}
+
+	@Test
+	public void failureIsClearedByTheRollback() throws Exception {
+		commit("committed ");
+		long committedLength = file.length();
+
+		channel.setFailing(true);
+		try {
+			commit("failed");
+			fail("The write failure must fail the commit");
+		} catch (WriteFailedException e) {
+			// expected
+		}
+		channel.setFailing(false);
+		assertEquals(committedLength, file.length());
+		assertEquals(committedLength, writer.position());
+
+		commit("next");
+		assertEquals("committed next", new String(Files.readAllBytes(file.toPath()), "UTF-8"));
+	}
+
+	@Test
+	public void headerIsForcedOnce() throws Exception {
+		writer.writeHeader("{\"items\":[".getBytes("UTF-8"));
+		assertEquals(1, forceSyncPolicy.count);
+
+		commit("item");
+		assertEquals(2, forceSyncPolicy.count);
+	}
+
+	private void commit(final String text) {
+		transactions.execute(new TransactionCallback<Object>() {
+			@Override
+			public Object doInTransaction(TransactionStatus status) {
+				try {
+					writer.write(text);
+					writer.flush();
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+				return null;
+			}
+		});
+	}
+
+	private static class CountingForceSyncPolicy implements ForceSyncPolicy {
+
+		private int count;
+
+		@Override
+		public void afterWrite(FileChannel channel) throws IOException {
+			count++;
+		}
+
+		@Override
+		public void beforeClose(FileChannel channel) throws IOException {
+		}
+	}
+}
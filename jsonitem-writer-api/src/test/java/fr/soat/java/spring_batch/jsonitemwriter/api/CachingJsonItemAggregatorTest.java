@@ -0,0 +1,180 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.batch.core.step.item.KeyGenerator;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.utils.ObjectWriterRegistry;
+
+/**
+ * Hits and misses, eviction of the least recently used fragments, keys, and the changes of the delegate
+ * configuration that drop the cached fragments.
+ */
+public class CachingJsonItemAggregatorTest {
+
+	private static final TestItem FIRST = new TestItem("item-1", 1);
+
+	private static final TestItem SECOND = new TestItem("item-2", 2);
+
+	private static final TestItem THIRD = new TestItem("item-3", 3);
+
+	private CountingJsonItemAggregator delegate;
+
+	private CachingJsonItemAggregator<TestItem> aggregator;
+
+	@Before
+	public void createAggregator() throws Exception {
+		delegate = new CountingJsonItemAggregator();
+		aggregator = new CachingJsonItemAggregator<TestItem>();
+		aggregator.setDelegate(delegate);
+		aggregator.afterPropertiesSet();
+	}
+
+	@Test
+	public void itemWrittenAgainIsNotSerializedAgain() throws Exception {
+		String json = new JsonItemAggregator<TestItem>().aggregate(FIRST);
+		assertEquals(json, aggregator.aggregate(FIRST));
+		assertEquals(json, aggregator.aggregate(new TestItem("item-1", 1)));
+		assertEquals(json, generate(FIRST));
+
+		assertEquals(1, delegate.count);
+		assertEquals(1, aggregator.getMissCount());
+		assertEquals(2, aggregator.getHitCount());
+		assertEquals(2.0 / 3, aggregator.getHitRatio(), 0.001);
+		assertEquals(1, aggregator.getEntryCount());
+	}
+
+	@Test
+	public void leastRecentlyUsedFragmentIsEvicted() throws Exception {
+		// room for two fragments of the same length, not three
+		aggregator.setMaxCacheSize(2 * (2 * aggregator.aggregate(FIRST).length() + 96) + 1);
+		aggregator.aggregate(SECOND);
+		aggregator.aggregate(FIRST);
+		aggregator.aggregate(THIRD);
+
+		assertEquals(1, aggregator.getEvictionCount());
+		assertEquals(2, aggregator.getEntryCount());
+		delegate.count = 0;
+		aggregator.aggregate(FIRST);
+		aggregator.aggregate(THIRD);
+		assertEquals(0, delegate.count);
+		aggregator.aggregate(SECOND);
+		assertEquals(1, delegate.count);
+	}
+
+	@Test
+	public void fragmentLargerThanTheCacheIsNotCached() throws Exception {
+		aggregator.setMaxCacheSize(100);
+		aggregator.aggregate(FIRST);
+		aggregator.aggregate(FIRST);
+
+		assertEquals(2, delegate.count);
+		assertEquals(0, aggregator.getEntryCount());
+		assertEquals(0, aggregator.getCacheSize());
+	}
+
+	@Test
+	public void itemsAreLookedUpByTheirKey() throws Exception {
+		aggregator.setKeyGenerator(new KeyGenerator() {
+			@Override
+			public Object getKey(Object item) {
+				return ((TestItem) item).getName();
+			}
+		});
+		String json = aggregator.aggregate(FIRST);
+		assertEquals(json, aggregator.aggregate(new TestItem("item-1", 42)));
+		aggregator.aggregate(new TestItem(null, 42));
+		aggregator.aggregate(new TestItem(null, 42));
+
+		assertEquals(3, delegate.count);
+		assertEquals(1, aggregator.getEntryCount());
+	}
+
+	@Test
+	public void prettyPrintChangeDropsTheFragments() throws Exception {
+		String compact = aggregator.aggregate(FIRST);
+		aggregator.setPrettyPrint(!aggregator.isPrettyPrint());
+		assertEquals(0, aggregator.getEntryCount());
+
+		String other = aggregator.aggregate(FIRST);
+		assertNotEquals(compact, other);
+		JsonItemAggregator<TestItem> reflective = new JsonItemAggregator<TestItem>();
+		reflective.setPrettyPrint(aggregator.isPrettyPrint());
+		assertEquals(reflective.aggregate(FIRST), other);
+		assertEquals(2, delegate.count);
+	}
+
+	@Test
+	public void registryChangeDropsTheFragments() throws Exception {
+		String json = aggregator.aggregate(FIRST);
+		ObjectWriterRegistry registry = new ObjectWriterRegistry(
+				new ObjectMapper().enable(SerializationFeature.WRAP_ROOT_VALUE));
+		aggregator.setObjectWriterRegistry(registry);
+
+		assertEquals(0, aggregator.getEntryCount());
+		assertEquals(0, aggregator.getCacheSize());
+		assertEquals(registry, delegate.objectWriterRegistry);
+		assertNotEquals(json, aggregator.aggregate(FIRST));
+		assertEquals(2, delegate.count);
+	}
+
+	@Test
+	public void binaryGeneratorsBypassTheCache() throws Exception {
+		for (int i = 0; i < 2; i++) {
+			JsonGenerator jsonGenerator = JsonOutputFormat.SMILE.createGenerator(new ByteArrayOutputStream(), true);
+			aggregator.aggregate(FIRST, jsonGenerator);
+			jsonGenerator.close();
+		}
+
+		assertEquals(2, delegate.streamingCount);
+		assertEquals(0, aggregator.getMissCount() + aggregator.getHitCount());
+		assertEquals(0, aggregator.getEntryCount());
+	}
+
+	private String generate(TestItem item) throws IOException {
+		StringWriter writer = new StringWriter();
+		JsonGenerator jsonGenerator = ObjectWriterRegistry.getDefault().getObjectMapper().getFactory()
+				.createGenerator(writer);
+		aggregator.aggregate(item, jsonGenerator);
+		jsonGenerator.close();
+		return writer.toString();
+	}
+
+	private static class CountingJsonItemAggregator extends JsonItemAggregator<TestItem> {
+
+		private int count;
+
+		private int streamingCount;
+
+		private ObjectWriterRegistry objectWriterRegistry;
+
+		@Override
+		public String aggregate(TestItem item) {
+			count++;
+			return super.aggregate(item);
+		}
+
+		@Override
+		public void aggregate(TestItem item, JsonGenerator jsonGenerator) throws IOException {
+			streamingCount++;
+			super.aggregate(item, jsonGenerator);
+		}
+
+		@Override
+		public void setObjectWriterRegistry(ObjectWriterRegistry objectWriterRegistry) {
+			this.objectWriterRegistry = objectWriterRegistry;
+			super.setObjectWriterRegistry(objectWriterRegistry);
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * The default and the streaming write logics produce the same bytes and record the same item positions.
+ */
+public class ChunkSerializerTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final List<File> files = new ArrayList<>();
+
+	@After
+	public void deleteFiles() {
+		for (File file : files) {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void streamingOutputIsTheDefaultOutput() throws Exception {
+		for (boolean jsonLines : new boolean[] { false, true }) {
+			List<Long> stringPositions = new ArrayList<>();
+			List<Long> streamingPositions = new ArrayList<>();
+			byte[] stringOutput = write(false, jsonLines, stringPositions);
+			byte[] streamingOutput = write(true, jsonLines, streamingPositions);
+
+			assertArrayEquals(stringOutput, streamingOutput);
+			assertEquals(stringPositions, streamingPositions);
+		}
+	}
+
+	/**
+	 * Writes two chunks, and returns the output and the absolute positions of the sampled items.
+	 */
+	private byte[] write(boolean streaming, boolean jsonLines, List<Long> positions) throws IOException {
+		File file = File.createTempFile("serializer", ".json");
+		files.add(file);
+		try (FileOutputStream os = new FileOutputStream(file)) {
+			BufferedChannelOutput output = new BufferedChannelOutput(os.getChannel(), "UTF-8", null, new Runnable() {
+				@Override
+				public void run() {
+					// the stream is closed by the test
+				}
+			});
+			JsonItemAggregator<TestItem> aggregator = new JsonItemAggregator<TestItem>();
+			aggregator.setPrettyPrint(!jsonLines);
+			ChunkSerializer<TestItem> serializer = streaming
+					? new StreamingChunkSerializer<TestItem>(output, aggregator, ",", jsonLines, JsonOutputFormat.JSON,
+							false, UTF_8, null, true)
+					: new StringChunkSerializer<TestItem>(output, aggregator, ",", jsonLines, UTF_8, null);
+			long itemsWritten = 0;
+			for (List<TestItem> chunk : Arrays.asList(TestItem.items("item", 0, 10), TestItem.items("item", 10, 15))) {
+				ItemPositions chunkPositions = new ItemPositions(itemsWritten, 3);
+				long chunkStart = output.position();
+				serializer.write(chunk, itemsWritten, chunkPositions);
+				serializer.flush();
+				for (int i = 0; i < chunkPositions.size(); i++) {
+					positions.add(chunkStart + chunkPositions.getPosition(i));
+				}
+				itemsWritten += chunk.size();
+			}
+			output.close();
+		}
+		return Files.readAllBytes(file.toPath());
+	}
+}
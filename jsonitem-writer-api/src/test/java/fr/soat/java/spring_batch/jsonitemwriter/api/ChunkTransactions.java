@@ -0,0 +1,65 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import java.util.List;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.support.transaction.ResourcelessTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Chunks written in transactions, the way a step writes them: committed with the state saved, or rolled back.
+ */
+public class ChunkTransactions {
+
+	private final TransactionTemplate transactionTemplate = new TransactionTemplate(
+			new ResourcelessTransactionManager());
+
+	/**
+	 * Writes the items and saves the state of the writer in the execution context, then commits.
+	 *
+	 * @return the items written
+	 */
+	public <T> List<T> commit(final ItemStreamWriter<T> writer, final List<T> items,
+			final ExecutionContext executionContext) {
+		execute(new TransactionCallback<Object>() {
+			@Override
+			public Object doInTransaction(TransactionStatus status) {
+				write(writer, items);
+				writer.update(executionContext);
+				return null;
+			}
+		});
+		return items;
+	}
+
+	/**
+	 * Writes the items, then rolls back.
+	 */
+	public <T> void rollback(final ItemStreamWriter<T> writer, final List<T> items) {
+		execute(new TransactionCallback<Object>() {
+			@Override
+			public Object doInTransaction(TransactionStatus status) {
+				write(writer, items);
+				status.setRollbackOnly();
+				return null;
+			}
+		});
+	}
+
+	public void execute(TransactionCallback<Object> callback) {
+		transactionTemplate.execute(callback);
+	}
+
+	public static <T> void write(ItemStreamWriter<T> writer, List<T> items) {
+		try {
+			writer.write(items);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
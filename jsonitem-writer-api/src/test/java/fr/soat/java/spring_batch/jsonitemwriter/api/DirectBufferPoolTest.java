@@ -0,0 +1,141 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.io.FileSystemResource;
+
+/**
+ * Buffers are reused across chunks, sized after the recent chunks, and given back on commit and on rollback.
+ */
+public class DirectBufferPoolTest {
+
+	private static final int MIN_BUFFER_SIZE = 1024;
+
+	private final ChunkTransactions transactions = new ChunkTransactions();
+
+	private DirectBufferPool pool;
+
+	private File file;
+
+	@Before
+	public void createPool() throws Exception {
+		pool = new DirectBufferPool();
+		pool.setMinBufferSize(MIN_BUFFER_SIZE);
+		file = File.createTempFile("pool", ".json");
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	@Test
+	public void releasedBufferIsReused() {
+		ByteBuffer buffer = pool.acquire(100);
+		assertTrue(buffer.isDirect());
+		assertEquals(MIN_BUFFER_SIZE, buffer.capacity());
+		buffer.put((byte) 1);
+		pool.release(buffer);
+
+		ByteBuffer reused = pool.acquire(100);
+		assertSame(buffer, reused);
+		assertEquals(0, reused.position());
+		assertEquals(1, pool.getAllocationCount());
+		assertEquals(2, pool.getAcquireCount());
+	}
+
+	@Test
+	public void poolKeepsAtMostMaxPooledBuffers() {
+		pool.setMaxPooledBuffers(2);
+		List<ByteBuffer> buffers = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			buffers.add(pool.acquire(100));
+		}
+		for (ByteBuffer buffer : buffers) {
+			pool.release(buffer);
+		}
+
+		assertEquals(2, pool.getPooledCount());
+		assertEquals(1, pool.getDiscardCount());
+	}
+
+	@Test
+	public void buffersFollowTheRecentChunks() {
+		ByteBuffer small = pool.acquire(100);
+		pool.release(small);
+		pool.recordChunkSize(3000);
+		assertEquals(4096, pool.getBufferSize());
+
+		// the pooled buffer is now too small, and dropped
+		ByteBuffer larger = pool.acquire(100);
+		assertNotSame(small, larger);
+		assertEquals(4096, larger.capacity());
+		assertEquals(1, pool.getDiscardCount());
+		assertEquals(0, pool.getPooledCount());
+	}
+
+	@Test
+	public void oversizedBufferIsNotKept() {
+		ByteBuffer oversized = pool.acquire(10 * MIN_BUFFER_SIZE);
+		assertEquals(16 * MIN_BUFFER_SIZE, oversized.capacity());
+		pool.release(oversized);
+
+		assertEquals(0, pool.getPooledCount());
+		assertEquals(1, pool.getDiscardCount());
+	}
+
+	/**
+	 * In steady state, the chunks of a writer, committed or rolled back, share a single buffer.
+	 */
+	@Test
+	public void directUtf8WriterGivesTheBufferBackAfterEachChunk() throws Exception {
+		List<TestItem> expected = writeChunks(JsonOutputFormat.JSON);
+
+		assertEquals(expected, TestItem.read(file, "items", false));
+	}
+
+	@Test
+	public void binaryWriterGivesTheBufferBackAfterEachChunk() throws Exception {
+		writeChunks(JsonOutputFormat.SMILE);
+	}
+
+	/**
+	 * Commits ten chunks and rolls one back, checking that a single buffer is allocated and given back each time.
+	 *
+	 * @return the items committed
+	 */
+	private List<TestItem> writeChunks(JsonOutputFormat outputFormat) throws Exception {
+		JsonFlatFileItemWriter<TestItem> writer = new JsonFlatFileItemWriter<TestItem>("items");
+		writer.setResource(new FileSystemResource(file));
+		writer.setJsonItemAggregator(new JsonItemAggregator<TestItem>());
+		writer.setDirectUtf8(!outputFormat.isBinary());
+		writer.setOutputFormat(outputFormat);
+		writer.setBufferPool(pool);
+		writer.afterPropertiesSet();
+		writer.open(new ExecutionContext());
+		List<TestItem> expected = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			expected.addAll(transactions.commit(writer, TestItem.items("item", i * 10, 10), new ExecutionContext()));
+			assertEquals(1, pool.getPooledCount());
+		}
+		transactions.rollback(writer, TestItem.items("rolled back", 100, 10));
+		assertEquals(1, pool.getPooledCount());
+		writer.close();
+
+		assertEquals(1, pool.getAllocationCount());
+		assertTrue(pool.getAcquireCount() >= 11);
+		return expected;
+	}
+}
@@ -0,0 +1,130 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * File channel whose writes fail once armed, as on a full disk: the failing write stores part of its bytes
+ * before throwing, the next ones store nothing.
+ */
+public class FailingFileChannel extends FileChannel {
+
+	private final FileChannel delegate;
+
+	private volatile boolean failing = false;
+
+	public FailingFileChannel(FileChannel delegate) {
+		this.delegate = delegate;
+	}
+
+	public void setFailing(boolean failing) {
+		this.failing = failing;
+	}
+
+	@Override
+	public int write(ByteBuffer src) throws IOException {
+		if (!failing) {
+			return delegate.write(src);
+		}
+		if (src.remaining() > 1) {
+			ByteBuffer part = src.duplicate();
+			part.limit(part.position() + src.remaining() / 2);
+			delegate.write(part);
+		}
+		throw new IOException("No space left on device");
+	}
+
+	@Override
+	public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+		long written = 0;
+		for (int i = offset; i < offset + length; i++) {
+			written += write(srcs[i]);
+		}
+		return written;
+	}
+
+	@Override
+	public int write(ByteBuffer src, long position) throws IOException {
+		if (failing) {
+			throw new IOException("No space left on device");
+		}
+		return delegate.write(src, position);
+	}
+
+	@Override
+	public int read(ByteBuffer dst) throws IOException {
+		return delegate.read(dst);
+	}
+
+	@Override
+	public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+		return delegate.read(dsts, offset, length);
+	}
+
+	@Override
+	public int read(ByteBuffer dst, long position) throws IOException {
+		return delegate.read(dst, position);
+	}
+
+	@Override
+	public long position() throws IOException {
+		return delegate.position();
+	}
+
+	@Override
+	public FileChannel position(long newPosition) throws IOException {
+		delegate.position(newPosition);
+		return this;
+	}
+
+	@Override
+	public long size() throws IOException {
+		return delegate.size();
+	}
+
+	@Override
+	public FileChannel truncate(long size) throws IOException {
+		delegate.truncate(size);
+		return this;
+	}
+
+	@Override
+	public void force(boolean metaData) throws IOException {
+		delegate.force(metaData);
+	}
+
+	@Override
+	public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+		return delegate.transferTo(position, count, target);
+	}
+
+	@Override
+	public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+		return delegate.transferFrom(src, position, count);
+	}
+
+	@Override
+	public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+		return delegate.map(mode, position, size);
+	}
+
+	@Override
+	public FileLock lock(long position, long size, boolean shared) throws IOException {
+		return delegate.lock(position, size, shared);
+	}
+
+	@Override
+	public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+		return delegate.tryLock(position, size, shared);
+	}
+
+	@Override
+	protected void implCloseChannel() throws IOException {
+		delegate.close();
+	}
+}
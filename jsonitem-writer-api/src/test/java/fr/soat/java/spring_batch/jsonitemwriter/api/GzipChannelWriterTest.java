@@ -0,0 +1,116 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.batch.item.WriteFailedException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+
+/**
+ * Members of a transaction written before its commit: a failed write rolls the transaction back and leaves the
+ * file as it was.
+ */
+public class GzipChannelWriterTest {
+
+	private final ChunkTransactions transactions = new ChunkTransactions();
+
+	private File file;
+
+	private RandomAccessFile randomAccessFile;
+
+	private FailingFileChannel channel;
+
+	private GzipChannelWriter writer;
+
+	@Before
+	public void openWriter() throws Exception {
+		file = File.createTempFile("gzip", ".gz");
+		randomAccessFile = new RandomAccessFile(file, "rw");
+		channel = new FailingFileChannel(randomAccessFile.getChannel());
+		writer = new GzipChannelWriter(channel, "UTF-8", 64, null, true, null, new Runnable() {
+			@Override
+			public void run() {
+				// the channel is closed by the test
+			}
+		});
+	}
+
+	@After
+	public void closeFile() throws IOException {
+		randomAccessFile.close();
+		file.delete();
+	}
+
+	@Test
+	public void failedWriteRollsTheTransactionBack() throws Exception {
+		commit("committed ");
+		long committedLength = file.length();
+
+		channel.setFailing(true);
+		try {
+			commit(repeat("failed ", 100));
+			fail("The write failure must fail the commit");
+		} catch (WriteFailedException e) {
+			// expected
+		}
+		channel.setFailing(false);
+		assertEquals(committedLength, file.length());
+		assertEquals(committedLength, writer.position());
+
+		commit("next");
+		assertEquals("committed next", new String(
+				TestItem.gunzip(new ByteArrayInputStream(Files.readAllBytes(file.toPath()))), "UTF-8"));
+	}
+
+	@Test
+	public void rolledBackMembersAreNeverWritten() throws Exception {
+		commit("committed");
+		long committedLength = file.length();
+		transactions.execute(new TransactionCallback<Object>() {
+			@Override
+			public Object doInTransaction(TransactionStatus status) {
+				write(repeat("rolled back ", 20));
+				status.setRollbackOnly();
+				return null;
+			}
+		});
+		assertEquals(committedLength, file.length());
+	}
+
+	private void commit(final String text) {
+		transactions.execute(new TransactionCallback<Object>() {
+			@Override
+			public Object doInTransaction(TransactionStatus status) {
+				write(text);
+				return null;
+			}
+		});
+	}
+
+	private void write(String text) {
+		try {
+			writer.write(text);
+			writer.flush();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String repeat(String text, int count) {
+		StringBuilder repeated = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			repeated.append(text);
+		}
+		return repeated.toString();
+	}
+}
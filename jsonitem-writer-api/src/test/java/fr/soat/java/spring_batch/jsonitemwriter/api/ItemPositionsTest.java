@@ -0,0 +1,42 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+/**
+ * Encoded lengths counted without encoding, by runs or character per character.
+ */
+public class ItemPositionsTest {
+
+	private static final String TEXT = "a é € 😀 \"quote\"";
+
+	@Test
+	public void runsAreCountedAsEncoded() {
+		for (String encoding : new String[] { "UTF-8", "ISO-8859-1", "UTF-16BE" }) {
+			Charset charset = Charset.forName(encoding);
+			assertEquals(TEXT.getBytes(charset).length, ItemPositions.encodedLength(TEXT, 0, TEXT.length(), charset));
+		}
+	}
+
+	/**
+	 * The output of a generator may be flushed in the middle of a surrogate pair.
+	 */
+	@Test
+	public void charactersAreCountedAsEncoded() {
+		for (String encoding : new String[] { "UTF-8", "UTF-16BE" }) {
+			Charset charset = Charset.forName(encoding);
+			long length = 0;
+			for (int i = 0; i < TEXT.length(); i++) {
+				length += ItemPositions.encodedLength(TEXT.charAt(i), charset);
+			}
+			assertEquals(TEXT.getBytes(charset).length, length);
+			int split = TEXT.indexOf("😀") + 1;
+			assertEquals(TEXT.getBytes(charset).length,
+					ItemPositions.encodedLength(TEXT, 0, split, charset)
+							+ ItemPositions.encodedLength(TEXT, split, TEXT.length(), charset));
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.io.FileSystemResource;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Smile and CBOR outputs are decoded back to the items committed, across rollbacks and restarts.
+ */
+@RunWith(Parameterized.class)
+public class JsonFlatFileItemWriterBinaryTest {
+
+	private static final byte[] SMILE_HEADER = { ':', ')', '\n' };
+
+	@Parameters(name = "{0}")
+	public static Collection<Object[]> formats() {
+		return Arrays.asList(new Object[] { JsonOutputFormat.SMILE }, new Object[] { JsonOutputFormat.CBOR });
+	}
+
+	private final JsonOutputFormat outputFormat;
+
+	private final ChunkTransactions transactions = new ChunkTransactions();
+
+	private File file;
+
+	public JsonFlatFileItemWriterBinaryTest(JsonOutputFormat outputFormat) {
+		this.outputFormat = outputFormat;
+	}
+
+	@Before
+	public void createFile() throws Exception {
+		file = File.createTempFile("binary", ".json");
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	@Test
+	public void writeRollbackAndReadBack() throws Exception {
+		JsonFlatFileItemWriter<TestItem> writer = createWriter();
+		writer.open(new ExecutionContext());
+		List<TestItem> expected = new ArrayList<>();
+		expected.addAll(transactions.commit(writer, TestItem.items("first", 0, 30), new ExecutionContext()));
+		transactions.rollback(writer, TestItem.items("rolled back", 30, 10));
+		expected.addAll(transactions.commit(writer, TestItem.items("second", 30, 30), new ExecutionContext()));
+		writer.close();
+
+		assertEquals(expected, read());
+		if (outputFormat == JsonOutputFormat.SMILE) {
+			assertArrayEquals(SMILE_HEADER, Arrays.copyOf(Files.readAllBytes(file.toPath()), SMILE_HEADER.length));
+		}
+	}
+
+	/**
+	 * The restart cuts the footer and the chunks after the saved state, and the new generator goes on with the
+	 * items of the array.
+	 */
+	@Test
+	public void restartGoesOnFromTheSavedState() throws Exception {
+		JsonFlatFileItemWriter<TestItem> writer = createWriter();
+		writer.open(new ExecutionContext());
+		List<TestItem> expected = new ArrayList<>();
+		ExecutionContext restartContext = new ExecutionContext();
+		expected.addAll(transactions.commit(writer, TestItem.items("first", 0, 30), restartContext));
+		// committed, but lost by the restart from the previous state
+		transactions.commit(writer, TestItem.items("lost", 30, 20), new ExecutionContext());
+		writer.close();
+
+		JsonFlatFileItemWriter<TestItem> restarted = createWriter();
+		restarted.open(restartContext);
+		expected.addAll(transactions.commit(restarted, TestItem.items("second", 30, 25), new ExecutionContext()));
+		restarted.close();
+
+		assertEquals(expected, read());
+	}
+
+	@Test
+	public void emptyOutputIsAnEmptyArray() throws Exception {
+		JsonFlatFileItemWriter<TestItem> writer = createWriter();
+		writer.open(new ExecutionContext());
+		writer.close();
+
+		assertEquals(new ArrayList<TestItem>(), read());
+	}
+
+	private List<TestItem> read() throws Exception {
+		ObjectMapper objectMapper = new ObjectMapper(
+				outputFormat == JsonOutputFormat.SMILE ? new SmileFactory() : new CBORFactory());
+		JsonNode root = objectMapper.readTree(file);
+		return objectMapper.convertValue(root.get("items"), new TypeReference<List<TestItem>>() {
+		});
+	}
+
+	private JsonFlatFileItemWriter<TestItem> createWriter() throws Exception {
+		JsonFlatFileItemWriter<TestItem> writer = new JsonFlatFileItemWriter<TestItem>("items");
+		writer.setResource(new FileSystemResource(file));
+		writer.setJsonItemAggregator(new JsonItemAggregator<TestItem>());
+		writer.setOutputFormat(outputFormat);
+		writer.afterPropertiesSet();
+		return writer;
+	}
+}
@@ -0,0 +1,94 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.io.FileSystemResource;
+
+/**
+ * Gzip mode: the output is a sequence of gzip members, the offset saved at each commit is the end of one.
+ */
+public class JsonFlatFileItemWriterCompressedTest {
+
+	private static final String OFFSET_KEY = "JsonFlatFileItemWriter.current.count";
+
+	private final ChunkTransactions transactions = new ChunkTransactions();
+
+	private File file;
+
+	@Before
+	public void createFile() throws Exception {
+		file = File.createTempFile("compressed", ".json.gz");
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	private JsonFlatFileItemWriter<TestItem> createWriter() throws Exception {
+		JsonFlatFileItemWriter<TestItem> writer = new JsonFlatFileItemWriter<TestItem>("items");
+		writer.setResource(new FileSystemResource(file));
+		writer.setJsonItemAggregator(new JsonItemAggregator<TestItem>());
+		writer.setCompressed(true);
+		writer.setCompressionBlockSize(512);
+		writer.afterPropertiesSet();
+		return writer;
+	}
+
+	/**
+	 * The output truncated at the saved offset on restart is still a valid gzip stream.
+	 */
+	@Test
+	public void savedOffsetIsAMemberBoundary() throws Exception {
+		JsonFlatFileItemWriter<TestItem> writer = createWriter();
+		writer.open(new ExecutionContext());
+		ExecutionContext executionContext = new ExecutionContext();
+		List<TestItem> items = transactions.commit(writer, TestItem.items("first", 0, 40), executionContext);
+		transactions.commit(writer, TestItem.items("lost", 40, 40), new ExecutionContext());
+		writer.close();
+
+		long offset = executionContext.getLong(OFFSET_KEY);
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		assertTrue(offset < bytes.length);
+		// a partial member would fail with an EOFException
+		TestItem.gunzip(new ByteArrayInputStream(Arrays.copyOf(bytes, (int) offset)));
+
+		JsonFlatFileItemWriter<TestItem> restarted = createWriter();
+		restarted.open(executionContext);
+		restarted.close();
+		assertEquals(items, TestItem.readCompressed(file, "items"));
+	}
+
+	/**
+	 * Members compressed in parallel are written in the order of the items.
+	 */
+	@Test
+	public void parallelCompressionKeepsTheOrderOfTheItems() throws Exception {
+		ExecutorService compressionExecutor = Executors.newFixedThreadPool(4);
+		try {
+			JsonFlatFileItemWriter<TestItem> writer = createWriter();
+			writer.setCompressionExecutor(compressionExecutor);
+			writer.open(new ExecutionContext());
+			List<TestItem> items = transactions.commit(writer, TestItem.items("item", 0, 500),
+					new ExecutionContext());
+			writer.close();
+
+			assertEquals(items, TestItem.readCompressed(file, "items"));
+		} finally {
+			compressionExecutor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.support.transaction.ResourcelessTransactionManager;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Concurrent mode: chunks written and saved by interleaved transactions, as in a multi-threaded step.
+ */
+public class JsonFlatFileItemWriterConcurrentTest {
+
+	private static final String OFFSET_KEY = "JsonFlatFileItemWriter.current.count";
+	private static final String COUNT_KEY = "JsonFlatFileItemWriter.written";
+
+	private final TransactionTemplate transactionTemplate = new TransactionTemplate(
+			new ResourcelessTransactionManager());
+
+	private File file;
+
+	@Before
+	public void createFile() throws Exception {
+		file = File.createTempFile("concurrent", ".json");
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	private JsonFlatFileItemWriter<TestItem> createWriter() throws Exception {
+		JsonFlatFileItemWriter<TestItem> writer = new JsonFlatFileItemWriter<TestItem>("items");
+		writer.setResource(new FileSystemResource(file));
+		writer.setJsonItemAggregator(new JsonItemAggregator<TestItem>());
+		writer.setConcurrent(true);
+		writer.afterPropertiesSet();
+		return writer;
+	}
+
+	/**
+	 * The chunk of the second transaction commits while the first one has saved its state but not committed yet:
+	 * the offset saved by the first one must be the end of its own chunk.
+	 */
+	@Test
+	public void savedOffsetIsTheEndOfTheChunkWhenAnotherChunkCommitsInBetween() throws Exception {
+		final JsonFlatFileItemWriter<TestItem> writer = createWriter();
+		writer.open(new ExecutionContext());
+		final List<TestItem> first = TestItem.items("first", 0, 50);
+		final List<TestItem> second = TestItem.items("second", 50, 30);
+		final ExecutionContext firstContext = new ExecutionContext();
+		final CountDownLatch firstSaved = new CountDownLatch(1);
+		final CountDownLatch secondWritten = new CountDownLatch(1);
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+		final Thread secondThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					firstSaved.await();
+					inTransaction(new TransactionCallback<Object>() {
+						@Override
+						public Object doInTransaction(TransactionStatus status) {
+							write(writer, second);
+							secondWritten.countDown();
+							return null;
+						}
+					});
+				} catch (Throwable e) {
+					failure.set(e);
+					secondWritten.countDown();
+				}
+			}
+		});
+		secondThread.start();
+
+		inTransaction(new TransactionCallback<Object>() {
+			@Override
+			public Object doInTransaction(TransactionStatus status) {
+				write(writer, first);
+				writer.update(firstContext);
+				firstSaved.countDown();
+				try {
+					secondWritten.await();
+					// let the second transaction reach its commit
+					long deadline = System.currentTimeMillis() + 2000;
+					while (secondThread.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+						Thread.sleep(10);
+					}
+				} catch (InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+				return null;
+			}
+		});
+		secondThread.join(TimeUnit.SECONDS.toMillis(10));
+		if (failure.get() != null) {
+			throw new AssertionError(failure.get());
+		}
+		writer.close();
+
+		List<TestItem> all = new ArrayList<>(first);
+		all.addAll(second);
+		assertEquals(all, TestItem.read(file, "items", false));
+		assertEquals(first.size(), firstContext.getLong(COUNT_KEY));
+
+		// restart from the state saved by the first transaction
+		JsonFlatFileItemWriter<TestItem> restarted = createWriter();
+		restarted.open(firstContext);
+		restarted.close();
+		assertEquals(first, TestItem.read(file, "items", false));
+	}
+
+	@Test
+	public void chunkRolledBackAfterItsStateIsSavedIsTruncated() throws Exception {
+		final JsonFlatFileItemWriter<TestItem> writer = createWriter();
+		writer.open(new ExecutionContext());
+		final List<TestItem> committed = TestItem.items("committed", 0, 20);
+		inTransaction(new TransactionCallback<Object>() {
+			@Override
+			public Object doInTransaction(TransactionStatus status) {
+				write(writer, committed);
+				writer.update(new ExecutionContext());
+				return null;
+			}
+		});
+		final long committedLength = file.length();
+		inTransaction(new TransactionCallback<Object>() {
+			@Override
+			public Object doInTransaction(TransactionStatus status) {
+				write(writer, TestItem.items("rolled back", 20, 20));
+				writer.update(new ExecutionContext());
+				assertTrue(file.length() > committedLength);
+				status.setRollbackOnly();
+				return null;
+			}
+		});
+		assertEquals(committedLength, file.length());
+
+		final List<TestItem> next = TestItem.items("next", 20, 10);
+		final ExecutionContext executionContext = new ExecutionContext();
+		inTransaction(new TransactionCallback<Object>() {
+			@Override
+			public Object doInTransaction(TransactionStatus status) {
+				write(writer, next);
+				writer.update(executionContext);
+				return null;
+			}
+		});
+		writer.close();
+
+		List<TestItem> all = new ArrayList<>(committed);
+		all.addAll(next);
+		assertEquals(all, TestItem.read(file, "items", false));
+		assertEquals(all.size(), executionContext.getLong(COUNT_KEY));
+		assertTrue(executionContext.getLong(OFFSET_KEY) < file.length());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void serializationExecutorIsRejected() throws Exception {
+		JsonFlatFileItemWriter<TestItem> writer = new JsonFlatFileItemWriter<TestItem>("items");
+		writer.setResource(new FileSystemResource(file));
+		writer.setJsonItemAggregator(new JsonItemAggregator<TestItem>());
+		writer.setConcurrent(true);
+		ExecutorService serializationExecutor = Executors.newSingleThreadExecutor();
+		try {
+			writer.setSerializationExecutor(serializationExecutor);
+			writer.afterPropertiesSet();
+		} finally {
+			serializationExecutor.shutdown();
+		}
+	}
+
+	private void inTransaction(TransactionCallback<Object> callback) {
+		transactionTemplate.execute(callback);
+	}
+
+	private static void write(JsonFlatFileItemWriter<TestItem> writer, List<TestItem> items) {
+		try {
+			writer.write(items);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+
+/**
+ * Direct UTF-8 mode: the bytes of a chunk are buffered until the commit, and dropped on rollback.
+ */
+public class JsonFlatFileItemWriterDirectUtf8Test {
+
+	private static final String OFFSET_KEY = "JsonFlatFileItemWriter.current.count";
+
+	private final ChunkTransactions transactions = new ChunkTransactions();
+
+	private File file;
+
+	@Before
+	public void createFile() throws Exception {
+		file = File.createTempFile("utf8", ".json");
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	private JsonFlatFileItemWriter<TestItem> createWriter(boolean streaming) throws Exception {
+		JsonFlatFileItemWriter<TestItem> writer = new JsonFlatFileItemWriter<TestItem>("items");
+		writer.setResource(new FileSystemResource(file));
+		writer.setJsonItemAggregator(new JsonItemAggregator<TestItem>());
+		writer.setDirectUtf8(true);
+		writer.setStreaming(streaming);
+		writer.afterPropertiesSet();
+		return writer;
+	}
+
+	@Test
+	public void bufferIsDrainedAtCommit() throws Exception {
+		final JsonFlatFileItemWriter<TestItem> writer = createWriter(false);
+		writer.open(new ExecutionContext());
+		final long headerLength = file.length();
+		final ExecutionContext executionContext = new ExecutionContext();
+		transactions.execute(new TransactionCallback<Object>() {
+			@Override
+			public Object doInTransaction(TransactionStatus status) {
+				ChunkTransactions.write(writer, TestItem.items("first", 0, 40));
+				writer.update(executionContext);
+				assertEquals(headerLength, file.length());
+				return null;
+			}
+		});
+		assertEquals(executionContext.getLong(OFFSET_KEY), file.length());
+		writer.close();
+	}
+
+	@Test
+	public void rolledBackChunkNeverReachesTheFile() throws Exception {
+		JsonFlatFileItemWriter<TestItem> writer = createWriter(false);
+		writer.open(new ExecutionContext());
+		List<TestItem> items = transactions.commit(writer, TestItem.items("first", 0, 10), new ExecutionContext());
+		long committedLength = file.length();
+		transactions.rollback(writer, TestItem.items("rolled back", 10, 10));
+		assertEquals(committedLength, file.length());
+		writer.close();
+
+		assertEquals(items, TestItem.read(file, "items", false));
+	}
+
+	/**
+	 * The generators of the streaming mode write their bytes straight into the buffer, non ASCII included.
+	 */
+	@Test
+	public void streamingGeneratorsWriteIntoTheBuffer() throws Exception {
+		JsonFlatFileItemWriter<TestItem> writer = createWriter(true);
+		writer.open(new ExecutionContext());
+		List<TestItem> expected = new ArrayList<>();
+		expected.addAll(transactions.commit(writer, TestItem.items("first", 0, 30), new ExecutionContext()));
+		transactions.rollback(writer, TestItem.items("rolled back", 30, 10));
+		expected.addAll(transactions.commit(writer, TestItem.items("second", 30, 30), new ExecutionContext()));
+		writer.close();
+
+		assertEquals(expected, TestItem.read(file, "items", false));
+	}
+}
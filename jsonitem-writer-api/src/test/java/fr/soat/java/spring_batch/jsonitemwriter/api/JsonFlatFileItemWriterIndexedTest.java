@@ -0,0 +1,121 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.core.io.FileSystemResource;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.index.OffsetIndex;
+
+/**
+ * Offset index sidecar: the entries point to the sampled items, only cover the committed ones, and a restart
+ * point the index does not match is refused.
+ */
+public class JsonFlatFileItemWriterIndexedTest {
+
+	private static final String OFFSET_KEY = "JsonFlatFileItemWriter.current.count";
+	private static final String COUNT_KEY = "JsonFlatFileItemWriter.written";
+
+	private static final int INTERVAL = 3;
+
+	private final ChunkTransactions transactions = new ChunkTransactions();
+
+	private File file;
+
+	@Before
+	public void createFile() throws Exception {
+		file = File.createTempFile("indexed", ".json");
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+		OffsetIndex.getIndexFile(file).delete();
+	}
+
+	private JsonFlatFileItemWriter<TestItem> createWriter() throws Exception {
+		JsonFlatFileItemWriter<TestItem> writer = new JsonFlatFileItemWriter<TestItem>("items");
+		writer.setResource(new FileSystemResource(file));
+		writer.setJsonItemAggregator(new JsonItemAggregator<TestItem>());
+		writer.setIndexed(true);
+		writer.setIndexInterval(INTERVAL);
+		writer.afterPropertiesSet();
+		return writer;
+	}
+
+	@Test
+	public void entriesPointToTheCommittedSampledItems() throws Exception {
+		JsonFlatFileItemWriter<TestItem> writer = createWriter();
+		writer.open(new ExecutionContext());
+		List<TestItem> items = new ArrayList<>();
+		items.addAll(transactions.commit(writer, TestItem.items("first", 0, 20), new ExecutionContext()));
+		transactions.rollback(writer, TestItem.items("rolled back", 20, 20));
+		items.addAll(transactions.commit(writer, TestItem.items("second", 20, 10), new ExecutionContext()));
+		writer.close();
+
+		assertEntries(items.size());
+		assertEquals(items, TestItem.read(file, "items", false));
+	}
+
+	@Test
+	public void restartPointNotMatchedByTheIndexIsRefused() throws Exception {
+		JsonFlatFileItemWriter<TestItem> writer = createWriter();
+		writer.open(new ExecutionContext());
+		ExecutionContext executionContext = new ExecutionContext();
+		List<TestItem> items = transactions.commit(writer, TestItem.items("first", 0, 40), executionContext);
+		transactions.commit(writer, TestItem.items("lost", 40, 20), new ExecutionContext());
+		writer.close();
+
+		ExecutionContext shifted = new ExecutionContext();
+		shifted.putLong(OFFSET_KEY, executionContext.getLong(OFFSET_KEY));
+		shifted.putLong(COUNT_KEY, executionContext.getLong(COUNT_KEY) + INTERVAL);
+		JsonFlatFileItemWriter<TestItem> restarted = createWriter();
+		try {
+			restarted.open(shifted);
+			fail("The index does not cover the items of the restart point");
+		} catch (ItemStreamException e) {
+			// expected
+		} finally {
+			restarted.close();
+		}
+
+		restarted = createWriter();
+		restarted.open(executionContext);
+		restarted.close();
+		assertEntries(items.size());
+		assertEquals(items, TestItem.read(file, "items", false));
+	}
+
+	private void assertEntries(int itemCount) throws IOException {
+		OffsetIndex index = OffsetIndex.open(OffsetIndex.getIndexFile(file));
+		try {
+			assertEquals((itemCount + INTERVAL - 1) / INTERVAL, index.getEntryCount());
+			for (long entry = 0; entry < index.getEntryCount(); entry++) {
+				assertEquals('{', byteAt(index.getOffset(entry)));
+			}
+		} finally {
+			index.close();
+		}
+	}
+
+	private int byteAt(long offset) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			in.seek(offset);
+			return in.read();
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.io.FileSystemResource;
+
+/**
+ * Memory-mapped mode: the file is grown by pre-allocated regions, cut back to the output on close and restart.
+ */
+public class JsonFlatFileItemWriterMappedTest {
+
+	private static final String OFFSET_KEY = "JsonFlatFileItemWriter.current.count";
+
+	private final ChunkTransactions transactions = new ChunkTransactions();
+
+	private File file;
+
+	@Before
+	public void createFile() throws Exception {
+		file = File.createTempFile("mapped", ".json");
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	private JsonFlatFileItemWriter<TestItem> createWriter() throws Exception {
+		JsonFlatFileItemWriter<TestItem> writer = new JsonFlatFileItemWriter<TestItem>("items");
+		writer.setResource(new FileSystemResource(file));
+		writer.setJsonItemAggregator(new JsonItemAggregator<TestItem>());
+		writer.setMapped(true);
+		writer.setMappedRegionSize(4096);
+		writer.afterPropertiesSet();
+		return writer;
+	}
+
+	@Test
+	public void fileIsTruncatedOnCloseAndRestart() throws Exception {
+		JsonFlatFileItemWriter<TestItem> writer = createWriter();
+		writer.open(new ExecutionContext());
+		ExecutionContext executionContext = new ExecutionContext();
+		List<TestItem> items = transactions.commit(writer, TestItem.items("first", 0, 10), executionContext);
+		transactions.commit(writer, TestItem.items("lost", 10, 200), new ExecutionContext());
+		writer.close();
+		assertEquals('}', lastByte());
+
+		JsonFlatFileItemWriter<TestItem> restarted = createWriter();
+		restarted.open(executionContext);
+		assertEquals(executionContext.getLong(OFFSET_KEY), file.length());
+		restarted.close();
+		assertEquals('}', lastByte());
+		assertEquals(items, TestItem.read(file, "items", false));
+	}
+
+	/**
+	 * A chunk larger than a region maps the next ones, and a rolled back chunk is overwritten by the next one.
+	 */
+	@Test
+	public void chunksCrossRegionsAndRollbacksAreOverwritten() throws Exception {
+		JsonFlatFileItemWriter<TestItem> writer = createWriter();
+		writer.open(new ExecutionContext());
+		List<TestItem> expected = new ArrayList<>();
+		expected.addAll(transactions.commit(writer, TestItem.items("large", 0, 300), new ExecutionContext()));
+		transactions.rollback(writer, TestItem.items("rolled back", 300, 100));
+		expected.addAll(transactions.commit(writer, TestItem.items("next", 300, 5), new ExecutionContext()));
+		writer.close();
+
+		assertEquals(expected, TestItem.read(file, "items", false));
+		assertEquals('}', lastByte());
+	}
+
+	private int lastByte() throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			in.seek(file.length() - 1);
+			return in.read();
+		} finally {
+			in.close();
+		}
+	}
+}
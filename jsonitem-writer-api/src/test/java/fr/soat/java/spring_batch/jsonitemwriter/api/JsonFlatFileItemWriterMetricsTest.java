@@ -0,0 +1,77 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.io.FileSystemResource;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.metrics.JsonItemWriterMetrics;
+
+/**
+ * Item sizes recorded in bytes once encoded, whatever the way the items are serialized.
+ */
+public class JsonFlatFileItemWriterMetricsTest {
+
+	// no supplementary character: the UTF-8 generator of Jackson escapes them
+	private static final TestItem ITEM = new TestItem("é€", 1);
+
+	private final ChunkTransactions transactions = new ChunkTransactions();
+
+	private File file;
+
+	@Before
+	public void createFile() throws Exception {
+		file = File.createTempFile("metrics", ".json");
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	@Test
+	public void itemSizeIsEncodedInDefaultMode() throws Exception {
+		assertItemSize("UTF-8", false, false);
+		assertItemSize("UTF-16BE", false, false);
+	}
+
+	@Test
+	public void itemSizeIsEncodedInStreamingMode() throws Exception {
+		assertItemSize("UTF-8", true, false);
+		assertItemSize("UTF-16BE", true, false);
+	}
+
+	@Test
+	public void itemSizeIsEncodedInDirectUtf8Mode() throws Exception {
+		assertItemSize("UTF-8", false, true);
+		assertItemSize("UTF-8", true, true);
+	}
+
+	private void assertItemSize(String encoding, boolean streaming, boolean directUtf8) throws Exception {
+		JsonItemWriterMetrics metrics = new JsonItemWriterMetrics();
+		JsonFlatFileItemWriter<TestItem> writer = new JsonFlatFileItemWriter<TestItem>("items");
+		writer.setResource(new FileSystemResource(file));
+		writer.setJsonItemAggregator(new JsonItemAggregator<TestItem>());
+		writer.setEncoding(encoding);
+		writer.setStreaming(streaming);
+		writer.setDirectUtf8(directUtf8);
+		writer.setMetrics(metrics);
+		writer.afterPropertiesSet();
+		writer.open(new ExecutionContext());
+		List<TestItem> items = Arrays.asList(ITEM, ITEM);
+		transactions.commit(writer, items, new ExecutionContext());
+		writer.close();
+
+		long expected = new JsonItemAggregator<TestItem>().aggregate(ITEM).getBytes(Charset.forName(encoding)).length;
+		assertEquals(expected, metrics.getItemSizeMax());
+		assertEquals(expected, metrics.getItemSizeMean());
+	}
+}
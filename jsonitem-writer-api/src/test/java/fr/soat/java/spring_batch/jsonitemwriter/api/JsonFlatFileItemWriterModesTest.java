@@ -0,0 +1,136 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.io.FileSystemResource;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.index.OffsetIndex;
+
+/**
+ * Each output mode writes committed chunks, drops a rolled back one, restarts from a saved state and produces a
+ * document read back by {@link JsonItemReader}. The behaviors of a single mode are tested by its own class.
+ */
+@RunWith(Parameterized.class)
+public class JsonFlatFileItemWriterModesTest {
+
+	private static final String COUNT_KEY = "JsonFlatFileItemWriter.written";
+
+	private enum Mode {
+		DEFAULT, STREAMING, JSON_LINES, ASYNC, COMPRESSED, MAPPED, DIRECT_UTF8, INDEXED
+	}
+
+	@Parameters(name = "{0}")
+	public static Collection<Object[]> modes() {
+		List<Object[]> modes = new ArrayList<>();
+		for (Mode mode : Mode.values()) {
+			modes.add(new Object[] { mode });
+		}
+		return modes;
+	}
+
+	private final Mode mode;
+
+	private final ChunkTransactions transactions = new ChunkTransactions();
+
+	private File file;
+
+	public JsonFlatFileItemWriterModesTest(Mode mode) {
+		this.mode = mode;
+	}
+
+	@Before
+	public void createFile() throws Exception {
+		file = File.createTempFile("modes", ".json");
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+		OffsetIndex.getIndexFile(file).delete();
+	}
+
+	private JsonFlatFileItemWriter<TestItem> createWriter() throws Exception {
+		JsonFlatFileItemWriter<TestItem> writer = new JsonFlatFileItemWriter<TestItem>("items");
+		writer.setResource(new FileSystemResource(file));
+		JsonItemAggregator<TestItem> aggregator = new JsonItemAggregator<TestItem>();
+		writer.setJsonItemAggregator(aggregator);
+		switch (mode) {
+		case STREAMING:
+			writer.setStreaming(true);
+			break;
+		case JSON_LINES:
+			aggregator.setPrettyPrint(false);
+			writer.setJsonLines(true);
+			break;
+		case ASYNC:
+			writer.setAsync(true);
+			writer.setAsyncBufferSize(256);
+			break;
+		case COMPRESSED:
+			writer.setCompressed(true);
+			writer.setCompressionBlockSize(512);
+			break;
+		case MAPPED:
+			writer.setMapped(true);
+			writer.setMappedRegionSize(4096);
+			break;
+		case DIRECT_UTF8:
+			writer.setDirectUtf8(true);
+			break;
+		case INDEXED:
+			writer.setIndexed(true);
+			writer.setIndexInterval(3);
+			break;
+		default:
+			break;
+		}
+		writer.afterPropertiesSet();
+		return writer;
+	}
+
+	@Test
+	public void writeRollbackRestartAndReadBack() throws Exception {
+		JsonFlatFileItemWriter<TestItem> writer = createWriter();
+		writer.open(new ExecutionContext());
+		List<TestItem> expected = new ArrayList<>();
+
+		expected.addAll(transactions.commit(writer, TestItem.items("first", 0, 40), new ExecutionContext()));
+		transactions.rollback(writer, TestItem.items("rolled back", 40, 25));
+		ExecutionContext restartContext = new ExecutionContext();
+		expected.addAll(transactions.commit(writer, TestItem.items("second", 40, 30), restartContext));
+		// committed, but lost by the restart from the previous state
+		transactions.commit(writer, TestItem.items("lost", 70, 20), new ExecutionContext());
+		writer.close();
+		assertEquals(expected.size(), restartContext.getLong(COUNT_KEY));
+
+		JsonFlatFileItemWriter<TestItem> restarted = createWriter();
+		restarted.open(restartContext);
+		expected.addAll(transactions.commit(restarted, TestItem.items("third", 70, 25), new ExecutionContext()));
+		restarted.close();
+
+		assertEquals(expected, read());
+	}
+
+	private List<TestItem> read() throws Exception {
+		switch (mode) {
+		case COMPRESSED:
+			return TestItem.readCompressed(file, "items");
+		case JSON_LINES:
+			return TestItem.read(file, null, true);
+		default:
+			return TestItem.read(file, "items", false);
+		}
+	}
+}
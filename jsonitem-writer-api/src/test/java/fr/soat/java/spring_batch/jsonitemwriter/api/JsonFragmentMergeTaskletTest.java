@@ -0,0 +1,108 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+/**
+ * Fragments written by partitions and merged give the document a single writer writes.
+ */
+public class JsonFragmentMergeTaskletTest {
+
+	private final ChunkTransactions transactions = new ChunkTransactions();
+
+	private final List<File> files = new ArrayList<>();
+
+	private File merged;
+
+	@Before
+	public void createFile() throws Exception {
+		merged = createTempFile();
+	}
+
+	@After
+	public void deleteFiles() {
+		for (File file : files) {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void mergedFragmentsAreTheDocumentOfASingleWriter() throws Exception {
+		File single = createTempFile();
+		write(single, false, false, TestItem.items("item", 0, 30));
+		Resource[] fragments = new Resource[] { fragment(false, TestItem.items("item", 0, 10)),
+				fragment(false, new ArrayList<TestItem>()), fragment(false, TestItem.items("item", 10, 20)) };
+
+		merge(fragments, false);
+
+		assertArrayEquals(Files.readAllBytes(single.toPath()), Files.readAllBytes(merged.toPath()));
+		assertEquals(TestItem.items("item", 0, 30), TestItem.read(merged, "items", false));
+		for (Resource fragment : fragments) {
+			assertFalse(fragment.exists());
+		}
+	}
+
+	@Test
+	public void jsonLinesFragmentsAreConcatenated() throws Exception {
+		File single = createTempFile();
+		write(single, true, false, TestItem.items("item", 0, 30));
+
+		merge(new Resource[] { fragment(true, TestItem.items("item", 0, 10)),
+				fragment(true, TestItem.items("item", 10, 20)) }, true);
+
+		assertArrayEquals(Files.readAllBytes(single.toPath()), Files.readAllBytes(merged.toPath()));
+	}
+
+	private void merge(Resource[] fragments, boolean jsonLines) throws Exception {
+		JsonFragmentMergeTasklet tasklet = new JsonFragmentMergeTasklet();
+		tasklet.setFragments(fragments);
+		tasklet.setResource(new FileSystemResource(merged));
+		tasklet.setRootNode("items");
+		tasklet.setJsonLines(jsonLines);
+		tasklet.setDeleteFragments(true);
+		tasklet.afterPropertiesSet();
+		tasklet.execute(null, null);
+	}
+
+	private Resource fragment(boolean jsonLines, List<TestItem> items) throws Exception {
+		File file = createTempFile();
+		write(file, jsonLines, true, items);
+		return new FileSystemResource(file);
+	}
+
+	private void write(File file, boolean jsonLines, boolean fragment, List<TestItem> items) throws Exception {
+		JsonFlatFileItemWriter<TestItem> writer = new JsonFlatFileItemWriter<TestItem>("items");
+		writer.setResource(new FileSystemResource(file));
+		JsonItemAggregator<TestItem> aggregator = new JsonItemAggregator<TestItem>();
+		aggregator.setPrettyPrint(!jsonLines);
+		writer.setJsonItemAggregator(aggregator);
+		writer.setJsonLines(jsonLines);
+		writer.setFragment(fragment);
+		writer.afterPropertiesSet();
+		writer.open(new ExecutionContext());
+		// in two chunks, as the partitions would
+		int half = items.size() / 2;
+		transactions.commit(writer, items.subList(0, half), new ExecutionContext());
+		transactions.commit(writer, items.subList(half, items.size()), new ExecutionContext());
+		writer.close();
+	}
+
+	private File createTempFile() throws Exception {
+		File file = File.createTempFile("merge", ".json");
+		files.add(file);
+		return file;
+	}
+}
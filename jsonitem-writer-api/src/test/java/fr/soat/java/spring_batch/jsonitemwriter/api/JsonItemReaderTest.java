@@ -0,0 +1,163 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.core.io.FileSystemResource;
+
+/**
+ * Restart of the reader, from the saved offset or item by item.
+ */
+public class JsonItemReaderTest {
+
+	private static final String OFFSET_KEY = "JsonItemReader.read.offset";
+
+	private final ChunkTransactions transactions = new ChunkTransactions();
+
+	private final List<File> files = new ArrayList<>();
+
+	@After
+	public void deleteFiles() {
+		for (File file : files) {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void restartSeeksToTheSavedOffset() throws Exception {
+		for (boolean jsonLines : new boolean[] { false, true }) {
+			File file = write(jsonLines, "UTF-8", TestItem.items("item", 0, 30));
+			ExecutionContext executionContext = new ExecutionContext();
+			JsonItemReader<TestItem> reader = createReader(file, jsonLines, "UTF-8");
+			reader.open(executionContext);
+			assertEquals(TestItem.items("item", 0, 10), read(reader, 10));
+			reader.update(executionContext);
+			reader.close();
+			long offset = executionContext.getLong(OFFSET_KEY);
+
+			// the items before the offset are not parsed again
+			overwrite(file, jsonLines ? 0 : offset - 20, offset);
+			reader = createReader(file, jsonLines, "UTF-8");
+			reader.open(executionContext);
+			assertEquals(TestItem.items("item", 10, 20), read(reader, 30));
+			reader.close();
+		}
+	}
+
+	@Test
+	public void restartReadsTheItemsOneByOneInOtherEncodings() throws Exception {
+		File file = write(false, "UTF-16BE", TestItem.items("item", 0, 30));
+		ExecutionContext executionContext = new ExecutionContext();
+		JsonItemReader<TestItem> reader = createReader(file, false, "UTF-16BE");
+		reader.open(executionContext);
+		assertEquals(TestItem.items("item", 0, 10), read(reader, 10));
+		reader.update(executionContext);
+		reader.close();
+		assertFalse(executionContext.containsKey(OFFSET_KEY));
+
+		reader = createReader(file, false, "UTF-16BE");
+		reader.open(executionContext);
+		assertEquals(TestItem.items("item", 10, 20), read(reader, 30));
+		reader.close();
+	}
+
+	@Test
+	public void restartAtTheEndReadsNothing() throws Exception {
+		File file = write(false, "UTF-8", TestItem.items("item", 0, 10));
+		ExecutionContext executionContext = new ExecutionContext();
+		JsonItemReader<TestItem> reader = createReader(file, false, "UTF-8");
+		reader.open(executionContext);
+		assertEquals(TestItem.items("item", 0, 10), read(reader, 10));
+		reader.update(executionContext);
+		reader.close();
+
+		reader = createReader(file, false, "UTF-8");
+		reader.open(executionContext);
+		assertEquals(null, reader.read());
+		reader.close();
+	}
+
+	@Test
+	public void restartFailsOnceTheFileChanged() throws Exception {
+		File file = write(false, "UTF-8", TestItem.items("item", 0, 30));
+		ExecutionContext executionContext = new ExecutionContext();
+		JsonItemReader<TestItem> reader = createReader(file, false, "UTF-8");
+		reader.open(executionContext);
+		read(reader, 10);
+		reader.update(executionContext);
+		reader.close();
+
+		// the saved offset falls inside an item
+		executionContext.putLong(OFFSET_KEY, executionContext.getLong(OFFSET_KEY) - 5);
+		reader = createReader(file, false, "UTF-8");
+		try {
+			reader.open(executionContext);
+			fail("The restart must fail when the offset is not the end of an item");
+		} catch (ItemStreamException e) {
+			assertTrue(e.getMessage(), e.getCause().getMessage().contains("not the end of an item"));
+		} finally {
+			reader.close();
+		}
+	}
+
+	private List<TestItem> read(JsonItemReader<TestItem> reader, int count) throws Exception {
+		List<TestItem> items = new ArrayList<>();
+		TestItem item;
+		while (items.size() < count && (item = reader.read()) != null) {
+			items.add(item);
+		}
+		return items;
+	}
+
+	/**
+	 * Replaces the bytes in the range with garbage that fails the parser.
+	 */
+	private void overwrite(File file, long start, long end) throws Exception {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			byte[] garbage = new byte[(int) (end - start)];
+			Arrays.fill(garbage, (byte) 'x');
+			raf.seek(start);
+			raf.write(garbage);
+		}
+	}
+
+	private JsonItemReader<TestItem> createReader(File file, boolean jsonLines, String encoding) throws Exception {
+		JsonItemReader<TestItem> reader = new JsonItemReader<TestItem>();
+		reader.setResource(new FileSystemResource(file));
+		reader.setItemType(TestItem.class);
+		reader.setRootNode(jsonLines ? null : "items");
+		reader.setJsonLines(jsonLines);
+		reader.setEncoding(encoding);
+		reader.afterPropertiesSet();
+		return reader;
+	}
+
+	private File write(boolean jsonLines, String encoding, List<TestItem> items) throws Exception {
+		File file = File.createTempFile("reader", ".json");
+		files.add(file);
+		JsonFlatFileItemWriter<TestItem> writer = new JsonFlatFileItemWriter<TestItem>("items");
+		writer.setResource(new FileSystemResource(file));
+		JsonItemAggregator<TestItem> aggregator = new JsonItemAggregator<TestItem>();
+		aggregator.setPrettyPrint(!jsonLines);
+		writer.setJsonItemAggregator(aggregator);
+		writer.setJsonLines(jsonLines);
+		writer.setEncoding(encoding);
+		writer.afterPropertiesSet();
+		writer.open(new ExecutionContext());
+		transactions.commit(writer, items, new ExecutionContext());
+		writer.close();
+		return file;
+	}
+}
@@ -0,0 +1,158 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.io.FileSystemResource;
+
+/**
+ * Ranges of a json lines file, split by the partitioner or cut anywhere, read every line exactly once.
+ */
+public class JsonLinesPartitionerTest {
+
+	private final ChunkTransactions transactions = new ChunkTransactions();
+
+	private final List<File> files = new ArrayList<>();
+
+	@After
+	public void deleteFiles() {
+		for (File file : files) {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void partitionsStartOnLinesAndCoverTheFile() throws Exception {
+		List<TestItem> items = TestItem.items("item", 0, 50);
+		File file = write(items);
+		byte[] content = Files.readAllBytes(file.toPath());
+		for (int gridSize = 1; gridSize <= 64; gridSize++) {
+			Map<String, ExecutionContext> partitions = partition(file, gridSize);
+			assertTrue(partitions.size() <= gridSize);
+
+			List<TestItem> read = new ArrayList<>();
+			long expectedStart = 0;
+			for (ExecutionContext context : partitions.values()) {
+				long start = context.getLong(JsonLinesPartitioner.START_OFFSET_KEY);
+				long end = context.getLong(JsonLinesPartitioner.END_OFFSET_KEY);
+				assertEquals(expectedStart, start);
+				assertTrue(start == 0 || content[(int) start - 1] == '\n');
+				read.addAll(read(file, start, end, null));
+				expectedStart = end;
+			}
+			assertEquals(content.length, expectedStart);
+			assertEquals("grid size " + gridSize, items, read);
+		}
+	}
+
+	@Test
+	public void emptyFileGivesASingleEmptyPartition() throws Exception {
+		File file = write(new ArrayList<TestItem>());
+		Map<String, ExecutionContext> partitions = partition(file, 4);
+
+		assertEquals(1, partitions.size());
+		ExecutionContext context = partitions.values().iterator().next();
+		assertEquals(0, context.getLong(JsonLinesPartitioner.START_OFFSET_KEY));
+		assertEquals(0, context.getLong(JsonLinesPartitioner.END_OFFSET_KEY));
+	}
+
+	/**
+	 * Boundaries at a line start, on a line feed, inside a line and inside a multi-byte character, with windows
+	 * smaller than the lines.
+	 */
+	@Test
+	public void adjacentRangesReadEachLineOnceWhateverTheBoundary() throws Exception {
+		List<TestItem> items = TestItem.items("item", 0, 15);
+		File file = write(items);
+		long size = file.length();
+		for (long boundary = 0; boundary <= size; boundary++) {
+			List<TestItem> read = new ArrayList<>(read(file, 0, boundary, null));
+			read.addAll(read(file, boundary, size, null));
+
+			assertEquals("boundary " + boundary, items, read);
+		}
+	}
+
+	@Test
+	public void rangeReaderRestartsFromTheSavedOffset() throws Exception {
+		List<TestItem> items = TestItem.items("item", 0, 30);
+		File file = write(items);
+		long size = file.length();
+		long start = size / 3;
+		List<TestItem> range = read(file, start, size, null);
+
+		ExecutionContext executionContext = new ExecutionContext();
+		JsonLinesRangeItemReader<TestItem> reader = createReader(file, start, size);
+		reader.open(executionContext);
+		List<TestItem> read = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			read.add(reader.read());
+		}
+		reader.update(executionContext);
+		reader.close();
+		read.addAll(read(file, start, size, executionContext));
+
+		assertEquals(range, read);
+	}
+
+	private Map<String, ExecutionContext> partition(File file, int gridSize) throws Exception {
+		JsonLinesPartitioner partitioner = new JsonLinesPartitioner();
+		partitioner.setResource(new FileSystemResource(file));
+		partitioner.afterPropertiesSet();
+		return partitioner.partition(gridSize);
+	}
+
+	private List<TestItem> read(File file, long start, long end, ExecutionContext executionContext)
+			throws Exception {
+		JsonLinesRangeItemReader<TestItem> reader = createReader(file, start, end);
+		reader.open(executionContext == null ? new ExecutionContext() : executionContext);
+		try {
+			List<TestItem> items = new ArrayList<>();
+			TestItem item;
+			while ((item = reader.read()) != null) {
+				items.add(item);
+			}
+			return items;
+		} finally {
+			reader.close();
+		}
+	}
+
+	private JsonLinesRangeItemReader<TestItem> createReader(File file, long start, long end) throws Exception {
+		JsonLinesRangeItemReader<TestItem> reader = new JsonLinesRangeItemReader<TestItem>();
+		reader.setResource(new FileSystemResource(file));
+		reader.setItemType(TestItem.class);
+		reader.setStartOffset(start);
+		reader.setEndOffset(end);
+		reader.setMappedRegionSize(16);
+		reader.afterPropertiesSet();
+		return reader;
+	}
+
+	private File write(List<TestItem> items) throws Exception {
+		File file = File.createTempFile("partition", ".json");
+		files.add(file);
+		JsonFlatFileItemWriter<TestItem> writer = new JsonFlatFileItemWriter<TestItem>();
+		writer.setResource(new FileSystemResource(file));
+		JsonItemAggregator<TestItem> aggregator = new JsonItemAggregator<TestItem>();
+		aggregator.setPrettyPrint(false);
+		writer.setJsonItemAggregator(aggregator);
+		writer.setJsonLines(true);
+		writer.afterPropertiesSet();
+		writer.open(new ExecutionContext());
+		if (!items.isEmpty()) {
+			transactions.commit(writer, items, new ExecutionContext());
+		}
+		writer.close();
+		return file;
+	}
+}
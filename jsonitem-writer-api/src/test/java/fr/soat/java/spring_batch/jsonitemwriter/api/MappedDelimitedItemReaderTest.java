@@ -0,0 +1,156 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.file.mapping.BeanWrapperFieldSetMapper;
+import org.springframework.batch.item.file.mapping.DefaultLineMapper;
+import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
+import org.springframework.core.io.FileSystemResource;
+
+/**
+ * Lines tokenized over their bytes, compared to a {@link FlatFileItemReader}, read by ranges and restarted from
+ * the saved offset.
+ */
+public class MappedDelimitedItemReaderTest {
+
+	private static final String OFFSET_KEY = "MappedDelimitedItemReader.read.offset";
+
+	private File file;
+
+	@Before
+	public void createFile() throws Exception {
+		file = File.createTempFile("delimited", ".csv");
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	private void write(String... lines) throws Exception {
+		StringBuilder content = new StringBuilder();
+		for (String line : lines) {
+			content.append(line).append('\n');
+		}
+		Files.write(file.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private MappedDelimitedItemReader<TestItem> createReader() throws Exception {
+		MappedDelimitedItemReader<TestItem> reader = new MappedDelimitedItemReader<TestItem>();
+		reader.setResource(new FileSystemResource(file));
+		reader.setItemType(TestItem.class);
+		reader.setNames(new String[] { "name", "value" });
+		reader.afterPropertiesSet();
+		return reader;
+	}
+
+	@Test
+	public void readsTheSameItemsAsAFlatFileItemReader() throws Exception {
+		write("# comment", "Toto, 1", "  Titi  ,2 ", "\"Tata, \"\"the\"\" first\",3", "\" quoted \", 4",
+				"é€😀,5");
+		FlatFileItemReader<TestItem> flatFileReader = new FlatFileItemReader<TestItem>();
+		flatFileReader.setResource(new FileSystemResource(file));
+		flatFileReader.setEncoding("UTF-8");
+		DefaultLineMapper<TestItem> lineMapper = new DefaultLineMapper<TestItem>();
+		DelimitedLineTokenizer tokenizer = new DelimitedLineTokenizer();
+		tokenizer.setNames(new String[] { "name", "value" });
+		lineMapper.setLineTokenizer(tokenizer);
+		BeanWrapperFieldSetMapper<TestItem> fieldSetMapper = new BeanWrapperFieldSetMapper<TestItem>();
+		fieldSetMapper.setTargetType(TestItem.class);
+		lineMapper.setFieldSetMapper(fieldSetMapper);
+		flatFileReader.setLineMapper(lineMapper);
+		flatFileReader.afterPropertiesSet();
+
+		List<TestItem> expected = Arrays.asList(new TestItem("Toto", 1), new TestItem("Titi", 2),
+				new TestItem("Tata, \"the\" first", 3), new TestItem("quoted", 4), new TestItem("é€😀", 5));
+		assertEquals(expected, readAll(flatFileReader, new ExecutionContext()));
+		assertEquals(expected, readAll(createReader(), new ExecutionContext()));
+	}
+
+	@Test
+	public void commentsAndHeaderLinesAreSkipped() throws Exception {
+		write("name,value", "// generated", "a,1", "# comment", "b,2");
+		MappedDelimitedItemReader<TestItem> reader = createReader();
+		reader.setLinesToSkip(1);
+		reader.setComments(new String[] { "#", "//" });
+
+		assertEquals(Arrays.asList(new TestItem("a", 1), new TestItem("b", 2)),
+				readAll(reader, new ExecutionContext()));
+	}
+
+	/**
+	 * Ranges cut in the middle of lines: each line is read by the range it starts in, the header only by the
+	 * first range.
+	 */
+	@Test
+	public void rangesReadEachLineOnce() throws Exception {
+		List<String> lines = new ArrayList<>();
+		lines.add("name,value");
+		List<TestItem> expected = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			lines.add("item-" + i + "," + i);
+			expected.add(new TestItem("item-" + i, i));
+		}
+		write(lines.toArray(new String[lines.size()]));
+
+		List<TestItem> items = new ArrayList<>();
+		long size = file.length();
+		long rangeSize = size / 7 + 1;
+		for (long start = 0; start < size; start += rangeSize) {
+			MappedDelimitedItemReader<TestItem> reader = createReader();
+			reader.setLinesToSkip(1);
+			reader.setStartOffset(start);
+			reader.setEndOffset(Math.min(start + rangeSize, size));
+			reader.setMappedRegionSize(64);
+			items.addAll(readAll(reader, new ExecutionContext()));
+		}
+		assertEquals(expected, items);
+	}
+
+	@Test
+	public void restartsFromTheSavedOffset() throws Exception {
+		write("name,value", "a,1", "b,2", "c,3", "d,4");
+		MappedDelimitedItemReader<TestItem> reader = createReader();
+		reader.setLinesToSkip(1);
+		ExecutionContext executionContext = new ExecutionContext();
+		reader.open(executionContext);
+		assertEquals(new TestItem("a", 1), reader.read());
+		assertEquals(new TestItem("b", 2), reader.read());
+		reader.update(executionContext);
+		reader.close();
+		assertEquals("name,value\na,1\nb,2\n".length(), executionContext.getLong(OFFSET_KEY));
+
+		MappedDelimitedItemReader<TestItem> restarted = createReader();
+		restarted.setLinesToSkip(1);
+		assertEquals(Arrays.asList(new TestItem("c", 3), new TestItem("d", 4)),
+				readAll(restarted, executionContext));
+	}
+
+	private static List<TestItem> readAll(ItemStreamReader<TestItem> reader, ExecutionContext executionContext)
+			throws Exception {
+		reader.open(executionContext);
+		try {
+			List<TestItem> items = new ArrayList<>();
+			TestItem item;
+			while ((item = reader.read()) != null) {
+				items.add(item);
+			}
+			return items;
+		} finally {
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.support.transaction.ResourcelessTransactionManager;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Rolled files opened, and rolls cancelled, by chunks rolled back, for the delegate modes discarding a rolled
+ * back chunk.
+ */
+@RunWith(Parameterized.class)
+public class MultiResourceJsonItemWriterTest {
+
+	@Parameters(name = "{0}")
+	public static Collection<Object[]> modes() {
+		return Arrays.asList(new Object[][] { { "default" }, { "async" }, { "mapped" }, { "directUtf8" } });
+	}
+
+	private final String mode;
+
+	private final TransactionTemplate transactionTemplate = new TransactionTemplate(
+			new ResourcelessTransactionManager());
+
+	private File directory;
+
+	public MultiResourceJsonItemWriterTest(String mode) {
+		this.mode = mode;
+	}
+
+	@Before
+	public void createDirectory() throws Exception {
+		directory = Files.createTempDirectory("multi").toFile();
+	}
+
+	@After
+	public void deleteDirectory() {
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	private MultiResourceJsonItemWriter<TestItem> createWriter() throws Exception {
+		JsonFlatFileItemWriter<TestItem> delegate = new JsonFlatFileItemWriter<TestItem>("items");
+		delegate.setJsonItemAggregator(new JsonItemAggregator<TestItem>());
+		delegate.setAsync("async".equals(mode));
+		delegate.setMapped("mapped".equals(mode));
+		delegate.setDirectUtf8("directUtf8".equals(mode));
+		delegate.afterPropertiesSet();
+		MultiResourceJsonItemWriter<TestItem> writer = new MultiResourceJsonItemWriter<TestItem>();
+		writer.setDelegate(delegate);
+		writer.setResource(new FileSystemResource(new File(directory, "items.json")));
+		writer.setItemCountLimitPerResource(10);
+		writer.afterPropertiesSet();
+		return writer;
+	}
+
+	@Test
+	public void rolledBackChunksAreWrittenAgainInTheRightFile() throws Exception {
+		MultiResourceJsonItemWriter<TestItem> writer = createWriter();
+		writer.open(new ExecutionContext());
+		List<TestItem> first = new ArrayList<>();
+		List<TestItem> second = new ArrayList<>();
+
+		first.addAll(commit(writer, TestItem.items("a", 0, 6), new ExecutionContext()));
+		// would roll the first file
+		rollback(writer, TestItem.items("rolled back", 6, 6));
+		first.addAll(commit(writer, TestItem.items("b", 6, 6), new ExecutionContext()));
+		// opens the second file
+		rollback(writer, TestItem.items("rolled back", 12, 3));
+		second.addAll(commit(writer, TestItem.items("c", 12, 3), new ExecutionContext()));
+		rollback(writer, TestItem.items("rolled back", 15, 2));
+		ExecutionContext restartContext = new ExecutionContext();
+		second.addAll(commit(writer, TestItem.items("d", 15, 2), restartContext));
+		commit(writer, TestItem.items("lost", 17, 2), new ExecutionContext());
+		writer.close();
+
+		MultiResourceJsonItemWriter<TestItem> restarted = createWriter();
+		restarted.open(restartContext);
+		second.addAll(commit(restarted, TestItem.items("e", 17, 4), new ExecutionContext()));
+		restarted.close();
+
+		assertEquals(first, TestItem.read(new File(directory, "items-1.json"), "items", false));
+		assertEquals(second, TestItem.read(new File(directory, "items-2.json"), "items", false));
+		assertEquals(2, directory.listFiles().length);
+	}
+
+	private List<TestItem> commit(final MultiResourceJsonItemWriter<TestItem> writer, final List<TestItem> items,
+			final ExecutionContext executionContext) {
+		transactionTemplate.execute(new TransactionCallback<Object>() {
+			@Override
+			public Object doInTransaction(TransactionStatus status) {
+				write(writer, items);
+				writer.update(executionContext);
+				return null;
+			}
+		});
+		return items;
+	}
+
+	private void rollback(final MultiResourceJsonItemWriter<TestItem> writer, final List<TestItem> items) {
+		transactionTemplate.execute(new TransactionCallback<Object>() {
+			@Override
+			public Object doInTransaction(TransactionStatus status) {
+				write(writer, items);
+				status.setRollbackOnly();
+				return null;
+			}
+		});
+	}
+
+	private static void write(MultiResourceJsonItemWriter<TestItem> writer, List<TestItem> items) {
+		try {
+			writer.write(items);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.io.FileSystemResource;
+
+/**
+ * Item written and read back by the tests.
+ */
+public class TestItem {
+
+	private String name;
+	private int value;
+
+	public TestItem() {
+	}
+
+	public TestItem(String name, int value) {
+		this.name = name;
+		this.value = value;
+	}
+
+	/**
+	 * Items named after the prefix and numbered from first, some of them out of ASCII.
+	 */
+	public static List<TestItem> items(String prefix, int first, int count) {
+		List<TestItem> items = new ArrayList<>(count);
+		for (int i = first; i < first + count; i++) {
+			items.add(new TestItem(prefix + (i % 7 == 0 ? "-é€😀" : "") + "-" + i, i));
+		}
+		return items;
+	}
+
+	/**
+	 * Reads back the items of a file written by the writer.
+	 */
+	public static List<TestItem> read(File file, String rootNode, boolean jsonLines) throws Exception {
+		JsonItemReader<TestItem> reader = new JsonItemReader<TestItem>();
+		reader.setResource(new FileSystemResource(file));
+		reader.setItemType(TestItem.class);
+		reader.setRootNode(rootNode);
+		reader.setJsonLines(jsonLines);
+		reader.afterPropertiesSet();
+		reader.open(new ExecutionContext());
+		try {
+			List<TestItem> items = new ArrayList<>();
+			TestItem item;
+			while ((item = reader.read()) != null) {
+				items.add(item);
+			}
+			return items;
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Reads back the items of a gzip file written by the writer.
+	 */
+	public static List<TestItem> readCompressed(File file, String rootNode) throws Exception {
+		File decompressed = File.createTempFile("decompressed", ".json");
+		try {
+			Files.write(decompressed.toPath(), gunzip(Files.newInputStream(file.toPath())));
+			return read(decompressed, rootNode, false);
+		} finally {
+			decompressed.delete();
+		}
+	}
+
+	/**
+	 * Decompresses all the members of a gzip stream, fails on a truncated member.
+	 */
+	public static byte[] gunzip(InputStream compressed) throws IOException {
+		GZIPInputStream in = new GZIPInputStream(compressed);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public int getValue() {
+		return value;
+	}
+
+	public void setValue(int value) {
+		this.value = value;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof TestItem)) {
+			return false;
+		}
+		TestItem other = (TestItem) obj;
+		return value == other.value && (name == null ? other.name == null : name.equals(other.name));
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * value + (name == null ? 0 : name.hashCode());
+	}
+
+	@Override
+	public String toString() {
+		return name + ":" + value;
+	}
+}
@@ -0,0 +1,81 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api.processor;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.support.ListItemWriter;
+
+/**
+ * Chunks processed in slices by {@link AsyncItemProcessor}, and unwrapped by {@link AsyncItemWriter}.
+ */
+public class AsyncItemProcessorTest {
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+	@After
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	@Test
+	public void slicesOfAListDelegateAreWrittenInOrder() throws Exception {
+		AsyncItemProcessor<Integer, String> processor = new AsyncItemProcessor<>();
+		processor.setListDelegate(new ItemListProcessor<Integer, String>() {
+			@Override
+			public List<String> process(List<? extends Integer> items) {
+				List<String> outputs = new ArrayList<>();
+				for (Integer item : items) {
+					// filters out the multiples of 3
+					if (item % 3 != 0) {
+						outputs.add("item-" + item);
+					}
+				}
+				return outputs;
+			}
+		});
+		processor.setExecutor(executor);
+		processor.setSliceSize(4);
+		processor.afterPropertiesSet();
+
+		List<Integer> items = Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+		List<Future<String>> futures = processor.process(items);
+		assertEquals(items.size(), futures.size());
+
+		assertEquals(Arrays.asList("item-1", "item-2", "item-4", "item-5", "item-7", "item-8", "item-10"),
+				write(futures));
+	}
+
+	@Test
+	public void itemDelegateProcessesTheSlicesOfAChunk() throws Exception {
+		AsyncItemProcessor<Integer, String> processor = new AsyncItemProcessor<>();
+		processor.setDelegate(new ItemProcessor<Integer, String>() {
+			@Override
+			public String process(Integer item) {
+				return item % 2 == 0 ? null : "item-" + item;
+			}
+		});
+		processor.setExecutor(executor);
+		processor.setSliceSize(2);
+		processor.afterPropertiesSet();
+
+		assertEquals(Arrays.asList("item-1", "item-3", "item-5"), write(processor.process(Arrays.asList(1, 2, 3, 4, 5))));
+		assertEquals(Arrays.asList("item-7"), write(Arrays.asList(processor.process(7), processor.process(8))));
+	}
+
+	private static List<String> write(List<Future<String>> futures) throws Exception {
+		ListItemWriter<String> delegate = new ListItemWriter<>();
+		new AsyncItemWriter<String>(delegate).write(futures);
+		@SuppressWarnings("unchecked")
+		List<String> written = (List<String>) delegate.getWrittenItems();
+		return written;
+	}
+}
@@ -0,0 +1,177 @@
+package fr.soat.java.spring_batch.jsonitemwriter.api.sync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.FailingFileChannel;
+
+/**
+ * Forces issued by each policy, counted on the channels.
+ */
+public class ForceSyncPolicyTest {
+
+	private final List<RandomAccessFile> files = new ArrayList<>();
+
+	private final List<File> paths = new ArrayList<>();
+
+	private ExecutorService executor;
+
+	@Before
+	public void createExecutor() {
+		executor = Executors.newFixedThreadPool(8);
+	}
+
+	@After
+	public void closeFiles() throws IOException {
+		executor.shutdownNow();
+		for (RandomAccessFile file : files) {
+			file.close();
+		}
+		for (File path : paths) {
+			path.delete();
+		}
+	}
+
+	@Test
+	public void alwaysForcesEachWrite() throws Exception {
+		CountingFileChannel channel = createChannel();
+		AlwaysForceSyncPolicy policy = new AlwaysForceSyncPolicy();
+		policy.afterWrite(channel);
+		policy.afterWrite(channel);
+		policy.beforeClose(channel);
+
+		assertEquals(3, channel.forces.get());
+	}
+
+	@Test
+	public void intervalForcesEveryCommitInterval() throws Exception {
+		CountingFileChannel channel = createChannel();
+		CountingFileChannel other = createChannel();
+		IntervalForceSyncPolicy policy = new IntervalForceSyncPolicy();
+		policy.setCommitInterval(3);
+		for (int i = 0; i < 7; i++) {
+			policy.afterWrite(channel);
+		}
+		policy.afterWrite(other);
+		assertEquals(2, channel.forces.get());
+		assertEquals(0, other.forces.get());
+
+		policy.beforeClose(channel);
+		assertEquals(3, channel.forces.get());
+		// the counter starts over
+		policy.afterWrite(channel);
+		assertEquals(3, channel.forces.get());
+	}
+
+	@Test
+	public void intervalForcesOnceTheTimeIntervalElapsed() throws Exception {
+		CountingFileChannel channel = createChannel();
+		IntervalForceSyncPolicy policy = new IntervalForceSyncPolicy();
+		policy.setCommitInterval(1000);
+		policy.setTimeInterval(20);
+		policy.afterWrite(channel);
+		policy.afterWrite(channel);
+		assertEquals(0, channel.forces.get());
+
+		Thread.sleep(30);
+		policy.afterWrite(channel);
+		assertEquals(1, channel.forces.get());
+	}
+
+	/**
+	 * Concurrent commits share the forces of their rounds, and none returns before its write is forced.
+	 */
+	@Test
+	public void groupCommitCoalescesTheForces() throws Exception {
+		final CountingFileChannel first = createChannel();
+		final CountingFileChannel second = createChannel();
+		final GroupCommitForceSyncPolicy policy = new GroupCommitForceSyncPolicy();
+		policy.setMaxDelay(50);
+		List<Future<Integer>> commits = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			final CountingFileChannel channel = i % 2 == 0 ? first : second;
+			commits.add(executor.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					policy.afterWrite(channel);
+					return channel.forces.get();
+				}
+			}));
+		}
+		for (Future<Integer> commit : commits) {
+			assertTrue(commit.get() >= 1);
+		}
+
+		assertTrue(first.forces.get() + second.forces.get() < 8);
+	}
+
+	@Test
+	public void groupCommitFailureFailsTheCommitsOfItsRoundOnly() throws Exception {
+		final CountingFileChannel channel = createChannel();
+		final GroupCommitForceSyncPolicy policy = new GroupCommitForceSyncPolicy();
+		channel.forceFailing = true;
+		try {
+			policy.afterWrite(channel);
+			fail("The force failure must fail the commit");
+		} catch (IOException e) {
+			// expected
+		}
+
+		channel.forceFailing = false;
+		policy.afterWrite(channel);
+		assertEquals(1, channel.forces.get());
+	}
+
+	@Test
+	public void groupCommitForcesOnClose() throws Exception {
+		CountingFileChannel channel = createChannel();
+		GroupCommitForceSyncPolicy policy = new GroupCommitForceSyncPolicy();
+		policy.beforeClose(channel);
+		assertEquals(1, channel.forces.get());
+	}
+
+	private CountingFileChannel createChannel() throws IOException {
+		File path = File.createTempFile("sync", ".json");
+		paths.add(path);
+		RandomAccessFile file = new RandomAccessFile(path, "rw");
+		files.add(file);
+		return new CountingFileChannel(file.getChannel());
+	}
+
+	private static class CountingFileChannel extends FailingFileChannel {
+
+		private final AtomicInteger forces = new AtomicInteger();
+
+		private volatile boolean forceFailing = false;
+
+		CountingFileChannel(FileChannel delegate) {
+			super(delegate);
+		}
+
+		@Override
+		public void force(boolean metaData) throws IOException {
+			if (forceFailing) {
+				throw new IOException("Input/output error");
+			}
+			super.force(metaData);
+			forces.incrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,483 @@
+package fr.soat.java.spring_batch.jsonitemwriter.apt;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a {@code GeneratedJsonItemAggregator} for each class annotated with {@code @JsonItem}. The properties
+ * are resolved at compile time following Jackson's default rules, and written by plain getter calls and
+ * {@code JsonGenerator} calls: numbers, booleans and strings directly, other {@code @JsonItem} classes through
+ * their own generated aggregator, anything else through the {@code ObjectMapper}.
+ *
+ * Jackson annotations that would change the output in ways not reproduced here are reported as errors, so that
+ * the generated output never silently differs from the reflective one.
+ */
+public class JsonItemProcessor extends AbstractProcessor {
+
+	private static final String JSON_ITEM = "fr.soat.java.spring_batch.jsonitemwriter.api.annotation.JsonItem";
+
+	private static final String AGGREGATOR_SUFFIX = "GeneratedJsonItemAggregator";
+
+	private static final String JACKSON_PACKAGE = "com.fasterxml.jackson.";
+
+	private static final String JSON_IGNORE = "com.fasterxml.jackson.annotation.JsonIgnore";
+
+	private static final String JSON_PROPERTY = "com.fasterxml.jackson.annotation.JsonProperty";
+
+	@Override
+	public Set<String> getSupportedAnnotationTypes() {
+		return Collections.singleton(JSON_ITEM);
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		TypeElement jsonItem = processingEnv.getElementUtils().getTypeElement(JSON_ITEM);
+		if (jsonItem == null) {
+			return false;
+		}
+		for (TypeElement type : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(jsonItem))) {
+			try {
+				generate(type);
+			} catch (UnsupportedItemException e) {
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), e.element);
+			} catch (IOException e) {
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+						"Could not write the aggregator: " + e.getMessage(), type);
+			}
+		}
+		return true;
+	}
+
+	private void generate(TypeElement type) throws IOException {
+		boolean topLevelOrStatic = type.getNestingKind() == NestingKind.TOP_LEVEL
+				|| (type.getNestingKind() == NestingKind.MEMBER && type.getModifiers().contains(Modifier.STATIC));
+		if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.PRIVATE) || !topLevelOrStatic) {
+			throw new UnsupportedItemException("@JsonItem requires a top level or static nested class", type);
+		}
+		if (!type.getTypeParameters().isEmpty()) {
+			throw new UnsupportedItemException("@JsonItem does not support generic classes", type);
+		}
+		List<Property> properties = collectProperties(type);
+		String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+		String aggregatorName = aggregatorName(type);
+		String itemType = type.getQualifiedName().toString();
+
+		StringBuilder source = new StringBuilder();
+		if (!packageName.isEmpty()) {
+			source.append("package ").append(packageName).append(";\n\n");
+		}
+		source.append("import java.io.IOException;\n\n");
+		source.append("import com.fasterxml.jackson.core.JsonGenerator;\n");
+		source.append("import com.fasterxml.jackson.core.SerializableString;\n");
+		source.append("import com.fasterxml.jackson.core.io.SerializedString;\n\n");
+		source.append("import fr.soat.java.spring_batch.jsonitemwriter.api.GeneratedJsonItemAggregator;\n\n");
+		source.append("/**\n * Aggregator of {@link ").append(itemType)
+				.append("}, generated by the @JsonItem annotation processor.\n */\n");
+		source.append("public class ").append(aggregatorName).append(" extends GeneratedJsonItemAggregator<")
+				.append(itemType).append("> {\n\n");
+		for (int i = 0; i < properties.size(); i++) {
+			source.append("\tprivate static final SerializableString NAME_").append(i).append(" = new SerializedString(")
+					.append(literal(properties.get(i).name)).append(");\n");
+		}
+		Map<String, String> nestedAggregators = new LinkedHashMap<String, String>();
+		for (Property property : properties) {
+			TypeElement nested = jsonItemType(property.type);
+			if (nested != null && !nestedAggregators.containsKey(nested.getQualifiedName().toString())) {
+				nestedAggregators.put(nested.getQualifiedName().toString(), "AGGREGATOR_" + nestedAggregators.size());
+				source.append("\n\tprivate static final ").append(aggregatorType(nested)).append(" AGGREGATOR_")
+						.append(nestedAggregators.size() - 1).append(" = new ").append(aggregatorType(nested))
+						.append("();\n");
+			}
+		}
+		source.append("\n\tpublic ").append(aggregatorName).append("() {\n");
+		source.append("\t\tsuper(").append(itemType).append(".class);\n");
+		source.append("\t}\n\n");
+		source.append("\t@Override\n");
+		source.append("\tprotected void writeFields(").append(itemType)
+				.append(" item, JsonGenerator jsonGenerator) throws IOException {\n");
+		for (int i = 0; i < properties.size(); i++) {
+			Property property = properties.get(i);
+			source.append("\t\tjsonGenerator.writeFieldName(NAME_").append(i).append(");\n");
+			appendValue(source, property, "value" + i, nestedAggregators);
+		}
+		source.append("\t}\n");
+		source.append("}\n");
+
+		Writer writer = processingEnv.getFiler().createSourceFile(
+				packageName.isEmpty() ? aggregatorName : packageName + "." + aggregatorName, type).openWriter();
+		try {
+			writer.write(source.toString());
+		} finally {
+			writer.close();
+		}
+	}
+
+	private void appendValue(StringBuilder source, Property property, String variable,
+			Map<String, String> nestedAggregators) {
+		String access = "item." + property.accessor;
+		TypeMirror type = property.type;
+		switch (type.getKind()) {
+		case BOOLEAN:
+			source.append("\t\tjsonGenerator.writeBoolean(").append(access).append(");\n");
+			return;
+		case BYTE:
+			source.append("\t\tjsonGenerator.writeNumber((int) ").append(access).append(");\n");
+			return;
+		case SHORT:
+		case INT:
+		case LONG:
+		case FLOAT:
+		case DOUBLE:
+			source.append("\t\tjsonGenerator.writeNumber(").append(access).append(");\n");
+			return;
+		case CHAR:
+			source.append("\t\tjsonGenerator.writeString(String.valueOf(").append(access).append("));\n");
+			return;
+		default:
+			break;
+		}
+		String typeName = type.getKind() == TypeKind.DECLARED
+				? ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString() : null;
+		String write;
+		if ("java.lang.String".equals(typeName)) {
+			write = "jsonGenerator.writeString(" + variable + ")";
+		} else if ("java.lang.Boolean".equals(typeName)) {
+			write = "jsonGenerator.writeBoolean(" + variable + ")";
+		} else if ("java.lang.Byte".equals(typeName)) {
+			write = "jsonGenerator.writeNumber((int) " + variable + ")";
+		} else if ("java.lang.Short".equals(typeName) || "java.lang.Integer".equals(typeName)
+				|| "java.lang.Long".equals(typeName) || "java.lang.Float".equals(typeName)
+				|| "java.lang.Double".equals(typeName) || "java.math.BigDecimal".equals(typeName)
+				|| "java.math.BigInteger".equals(typeName)) {
+			write = "jsonGenerator.writeNumber(" + variable + ")";
+		} else if ("java.lang.Character".equals(typeName)) {
+			write = "jsonGenerator.writeString(String.valueOf(" + variable + "))";
+		} else {
+			TypeElement nested = jsonItemType(type);
+			if (nested != null) {
+				// a subclass may have more properties: only the exact class is written by its generated code
+				String aggregator = nestedAggregators.get(nested.getQualifiedName().toString());
+				source.append("\t\t").append(typeName).append(' ').append(variable).append(" = ").append(access)
+						.append(";\n");
+				source.append("\t\tif (").append(variable).append(" != null && ").append(variable)
+						.append(".getClass() == ").append(typeName).append(".class) {\n");
+				source.append("\t\t\t").append(aggregator).append(".writeItem(").append(variable)
+						.append(", jsonGenerator);\n");
+				source.append("\t\t} else {\n");
+				source.append("\t\t\tjsonGenerator.writeObject(").append(variable).append(");\n");
+				source.append("\t\t}\n");
+			} else {
+				source.append("\t\tjsonGenerator.writeObject(").append(access).append(");\n");
+			}
+			return;
+		}
+		source.append("\t\t").append(typeName).append(' ').append(variable).append(" = ").append(access)
+				.append(";\n");
+		source.append("\t\tif (").append(variable).append(" == null) {\n");
+		source.append("\t\t\tjsonGenerator.writeNull();\n");
+		source.append("\t\t} else {\n");
+		source.append("\t\t\t").append(write).append(";\n");
+		source.append("\t\t}\n");
+	}
+
+	/**
+	 * Properties in Jackson's default order: those backed by a field first, in the order of the fields from the
+	 * top superclass down, then the getter only ones in the order of the getters, then the renamed ones.
+	 */
+	private List<Property> collectProperties(TypeElement type) {
+		List<TypeElement> hierarchy = new ArrayList<TypeElement>();
+		for (TypeElement current = type; current != null && !"java.lang.Object".equals(
+				current.getQualifiedName().toString()); current = superclass(current)) {
+			hierarchy.add(0, current);
+		}
+		Map<String, Property> properties = new LinkedHashMap<String, Property>();
+		Set<String> ignored = new HashSet<String>();
+		for (TypeElement current : hierarchy) {
+			checkAnnotations(current, false);
+			for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+				if (field.getModifiers().contains(Modifier.STATIC)) {
+					continue;
+				}
+				String name = field.getSimpleName().toString();
+				Property property = properties.get(name);
+				if (property == null) {
+					property = new Property();
+					properties.put(name, property);
+				}
+				property.field = field;
+				if (field.getModifiers().contains(Modifier.PUBLIC) && !field.getModifiers().contains(Modifier.TRANSIENT)) {
+					property.accessor = name;
+					property.type = field.asType();
+				}
+				readAnnotations(field, name, property, ignored);
+			}
+		}
+		for (TypeElement current : hierarchy) {
+			checkDefaultGetters(current);
+			for (ExecutableElement method : ElementFilter.methodsIn(current.getEnclosedElements())) {
+				String name = getterName(method);
+				if (name == null) {
+					checkAnnotations(method, false);
+					continue;
+				}
+				Property property = properties.get(name);
+				if (property == null) {
+					property = new Property();
+					properties.put(name, property);
+				}
+				property.accessor = method.getSimpleName() + "()";
+				property.type = method.getReturnType();
+				readAnnotations(method, name, property, ignored);
+			}
+		}
+		List<Property> result = new ArrayList<Property>();
+		List<Property> renamed = new ArrayList<Property>();
+		for (Map.Entry<String, Property> entry : properties.entrySet()) {
+			Property property = entry.getValue();
+			if (ignored.contains(entry.getKey())) {
+				continue;
+			}
+			if (property.accessor == null) {
+				if (property.annotated) {
+					throw new UnsupportedItemException("@JsonProperty is only supported on public fields and getters",
+							property.field);
+				}
+				continue;
+			}
+			if (property.explicitName != null && !property.explicitName.equals(entry.getKey())) {
+				property.name = property.explicitName;
+				renamed.add(property);
+			} else {
+				property.name = entry.getKey();
+				result.add(property);
+			}
+		}
+		// Jackson moves the renamed properties after the others
+		result.addAll(renamed);
+		return result;
+	}
+
+	/**
+	 * Rejects the getters inherited from interface default methods, that Jackson would also serialize.
+	 */
+	private void checkDefaultGetters(TypeElement type) {
+		for (TypeMirror superinterface : type.getInterfaces()) {
+			TypeElement element = (TypeElement) ((DeclaredType) superinterface).asElement();
+			for (ExecutableElement method : ElementFilter.methodsIn(element.getEnclosedElements())) {
+				if (method.getModifiers().contains(Modifier.DEFAULT) && getterName(method) != null) {
+					throw new UnsupportedItemException("Default getter " + element.getSimpleName() + "."
+							+ method.getSimpleName() + " is not supported by the @JsonItem processor", type);
+				}
+			}
+			checkDefaultGetters(element);
+		}
+	}
+
+	private TypeElement superclass(TypeElement type) {
+		TypeMirror superclass = type.getSuperclass();
+		return superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+	}
+
+	/**
+	 * @return the property name Jackson derives from the getter, null if the method is not a getter
+	 */
+	private String getterName(ExecutableElement method) {
+		Set<Modifier> modifiers = method.getModifiers();
+		if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC)
+				|| !method.getParameters().isEmpty() || method.getReturnType().getKind() == TypeKind.VOID) {
+			return null;
+		}
+		String name = method.getSimpleName().toString();
+		String base;
+		if (name.startsWith("get") && name.length() > 3) {
+			base = name.substring(3);
+		} else if (name.startsWith("is") && name.length() > 2 && method.getReturnType().getKind() == TypeKind.BOOLEAN) {
+			base = name.substring(2);
+		} else {
+			return null;
+		}
+		// leading upper case letters are lower cased, as by Jackson's default naming
+		StringBuilder property = new StringBuilder(base);
+		for (int i = 0; i < property.length(); i++) {
+			char lower = Character.toLowerCase(property.charAt(i));
+			if (lower == property.charAt(i)) {
+				break;
+			}
+			property.setCharAt(i, lower);
+		}
+		return property.toString();
+	}
+
+	private void readAnnotations(Element element, String name, Property property, Set<String> ignored) {
+		checkAnnotations(element, true);
+		for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+			String annotationType = annotationType(annotation);
+			if (JSON_IGNORE.equals(annotationType)) {
+				AnnotationValue value = attribute(annotation, "value");
+				if (value == null || Boolean.TRUE.equals(value.getValue())) {
+					ignored.add(name);
+				}
+			} else if (JSON_PROPERTY.equals(annotationType)) {
+				property.annotated = true;
+				AnnotationValue value = attribute(annotation, "value");
+				if (value != null && !((String) value.getValue()).isEmpty()) {
+					property.explicitName = (String) value.getValue();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Rejects the Jackson annotations whose effect is not reproduced.
+	 *
+	 * @param property whether the element is a field or a getter, where {@code @JsonIgnore} and
+	 *            {@code @JsonProperty} are supported
+	 */
+	private void checkAnnotations(Element element, boolean property) {
+		for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+			String annotationType = annotationType(annotation);
+			if (!annotationType.startsWith(JACKSON_PACKAGE)) {
+				continue;
+			}
+			boolean supported = property && (JSON_IGNORE.equals(annotationType) || (JSON_PROPERTY.equals(annotationType)
+					&& onlyAttributes(annotation, "value", "required")));
+			if (!supported) {
+				throw new UnsupportedItemException("@" + annotation.getAnnotationType().asElement().getSimpleName()
+						+ " is not supported by the @JsonItem processor", element);
+			}
+		}
+	}
+
+	private boolean onlyAttributes(AnnotationMirror annotation, String... names) {
+		List<String> allowed = Arrays.asList(names);
+		for (ExecutableElement attribute : annotation.getElementValues().keySet()) {
+			if (!allowed.contains(attribute.getSimpleName().toString())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private AnnotationValue attribute(AnnotationMirror annotation, String name) {
+		for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation.getElementValues()
+				.entrySet()) {
+			if (entry.getKey().getSimpleName().contentEquals(name)) {
+				return entry.getValue();
+			}
+		}
+		return null;
+	}
+
+	private String annotationType(AnnotationMirror annotation) {
+		return ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().toString();
+	}
+
+	/**
+	 * @return the class of the type if it is annotated with {@code @JsonItem}, null otherwise
+	 */
+	private TypeElement jsonItemType(TypeMirror type) {
+		if (type.getKind() != TypeKind.DECLARED) {
+			return null;
+		}
+		TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+		if (!element.getTypeParameters().isEmpty()) {
+			return null;
+		}
+		for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+			if (JSON_ITEM.equals(annotationType(annotation))) {
+				return element;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Name of the aggregator of a class: its simple name, prefixed by the ones of its enclosing classes.
+	 */
+	private String aggregatorName(TypeElement type) {
+		StringBuilder name = new StringBuilder(AGGREGATOR_SUFFIX);
+		for (Element current = type; current instanceof TypeElement; current = current.getEnclosingElement()) {
+			name.insert(0, current.getSimpleName());
+		}
+		return name.toString();
+	}
+
+	private String aggregatorType(TypeElement type) {
+		String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+		return packageName.isEmpty() ? aggregatorName(type) : packageName + "." + aggregatorName(type);
+	}
+
+	private String literal(String value) {
+		StringBuilder literal = new StringBuilder("\"");
+		for (char c : value.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				literal.append('\\').append(c);
+			} else if (c < 0x20 || c > 0x7e) {
+				literal.append(String.format("\\u%04x", (int) c));
+			} else {
+				literal.append(c);
+			}
+		}
+		return literal.append('"').toString();
+	}
+
+	private static class Property {
+
+		VariableElement field;
+
+		String name;
+
+		// whether it has a @JsonProperty, which makes Jackson write even a private field
+		boolean annotated;
+
+		String explicitName;
+
+		// field name or getter call
+		String accessor;
+
+		TypeMirror type;
+	}
+
+	private static class UnsupportedItemException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		final transient Element element;
+
+		UnsupportedItemException(String message, Element element) {
+			super(message);
+			this.element = element;
+		}
+	}
+}
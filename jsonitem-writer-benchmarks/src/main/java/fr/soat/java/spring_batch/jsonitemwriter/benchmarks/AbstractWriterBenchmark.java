@@ -0,0 +1,140 @@
+package fr.soat.java.spring_batch.jsonitemwriter.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.support.transaction.ResourcelessTransactionManager;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import fr.soat.java.spring_batch.jsonitemwriter.model.Person;
+
+/**
+ * Drives an item writer the way a chunk-oriented step does: one benchmark operation writes one chunk and
+ * updates the execution context, inside a transaction when the writer is transactional.
+ * 
+ * The output file is recreated for each iteration so that its size stays bounded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class AbstractWriterBenchmark {
+
+	private static final String ITEM_CONTENT = "Jean-François Müller é à ç ô ";
+
+	@Param({ "10", "1000", "10000" })
+	public int chunkSize;
+
+	@Param({ "16", "256", "4096" })
+	public int itemSize;
+
+	@Param({ "true", "false" })
+	public boolean transactional;
+
+	@Param({ "UTF-8", "ISO-8859-1" })
+	public String encoding;
+
+	private final TransactionTemplate transactionTemplate = new TransactionTemplate(
+			new ResourcelessTransactionManager());
+
+	private File outputFile;
+
+	private ItemStreamWriter<Person> writer;
+
+	private ExecutionContext executionContext;
+
+	private List<Person> chunk;
+
+	private long lastPosition;
+
+	/**
+	 * Creates the configured, not yet opened, writer under benchmark.
+	 */
+	protected abstract ItemStreamWriter<Person> createWriter(Resource resource) throws Exception;
+
+	/**
+	 * Execution context key holding the byte offset of the writer.
+	 */
+	protected abstract String getPositionKey();
+
+	@Setup(Level.Iteration)
+	public void setUp() throws Exception {
+		chunk = createChunk(chunkSize, itemSize);
+		outputFile = File.createTempFile("jsonitem-writer-benchmark", ".json");
+		writer = createWriter(new FileSystemResource(outputFile));
+		executionContext = new ExecutionContext();
+		writer.open(executionContext);
+		lastPosition = 0;
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() throws IOException {
+		writer.close();
+		if (!outputFile.delete()) {
+			outputFile.deleteOnExit();
+		}
+	}
+
+	/**
+	 * Writes one chunk, then updates the execution context as the step would do before committing.
+	 */
+	protected void writeChunk(WriterCounters counters) throws Exception {
+		if (transactional) {
+			transactionTemplate.execute(new TransactionCallback<Void>() {
+				@Override
+				public Void doInTransaction(TransactionStatus status) {
+					try {
+						writer.write(chunk);
+					} catch (Exception e) {
+						throw new IllegalStateException(e);
+					}
+					writer.update(executionContext);
+					return null;
+				}
+			});
+		} else {
+			writer.write(chunk);
+			writer.update(executionContext);
+		}
+		long position = executionContext.getLong(getPositionKey());
+		counters.items += chunk.size();
+		counters.bytes += position - lastPosition;
+		lastPosition = position;
+	}
+
+	private static List<Person> createChunk(int chunkSize, int itemSize) {
+		StringBuilder content = new StringBuilder(itemSize);
+		while (content.length() < itemSize) {
+			content.append(ITEM_CONTENT);
+		}
+		content.setLength(itemSize);
+		List<Person> persons = new ArrayList<>(chunkSize);
+		for (int i = 0; i < chunkSize; i++) {
+			persons.add(new Person(content.toString(), content.toString() + i));
+		}
+		return persons;
+	}
+}
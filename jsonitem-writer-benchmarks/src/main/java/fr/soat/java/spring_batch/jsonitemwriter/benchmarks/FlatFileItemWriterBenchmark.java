@@ -0,0 +1,45 @@
+package fr.soat.java.spring_batch.jsonitemwriter.benchmarks;
+
+import org.jsonitem.writer.impl.objectif2.config.PersonHeaderFooterCallBack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.item.file.FlatFileItemWriter;
+import org.springframework.core.io.Resource;
+
+import fr.soat.java.spring_batch.jsonitemwriter.item.PersonJsonItemAggregator;
+import fr.soat.java.spring_batch.jsonitemwriter.model.Person;
+import fr.soat.java.spring_batch.jsonitemwriter.utils.AppUtils;
+
+/**
+ * Reference measure: {@link FlatFileItemWriter} producing json as configured in jsonitem-writer-impl-objectif2.
+ */
+public class FlatFileItemWriterBenchmark extends AbstractWriterBenchmark {
+
+	@Override
+	protected ItemStreamWriter<Person> createWriter(Resource resource) throws Exception {
+		FlatFileItemWriter<Person> writer = new FlatFileItemWriter<Person>();
+		writer.setLineSeparator(AppUtils.COMMA_SEPARATOR);
+
+		PersonHeaderFooterCallBack headerFooterCallback = new PersonHeaderFooterCallBack();
+		writer.setHeaderCallback(headerFooterCallback);
+		writer.setFooterCallback(headerFooterCallback);
+
+		writer.setLineAggregator(new PersonJsonItemAggregator<Person>());
+		writer.setResource(resource);
+		writer.setEncoding(encoding);
+		writer.setTransactional(transactional);
+		writer.setShouldDeleteIfExists(true);
+		writer.afterPropertiesSet();
+		return writer;
+	}
+
+	@Override
+	protected String getPositionKey() {
+		return "FlatFileItemWriter.current.count";
+	}
+
+	@Benchmark
+	public void write(WriterCounters counters) throws Exception {
+		writeChunk(counters);
+	}
+}
@@ -0,0 +1,52 @@
+package fr.soat.java.spring_batch.jsonitemwriter.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.core.io.Resource;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.JsonFlatFileItemWriter;
+import fr.soat.java.spring_batch.jsonitemwriter.api.JsonItemAggregator;
+import fr.soat.java.spring_batch.jsonitemwriter.model.Person;
+import fr.soat.java.spring_batch.jsonitemwriter.model.PersonGeneratedJsonItemAggregator;
+
+/**
+ * Throughput of {@link JsonFlatFileItemWriter} configured as in jsonitem-writer-impl.
+ */
+public class JsonFlatFileItemWriterBenchmark extends AbstractWriterBenchmark {
+
+	private static final String JSON_ROOT_NODE = "Persons";
+
+	@Param({ "false", "true" })
+	public boolean streaming;
+
+	@Param({ "false", "true" })
+	public boolean async;
+
+	@Param({ "false", "true" })
+	public boolean generated;
+
+	@Override
+	protected ItemStreamWriter<Person> createWriter(Resource resource) throws Exception {
+		JsonFlatFileItemWriter<Person> writer = new JsonFlatFileItemWriter<Person>(JSON_ROOT_NODE);
+		writer.setJsonItemAggregator(generated ? new PersonGeneratedJsonItemAggregator() : new JsonItemAggregator<Person>());
+		writer.setResource(resource);
+		writer.setEncoding(encoding);
+		writer.setTransactional(transactional);
+		writer.setStreaming(streaming);
+		writer.setAsync(async);
+		writer.setShouldDeleteIfExists(true);
+		writer.afterPropertiesSet();
+		return writer;
+	}
+
+	@Override
+	protected String getPositionKey() {
+		return "JsonFlatFileItemWriter.current.count";
+	}
+
+	@Benchmark
+	public void write(WriterCounters counters) throws Exception {
+		writeChunk(counters);
+	}
+}
@@ -0,0 +1,25 @@
+package fr.soat.java.spring_batch.jsonitemwriter.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary counters reported by JMH as rates: items/s and bytes/s written by the benchmarked writer.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class WriterCounters {
+
+	public long items;
+
+	public long bytes;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		items = 0;
+		bytes = 0;
+	}
+}
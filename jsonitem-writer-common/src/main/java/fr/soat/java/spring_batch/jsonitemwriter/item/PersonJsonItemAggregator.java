@@ -5,21 +5,22 @@ import org.springframework.batch.item.file.transform.LineAggregator;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 
+import fr.soat.java.spring_batch.jsonitemwriter.api.utils.ObjectWriterRegistry;
 import fr.soat.java.spring_batch.jsonitemwriter.utils.JsonUtils;
 
 public class PersonJsonItemAggregator<Person> implements LineAggregator<Person> {
 	
 	private static final org.slf4j.Logger logger = LoggerFactory.getLogger(PersonJsonItemAggregator.class);
 
+	private ObjectWriterRegistry objectWriterRegistry = ObjectWriterRegistry.getDefault();
 
 	@Override
 	/** Utilise le Mapper et la writer de Jackson pour parser le pojo en chaîne de caractère
 	 * 
-	 * La méthode <code>JsonUtils.convertObjectToJsonString()</code> est définie telle que : 
+	 * La méthode <code>JsonUtils.convertObjectToJsonString()</code> utilise le writer mis en cache
+	 * pour la classe de l'objet par le registre : 
 	 * 
-	 * ObjectMapper objectMapper = new ObjectMapper();
-	 * ObjectWriter objectWriter = objectMapper.writer().withDefaultPrettyPrinter();
-	 * objectWriter.writeValueAsString(object);
+	 * objectWriterRegistry.getObjectWriterFor(object, true).writeValueAsString(object);
 	 * 
 	 * {@link org.batchitemwiter.gson.utils.JsonUtils}
 	 * 
@@ -27,10 +28,17 @@ public class PersonJsonItemAggregator<Person> implements LineAggregator<Person>
 	public String aggregate(Person person) {
 		String result = null;
 		try {
-			result = JsonUtils.convertObjectToJsonString(person); 
+			result = JsonUtils.convertObjectToJsonString(objectWriterRegistry, person); 
 		} catch (JsonProcessingException jpe) {
 			logger.error("An error has occured. Error message {} ", jpe.getMessage() );
 		}
 		return result;
 	}
+
+	/**
+	 * Registre fournissant les writers Jackson. Par défaut, le registre partagé {@link ObjectWriterRegistry#getDefault()}.
+	 */
+	public void setObjectWriterRegistry(ObjectWriterRegistry objectWriterRegistry) {
+		this.objectWriterRegistry = objectWriterRegistry;
+	}
 }
@@ -2,6 +2,9 @@ package fr.soat.java.spring_batch.jsonitemwriter.model;
 
 import java.io.Serializable;
 
+import fr.soat.java.spring_batch.jsonitemwriter.api.annotation.JsonItem;
+
+@JsonItem
 public class Person implements Serializable {
 	
 	
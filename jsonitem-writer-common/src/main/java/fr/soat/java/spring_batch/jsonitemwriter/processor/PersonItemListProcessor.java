@@ -0,0 +1,40 @@
+package fr.soat.java.spring_batch.jsonitemwriter.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.LoggerFactory;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.processor.ItemListProcessor;
+import fr.soat.java.spring_batch.jsonitemwriter.model.Person;
+
+/**
+ * Same transformation as {@link PersonItemProcessor}, applied to a whole chunk, or to a slice of it when run by
+ * an {@link fr.soat.java.spring_batch.jsonitemwriter.api.processor.AsyncItemProcessor}: a single line is
+ * logged per call, the details of each person only at debug level.
+ */
+public class PersonItemListProcessor implements ItemListProcessor<Person, Person> {
+
+	private static final org.slf4j.Logger logger = LoggerFactory.getLogger(PersonItemListProcessor.class);
+
+	@Override
+	public List<Person> process(List<? extends Person> persons) throws Exception {
+		final List<Person> transformedPersons = new ArrayList<>(persons.size());
+		final boolean debug = logger.isDebugEnabled();
+		for (Person person : persons) {
+			final Person transformedPerson = new Person(person.getFirstname().toUpperCase(),
+					person.getLastname().toUpperCase());
+			if (debug) {
+				logger.debug(">Successfully proceed person from {} to {}", person, transformedPerson);
+			}
+			transformedPersons.add(transformedPerson);
+		}
+
+		if (logger.isInfoEnabled()) {
+			logger.info(">Successfully proceed {} persons", transformedPersons.size());
+		}
+
+		return transformedPersons;
+	}
+
+}
@@ -17,8 +17,9 @@ public class PersonItemProcessor implements ItemProcessor<Person, Person> {
 
 		final Person transformedPerson = new Person(firstName, lastName);
 
-		 if (logger.isInfoEnabled()){
-	    	 logger.info(">Successfully proceed person from {} to {}", person, transformedPerson);
+		 // called for each item: the details are only logged at debug level
+		 if (logger.isDebugEnabled()){
+	    	 logger.debug(">Successfully proceed person from {} to {}", person, transformedPerson);
 	     }
 
 		return transformedPerson;
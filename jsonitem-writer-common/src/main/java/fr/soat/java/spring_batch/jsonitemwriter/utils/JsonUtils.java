@@ -1,15 +1,18 @@
 package fr.soat.java.spring_batch.jsonitemwriter.utils;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.utils.ObjectWriterRegistry;
 
 public class JsonUtils {
 	
 	public static <T> String convertObjectToJsonString(T object) throws JsonProcessingException {
-		ObjectMapper objectMapper = new ObjectMapper();
-		ObjectWriter objectWriter = objectMapper.writer().withDefaultPrettyPrinter();
-		return objectWriter.writeValueAsString(object);
+		return convertObjectToJsonString(ObjectWriterRegistry.getDefault(), object);
+	}
+
+	public static <T> String convertObjectToJsonString(ObjectWriterRegistry objectWriterRegistry, T object)
+			throws JsonProcessingException {
+		return objectWriterRegistry.getObjectWriterFor(object, true).writeValueAsString(object);
 	}
 
 }
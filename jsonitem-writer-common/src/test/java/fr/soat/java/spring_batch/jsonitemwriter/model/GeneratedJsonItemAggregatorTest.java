@@ -0,0 +1,74 @@
+package fr.soat.java.spring_batch.jsonitemwriter.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.GeneratedJsonItemAggregator;
+import fr.soat.java.spring_batch.jsonitemwriter.api.JsonItemAggregator;
+import fr.soat.java.spring_batch.jsonitemwriter.api.utils.ObjectWriterRegistry;
+
+/**
+ * The aggregators generated from {@code @JsonItem} write exactly what the reflective {@link JsonItemAggregator}
+ * writes, pretty printed or not, as a String or into a generator.
+ */
+public class GeneratedJsonItemAggregatorTest {
+
+	@Test
+	public void personIsWrittenAsByTheReflectiveAggregator() throws Exception {
+		List<Person> persons = Arrays.asList(new Person("Toto", "Titi"), new Person(null, null),
+				new Person("é€😀", "quote \" backslash \\ tab \t line\n"), new Person("", " "));
+		for (boolean prettyPrint : new boolean[] { true, false }) {
+			assertSameOutput(new PersonGeneratedJsonItemAggregator(), persons, prettyPrint);
+		}
+	}
+
+	@Test
+	public void propertiesOfEachKindAreWrittenAsByTheReflectiveAggregator() throws Exception {
+		SampleItem full = new SampleItem();
+		full.setCount(-3);
+		full.setTotal(Long.MAX_VALUE);
+		full.setRatio(0.1);
+		full.setActive(true);
+		full.setCode('é');
+		full.setOptional(42);
+		full.setFlag(Boolean.FALSE);
+		full.setAmount(new BigDecimal("12.50"));
+		full.setTags(Arrays.asList("a", "b"));
+		full.setOwner(new Person("Toto", "Titi"));
+		full.setName("name");
+		full.setSecret("secret");
+		SampleItem empty = new SampleItem();
+		for (boolean prettyPrint : new boolean[] { true, false }) {
+			assertSameOutput(new SampleItemGeneratedJsonItemAggregator(), Arrays.asList(full, empty), prettyPrint);
+		}
+	}
+
+	private static <T> void assertSameOutput(GeneratedJsonItemAggregator<T> generated, List<T> items,
+			boolean prettyPrint) throws IOException {
+		JsonItemAggregator<T> reflective = new JsonItemAggregator<T>();
+		reflective.setPrettyPrint(prettyPrint);
+		generated.setPrettyPrint(prettyPrint);
+		for (T item : items) {
+			assertEquals(reflective.aggregate(item), generated.aggregate(item));
+			assertEquals(generate(reflective, item), generate(generated, item));
+		}
+	}
+
+	private static <T> String generate(JsonItemAggregator<T> aggregator, T item) throws IOException {
+		StringWriter writer = new StringWriter();
+		JsonGenerator jsonGenerator = ObjectWriterRegistry.getDefault().getObjectMapper().getFactory()
+				.createGenerator(writer);
+		aggregator.aggregate(item, jsonGenerator);
+		jsonGenerator.close();
+		return writer.toString();
+	}
+}
@@ -0,0 +1,129 @@
+package fr.soat.java.spring_batch.jsonitemwriter.model;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.annotation.JsonItem;
+
+/**
+ * Item with a property of each kind handled by the generated code, and some left to the {@code ObjectMapper}.
+ */
+@JsonItem
+public class SampleItem {
+
+	private int count;
+	private long total;
+	private double ratio;
+	private boolean active;
+	private char code;
+	private Integer optional;
+	private Boolean flag;
+	private BigDecimal amount;
+	private List<String> tags;
+	private Person owner;
+
+	@JsonProperty("renamed")
+	private String name;
+
+	@JsonIgnore
+	private String secret;
+
+	public int getCount() {
+		return count;
+	}
+
+	public void setCount(int count) {
+		this.count = count;
+	}
+
+	public long getTotal() {
+		return total;
+	}
+
+	public void setTotal(long total) {
+		this.total = total;
+	}
+
+	public double getRatio() {
+		return ratio;
+	}
+
+	public void setRatio(double ratio) {
+		this.ratio = ratio;
+	}
+
+	public boolean isActive() {
+		return active;
+	}
+
+	public void setActive(boolean active) {
+		this.active = active;
+	}
+
+	public char getCode() {
+		return code;
+	}
+
+	public void setCode(char code) {
+		this.code = code;
+	}
+
+	public Integer getOptional() {
+		return optional;
+	}
+
+	public void setOptional(Integer optional) {
+		this.optional = optional;
+	}
+
+	public Boolean getFlag() {
+		return flag;
+	}
+
+	public void setFlag(Boolean flag) {
+		this.flag = flag;
+	}
+
+	public BigDecimal getAmount() {
+		return amount;
+	}
+
+	public void setAmount(BigDecimal amount) {
+		this.amount = amount;
+	}
+
+	public List<String> getTags() {
+		return tags;
+	}
+
+	public void setTags(List<String> tags) {
+		this.tags = tags;
+	}
+
+	public Person getOwner() {
+		return owner;
+	}
+
+	public void setOwner(Person owner) {
+		this.owner = owner;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public String getSecret() {
+		return secret;
+	}
+
+	public void setSecret(String secret) {
+		this.secret = secret;
+	}
+}
@@ -12,16 +12,13 @@ import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.batch.item.ItemReader;
 import org.springframework.batch.item.ItemWriter;
-import org.springframework.batch.item.file.FlatFileItemReader;
 import org.springframework.batch.item.file.FlatFileItemWriter;
-import org.springframework.batch.item.file.mapping.BeanWrapperFieldSetMapper;
-import org.springframework.batch.item.file.mapping.DefaultLineMapper;
-import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.FileSystemResource;
 
+import fr.soat.java.spring_batch.jsonitemwriter.api.MappedDelimitedItemReader;
 import fr.soat.java.spring_batch.jsonitemwriter.item.PersonJsonItemAggregator;
 import fr.soat.java.spring_batch.jsonitemwriter.model.Person;
 import fr.soat.java.spring_batch.jsonitemwriter.processor.PersonItemProcessor;
@@ -36,17 +33,11 @@ public class BatchConfiguration {
 	
     @Bean
     public ItemReader<Person> reader() {    	
-        FlatFileItemReader<Person> reader = new FlatFileItemReader<>();
+        // tokenizes the mapped bytes of the input and sets the fields through a precompiled setter plan
+        MappedDelimitedItemReader<Person> reader = new MappedDelimitedItemReader<>();
         reader.setResource(new ClassPathResource(AppUtils.INPUT_FILE));
-        
-        reader.setLineMapper(new DefaultLineMapper<Person>() {{
-            setLineTokenizer(new DelimitedLineTokenizer() {{
-                setNames(new String[] { "firstName", "lastName" });
-            }});
-            setFieldSetMapper(new BeanWrapperFieldSetMapper<Person>() {{
-                setTargetType(Person.class);
-            }});
-        }});
+        reader.setItemType(Person.class);
+        reader.setNames(new String[] { "firstName", "lastName" });
 		return reader;    	
     }
     
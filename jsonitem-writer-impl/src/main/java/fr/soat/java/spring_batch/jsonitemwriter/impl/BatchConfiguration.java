@@ -1,6 +1,8 @@
 package fr.soat.java.spring_batch.jsonitemwriter.impl;
 
 import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.JobExecutionListener;
@@ -9,22 +11,24 @@ import org.springframework.batch.core.configuration.annotation.EnableBatchProces
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
-import org.springframework.batch.item.ItemProcessor;
 import org.springframework.batch.item.ItemReader;
 import org.springframework.batch.item.ItemWriter;
-import org.springframework.batch.item.file.FlatFileItemReader;
-import org.springframework.batch.item.file.mapping.BeanWrapperFieldSetMapper;
-import org.springframework.batch.item.file.mapping.DefaultLineMapper;
-import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 
 import fr.soat.java.spring_batch.jsonitemwriter.api.JsonFlatFileItemWriter;
-import fr.soat.java.spring_batch.jsonitemwriter.api.JsonItemAggregator;
+import fr.soat.java.spring_batch.jsonitemwriter.api.MappedDelimitedItemReader;
+import fr.soat.java.spring_batch.jsonitemwriter.api.processor.AsyncItemProcessor;
+import fr.soat.java.spring_batch.jsonitemwriter.api.processor.AsyncItemWriter;
+import fr.soat.java.spring_batch.jsonitemwriter.api.processor.ItemListProcessor;
+import fr.soat.java.spring_batch.jsonitemwriter.api.processor.ItemListStepBuilder;
+import fr.soat.java.spring_batch.jsonitemwriter.api.processor.ProcessingExecutors;
 import fr.soat.java.spring_batch.jsonitemwriter.model.Person;
-import fr.soat.java.spring_batch.jsonitemwriter.processor.PersonItemProcessor;
+import fr.soat.java.spring_batch.jsonitemwriter.model.PersonGeneratedJsonItemAggregator;
+import fr.soat.java.spring_batch.jsonitemwriter.processor.PersonItemListProcessor;
 import fr.soat.java.spring_batch.jsonitemwriter.utils.AppUtils;
 
 @Configuration
@@ -33,35 +37,44 @@ public class BatchConfiguration{
 	
 	private static final String TARGET_SAMPLE_OUTPUT_DATA_JSON = "target/sample-output-data.json";
 	private static final String JSON_ROOT_NODE = "Persons";
+	private static final int PROCESSING_POOL_SIZE = 4 * Runtime.getRuntime().availableProcessors();
+	private static final int PROCESSING_SLICE_SIZE = 25;
 	
     @Bean
-    public ItemReader<Person> reader() {    	
-        FlatFileItemReader<Person> reader = new FlatFileItemReader<>();
-        reader.setResource(new ClassPathResource(AppUtils.INPUT_FILE));
-        
-        reader.setLineMapper(new DefaultLineMapper<Person>() {{
-            setLineTokenizer(new DelimitedLineTokenizer() {{
-                setNames(new String[] { "firstName", "lastName" });
-            }});
-            setFieldSetMapper(new BeanWrapperFieldSetMapper<Person>() {{
-                setTargetType(Person.class);
-            }});
-        }});
+    public ItemReader<Person> reader(@Value("${jsonitemwriter.input:classpath:" + AppUtils.INPUT_FILE + "}") Resource input) {    	
+        // tokenizes the mapped bytes of the input and sets the fields through a precompiled setter plan
+        MappedDelimitedItemReader<Person> reader = new MappedDelimitedItemReader<>();
+        reader.setResource(input);
+        reader.setItemType(Person.class);
+        reader.setNames(new String[] { "firstName", "lastName" });
 		return reader;    	
     }
     
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService processingExecutor() {
+        // virtual threads on JDK 21 and later, a pool of platform threads otherwise
+        return ProcessingExecutors.newProcessingExecutor(PROCESSING_POOL_SIZE);
+    }
+    
     @Bean
-    public ItemProcessor<Person, Person> processor() {
-        return new PersonItemProcessor();
+    public ItemListProcessor<Person, Future<Person>> processor(ExecutorService processingExecutor) {
+        // each slice of the chunk is processed on the executor, the futures are unwrapped in order by the AsyncItemWriter
+        AsyncItemProcessor<Person, Person> processor = new AsyncItemProcessor<>();
+        processor.setListDelegate(new PersonItemListProcessor());
+        processor.setExecutor(processingExecutor);
+        processor.setSliceSize(PROCESSING_SLICE_SIZE);
+        return processor;
     }
     
     @Bean
-    public ItemWriter<Person> writer() {
+    public ItemWriter<Person> writer(@Value("${jsonitemwriter.output:" + TARGET_SAMPLE_OUTPUT_DATA_JSON + "}") String output) {
     	//JSON_ROOT_NODE = persons but can be null and in that case just call the default constructor
         JsonFlatFileItemWriter<Person> writer = new JsonFlatFileItemWriter<Person>(JSON_ROOT_NODE);
         
-        writer.setJsonItemAggregator(new JsonItemAggregator<Person>());             
-        writer.setResource(new FileSystemResource(System.getProperty("user.dir") + File.separator  + TARGET_SAMPLE_OUTPUT_DATA_JSON));
+        // aggregator generated at compile time from the @JsonItem annotation of Person
+        writer.setJsonItemAggregator(new PersonGeneratedJsonItemAggregator());
+        // a relative path is resolved against user.dir
+        writer.setResource(new FileSystemResource(new File(output).getAbsolutePath()));
         writer.setEncoding(AppUtils.UTF_8.name());
         writer.setShouldDeleteIfExists(true);
 
@@ -80,13 +93,13 @@ public class BatchConfiguration{
 
     @Bean
     public Step step1(StepBuilderFactory stepBuilderFactory, ItemReader<Person> reader,
-            ItemWriter<Person> writer, ItemProcessor<Person, Person> processor) {
+            ItemWriter<Person> writer, ItemListProcessor<Person, Future<Person>> processor) {
     	
-        return stepBuilderFactory.get("step1")
-                .<Person, Person> chunk(2) //commit-interval = 2
+        return new ItemListStepBuilder<Person, Future<Person>>(stepBuilderFactory.get("step1"))
+                .listProcessor(processor)
+                .chunk(100) //commit-interval = 100, the slices of a chunk are processed concurrently
                 .reader(reader)
-                .processor(processor)
-                .writer(writer)
+                .writer(new AsyncItemWriter<Person>(writer))
                 .build();
     }
 
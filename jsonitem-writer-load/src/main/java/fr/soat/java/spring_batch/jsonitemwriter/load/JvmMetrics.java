@@ -0,0 +1,105 @@
+package fr.soat.java.spring_batch.jsonitemwriter.load;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Collects the garbage collections and the peak heap usage between {@link #start()} and {@link #stop()}.
+ *
+ * The pauses are read from the notifications of the HotSpot collectors, without depending on com.sun classes.
+ * The collections of the concurrent collectors which do not stop the application (G1 concurrent cycles, ZGC
+ * and Shenandoah cycles) are left out.
+ */
+public class JvmMetrics implements NotificationListener {
+
+	private static final String GC_NOTIFICATION = "com.sun.management.gc.notification";
+
+	private final List<NotificationEmitter> emitters = new ArrayList<>();
+
+	private long pauseCount;
+	private long totalPauseMillis;
+	private long maxPauseMillis;
+	private long peakHeapBytes;
+
+	public void start() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			if (collector instanceof NotificationEmitter) {
+				NotificationEmitter emitter = (NotificationEmitter) collector;
+				emitter.addNotificationListener(this, null, null);
+				emitters.add(emitter);
+			}
+		}
+	}
+
+	public void stop() {
+		for (NotificationEmitter emitter : emitters) {
+			try {
+				emitter.removeNotificationListener(this);
+			} catch (ListenerNotFoundException e) {
+				// already removed
+			}
+		}
+		emitters.clear();
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		synchronized (this) {
+			peakHeapBytes = peak;
+		}
+	}
+
+	@Override
+	public void handleNotification(Notification notification, Object handback) {
+		if (!GC_NOTIFICATION.equals(notification.getType())) {
+			return;
+		}
+		CompositeData data = (CompositeData) notification.getUserData();
+		String name = (String) data.get("gcName");
+		if (name.contains("Concurrent") || name.contains("Cycles")) {
+			return;
+		}
+		long duration = (Long) ((CompositeData) data.get("gcInfo")).get("duration");
+		synchronized (this) {
+			pauseCount++;
+			totalPauseMillis += duration;
+			maxPauseMillis = Math.max(maxPauseMillis, duration);
+		}
+	}
+
+	public synchronized long getPauseCount() {
+		return pauseCount;
+	}
+
+	public synchronized long getTotalPauseMillis() {
+		return totalPauseMillis;
+	}
+
+	public synchronized long getMaxPauseMillis() {
+		return maxPauseMillis;
+	}
+
+	/**
+	 * Sum of the peak usage of each heap pool: an upper bound, the pools not peaking at the same time.
+	 */
+	public synchronized long getPeakHeapBytes() {
+		return peakHeapBytes;
+	}
+}
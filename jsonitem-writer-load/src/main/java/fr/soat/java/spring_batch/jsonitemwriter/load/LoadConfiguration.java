@@ -0,0 +1,24 @@
+package fr.soat.java.spring_batch.jsonitemwriter.load;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
+
+/**
+ * Registered next to the configuration of the impl job, out of Spring Boot: resolves the input and output
+ * placeholders of the job from the environment, and times its phases. Without a data source, the job
+ * repository is kept in memory.
+ */
+@Configuration
+public class LoadConfiguration {
+
+	@Bean
+	public static PropertySourcesPlaceholderConfigurer propertySourcesPlaceholderConfigurer() {
+		return new PropertySourcesPlaceholderConfigurer();
+	}
+
+	@Bean
+	public static PhaseTimer phaseTimer() {
+		return new PhaseTimer();
+	}
+}
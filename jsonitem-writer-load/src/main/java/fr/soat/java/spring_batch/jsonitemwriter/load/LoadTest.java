@@ -0,0 +1,192 @@
+package fr.soat.java.spring_batch.jsonitemwriter.load;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.processor.ProcessingExecutors;
+import fr.soat.java.spring_batch.jsonitemwriter.impl.BatchConfiguration;
+import fr.soat.java.spring_batch.jsonitemwriter.impl.JobCompletionNotificationListener;
+
+/**
+ * Generates persons and runs the writeJsonFormatJob of the impl module on them, headless, then reports the
+ * throughput, the time of each phase, the garbage collection pauses and the peak heap. Exits with 1 when the
+ * job fails, loses items or is slower than the given minimum, so that it can gate a build:
+ *
+ * <pre>
+ * java -Xmx1g -jar jsonitem-writer-load/target/load.jar --items=5000000 --unicode=0.1 --min-items-per-second=200000
+ * </pre>
+ */
+public class LoadTest {
+
+	private static final Map<String, String> OPTIONS = new LinkedHashMap<>();
+
+	static {
+		OPTIONS.put("items", "number of persons, default 1000000");
+		OPTIONS.put("first-name-length", "length of the first names in characters, default 8");
+		OPTIONS.put("last-name-length", "length of the last names in characters, default 12");
+		OPTIONS.put("unicode", "share of the characters out of ASCII, between 0 and 1, default 0");
+		OPTIONS.put("seed", "seed of the generated names, default 42");
+		OPTIONS.put("dir", "directory of the input and output files, default target/load");
+		OPTIONS.put("keep-files", "true to keep the input and output files, default false");
+		OPTIONS.put("min-items-per-second", "fails below this throughput, default 0");
+		OPTIONS.put("report", "properties file the results are also written to, default none");
+	}
+
+	private static final double MB = 1024 * 1024;
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options;
+		try {
+			options = parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			usage();
+			System.exit(2);
+			return;
+		}
+		System.exit(new LoadTest().run(options) ? 0 : 1);
+	}
+
+	private static Map<String, String> parse(String[] args) {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			int equals = arg.indexOf('=');
+			if (!arg.startsWith("--") || equals < 0 || !OPTIONS.containsKey(arg.substring(2, equals))) {
+				throw new IllegalArgumentException("Unknown option " + arg);
+			}
+			options.put(arg.substring(2, equals), arg.substring(equals + 1));
+		}
+		return options;
+	}
+
+	private static void usage() {
+		System.err.println("Options:");
+		for (Map.Entry<String, String> option : OPTIONS.entrySet()) {
+			System.err.println(String.format("  --%s=...  %s", option.getKey(), option.getValue()));
+		}
+	}
+
+	private boolean run(Map<String, String> options) throws Exception {
+		long items = Long.parseLong(get(options, "items", "1000000"));
+		File dir = new File(get(options, "dir", "target/load"));
+		double minItemsPerSecond = Double.parseDouble(get(options, "min-items-per-second", "0"));
+		dir.mkdirs();
+		File input = new File(dir, "persons.csv");
+		File output = new File(dir, "persons.json");
+
+		PersonDataGenerator generator = new PersonDataGenerator();
+		generator.setItems(items);
+		generator.setFirstNameLength(Integer.parseInt(get(options, "first-name-length", "8")));
+		generator.setLastNameLength(Integer.parseInt(get(options, "last-name-length", "12")));
+		generator.setUnicodeRatio(Double.parseDouble(get(options, "unicode", "0")));
+		generator.setSeed(Long.parseLong(get(options, "seed", "42")));
+		long start = System.nanoTime();
+		long inputBytes = generator.generate(input);
+		long generateNanos = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+		Map<String, Object> properties = new HashMap<>();
+		properties.put("jsonitemwriter.input", input.toURI().toString());
+		properties.put("jsonitemwriter.output", output.getAbsolutePath());
+		context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("load", properties));
+		context.register(BatchConfiguration.class, JobCompletionNotificationListener.class, LoadConfiguration.class);
+		Map<String, Object> results = new LinkedHashMap<>();
+		boolean passed;
+		try {
+			context.refresh();
+			long startupNanos = System.nanoTime() - start;
+
+			JvmMetrics jvmMetrics = new JvmMetrics();
+			jvmMetrics.start();
+			start = System.nanoTime();
+			JobExecution jobExecution = context.getBean(JobLauncher.class).run(context.getBean(Job.class),
+					new JobParametersBuilder().addLong("run.id", System.currentTimeMillis()).toJobParameters());
+			long jobNanos = System.nanoTime() - start;
+			jvmMetrics.stop();
+
+			PhaseTimer phaseTimer = context.getBean(PhaseTimer.class);
+			StepExecution stepExecution = jobExecution.getStepExecutions().iterator().next();
+			long stepNanos = (stepExecution.getEndTime().getTime() - stepExecution.getStartTime().getTime()) * 1000000;
+			long outputBytes = output.length();
+			double jobSeconds = jobNanos / 1e9;
+
+			results.put("status", jobExecution.getStatus());
+			results.put("items", items);
+			results.put("written", stepExecution.getWriteCount());
+			results.put("java", System.getProperty("java.version"));
+			results.put("virtual.threads", ProcessingExecutors.isVirtualThreadSupported());
+			results.put("input.mb", format(inputBytes / MB));
+			results.put("output.mb", format(outputBytes / MB));
+			results.put("items.per.second", format(stepExecution.getWriteCount() / jobSeconds));
+			results.put("input.mb.per.second", format(inputBytes / MB / jobSeconds));
+			results.put("output.mb.per.second", format(outputBytes / MB / jobSeconds));
+			results.put("time.generate.ms", millis(generateNanos));
+			results.put("time.startup.ms", millis(startupNanos));
+			results.put("time.job.ms", millis(jobNanos));
+			results.put("time.read.ms", millis(phaseTimer.getReadNanos()));
+			results.put("time.process.ms", millis(phaseTimer.getProcessNanos()));
+			results.put("time.write.ms", millis(phaseTimer.getWriteNanos()));
+			results.put("time.other.ms", millis(Math.max(0, stepNanos - phaseTimer.getReadNanos()
+					- phaseTimer.getProcessNanos() - phaseTimer.getWriteNanos())));
+			results.put("gc.pauses", jvmMetrics.getPauseCount());
+			results.put("gc.pause.total.ms", jvmMetrics.getTotalPauseMillis());
+			results.put("gc.pause.max.ms", jvmMetrics.getMaxPauseMillis());
+			results.put("heap.peak.mb", format(jvmMetrics.getPeakHeapBytes() / MB));
+
+			passed = jobExecution.getStatus() == BatchStatus.COMPLETED && stepExecution.getWriteCount() == items
+					&& stepExecution.getWriteCount() / jobSeconds >= minItemsPerSecond;
+			results.put("passed", passed);
+		} finally {
+			context.close();
+			if (!Boolean.parseBoolean(get(options, "keep-files", "false"))) {
+				input.delete();
+				output.delete();
+			}
+		}
+		report(results, options.get("report"));
+		return passed;
+	}
+
+	private static void report(Map<String, Object> results, String reportFile) throws IOException {
+		Properties properties = new Properties();
+		for (Map.Entry<String, Object> result : results.entrySet()) {
+			System.out.println(String.format("%-22s %s", result.getKey(), result.getValue()));
+			properties.setProperty(result.getKey(), String.valueOf(result.getValue()));
+		}
+		if (reportFile != null) {
+			try (OutputStream out = new FileOutputStream(reportFile)) {
+				properties.store(out, "jsonitem-writer load test");
+			}
+		}
+	}
+
+	private static String get(Map<String, String> options, String name, String defaultValue) {
+		String value = options.get(name);
+		return value == null ? defaultValue : value;
+	}
+
+	private static long millis(long nanos) {
+		return nanos / 1000000;
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.1f", value);
+	}
+}
@@ -0,0 +1,119 @@
+package fr.soat.java.spring_batch.jsonitemwriter.load;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+
+import fr.soat.java.spring_batch.jsonitemwriter.utils.AppUtils;
+
+/**
+ * Writes an input file of the impl job: one "firstname,lastname" line per person, in UTF-8. The names are
+ * random letters of the given lengths, in code points. A share of them are taken out of ASCII, spread evenly
+ * over characters encoded on 2 (accented latin, cyrillic), 3 (CJK) and 4 bytes (emoji, outside of the BMP).
+ *
+ * The same seed gives the same file.
+ */
+public class PersonDataGenerator {
+
+	private static final String ACCENTED_LATIN = "éèêàâçñöüåøæ";
+	private static final int CYRILLIC_FIRST = 0x0430;
+	private static final int CYRILLIC_COUNT = 32;
+	private static final int CJK_FIRST = 0x4E00;
+	private static final int CJK_COUNT = 0x51A6;
+	private static final int EMOJI_FIRST = 0x1F600;
+	private static final int EMOJI_COUNT = 0x50;
+
+	private static final int BUFFER_SIZE = 1024 * 1024;
+
+	private long items = 1000000;
+	private int firstNameLength = 8;
+	private int lastNameLength = 12;
+	private double unicodeRatio = 0;
+	private long seed = 42;
+
+	/**
+	 * Writes the persons to the file, replacing it.
+	 *
+	 * @param file
+	 * @return the size of the file, in bytes
+	 * @throws IOException
+	 */
+	public long generate(File file) throws IOException {
+		Random random = new Random(seed);
+		StringBuilder line = new StringBuilder(4 * (firstNameLength + lastNameLength) + 2);
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), AppUtils.UTF_8),
+				BUFFER_SIZE)) {
+			for (long i = 0; i < items; i++) {
+				line.setLength(0);
+				appendName(line, firstNameLength, random);
+				line.append(',');
+				appendName(line, lastNameLength, random);
+				line.append('\n');
+				writer.append(line);
+			}
+		}
+		return file.length();
+	}
+
+	private void appendName(StringBuilder line, int length, Random random) {
+		for (int i = 0; i < length; i++) {
+			if (unicodeRatio > 0 && random.nextDouble() < unicodeRatio) {
+				line.appendCodePoint(nextUnicodeCodePoint(random));
+			} else {
+				line.append((char) (i == 0 ? 'A' + random.nextInt(26) : 'a' + random.nextInt(26)));
+			}
+		}
+	}
+
+	private static int nextUnicodeCodePoint(Random random) {
+		switch (random.nextInt(4)) {
+		case 0:
+			return ACCENTED_LATIN.charAt(random.nextInt(ACCENTED_LATIN.length()));
+		case 1:
+			return CYRILLIC_FIRST + random.nextInt(CYRILLIC_COUNT);
+		case 2:
+			return CJK_FIRST + random.nextInt(CJK_COUNT);
+		default:
+			return EMOJI_FIRST + random.nextInt(EMOJI_COUNT);
+		}
+	}
+
+	/**
+	 * Number of persons. Default is 1,000,000.
+	 */
+	public void setItems(long items) {
+		this.items = items;
+	}
+
+	/**
+	 * Length of the first names, in code points. Default is 8.
+	 */
+	public void setFirstNameLength(int firstNameLength) {
+		this.firstNameLength = firstNameLength;
+	}
+
+	/**
+	 * Length of the last names, in code points. Default is 12.
+	 */
+	public void setLastNameLength(int lastNameLength) {
+		this.lastNameLength = lastNameLength;
+	}
+
+	/**
+	 * Share of the characters out of ASCII, between 0 and 1. Default is 0.
+	 */
+	public void setUnicodeRatio(double unicodeRatio) {
+		this.unicodeRatio = unicodeRatio;
+	}
+
+	/**
+	 * Seed of the random names. Default is 42.
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+}
@@ -0,0 +1,191 @@
+package fr.soat.java.spring_batch.jsonitemwriter.load;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemReader;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import fr.soat.java.spring_batch.jsonitemwriter.api.processor.ItemListProcessor;
+
+/**
+ * Measures the time spent in the reader, the processor and the writer of the job, by wrapping their beans before
+ * the step is built. The wrappers forward the stream callbacks, so the step opens and closes the beans as usual.
+ *
+ * With asynchronous processing, the process phase is only the submission of the items: the time waiting for
+ * their results is spent in the step, between the process and the write phases. A processor which is also an
+ * {@link ItemListProcessor} is wrapped as a list processor, the step calling it once per chunk.
+ */
+public class PhaseTimer implements BeanPostProcessor {
+
+	private final AtomicLong readNanos = new AtomicLong();
+	private final AtomicLong processNanos = new AtomicLong();
+	private final AtomicLong writeNanos = new AtomicLong();
+
+	@Override
+	public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+		return bean;
+	}
+
+	@Override
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+		if (bean instanceof ItemReader) {
+			return new TimedItemReader((ItemReader) bean);
+		}
+		if (bean instanceof ItemListProcessor) {
+			return new TimedItemListProcessor((ItemListProcessor) bean);
+		}
+		if (bean instanceof ItemProcessor) {
+			return new TimedItemProcessor((ItemProcessor) bean);
+		}
+		if (bean instanceof ItemWriter) {
+			return new TimedItemWriter((ItemWriter) bean);
+		}
+		return bean;
+	}
+
+	public long getReadNanos() {
+		return readNanos.get();
+	}
+
+	public long getProcessNanos() {
+		return processNanos.get();
+	}
+
+	public long getWriteNanos() {
+		return writeNanos.get();
+	}
+
+	private static void open(Object delegate, ExecutionContext executionContext) {
+		if (delegate instanceof ItemStream) {
+			((ItemStream) delegate).open(executionContext);
+		}
+	}
+
+	private static void update(Object delegate, ExecutionContext executionContext) {
+		if (delegate instanceof ItemStream) {
+			((ItemStream) delegate).update(executionContext);
+		}
+	}
+
+	private static void close(Object delegate) {
+		if (delegate instanceof ItemStream) {
+			((ItemStream) delegate).close();
+		}
+	}
+
+	private class TimedItemReader<T> implements ItemStreamReader<T> {
+
+		private final ItemReader<T> delegate;
+
+		TimedItemReader(ItemReader<T> delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public T read() throws Exception {
+			long start = System.nanoTime();
+			try {
+				return delegate.read();
+			} finally {
+				readNanos.addAndGet(System.nanoTime() - start);
+			}
+		}
+
+		@Override
+		public void open(ExecutionContext executionContext) throws ItemStreamException {
+			PhaseTimer.open(delegate, executionContext);
+		}
+
+		@Override
+		public void update(ExecutionContext executionContext) throws ItemStreamException {
+			PhaseTimer.update(delegate, executionContext);
+		}
+
+		@Override
+		public void close() throws ItemStreamException {
+			PhaseTimer.close(delegate);
+		}
+	}
+
+	private class TimedItemProcessor<I, O> implements ItemProcessor<I, O> {
+
+		private final ItemProcessor<I, O> delegate;
+
+		TimedItemProcessor(ItemProcessor<I, O> delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public O process(I item) throws Exception {
+			long start = System.nanoTime();
+			try {
+				return delegate.process(item);
+			} finally {
+				processNanos.addAndGet(System.nanoTime() - start);
+			}
+		}
+	}
+
+	private class TimedItemListProcessor<I, O> implements ItemListProcessor<I, O> {
+
+		private final ItemListProcessor<I, O> delegate;
+
+		TimedItemListProcessor(ItemListProcessor<I, O> delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public List<O> process(List<? extends I> items) throws Exception {
+			long start = System.nanoTime();
+			try {
+				return delegate.process(items);
+			} finally {
+				processNanos.addAndGet(System.nanoTime() - start);
+			}
+		}
+	}
+
+	private class TimedItemWriter<T> implements ItemStreamWriter<T> {
+
+		private final ItemWriter<T> delegate;
+
+		TimedItemWriter(ItemWriter<T> delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public void write(List<? extends T> items) throws Exception {
+			long start = System.nanoTime();
+			try {
+				delegate.write(items);
+			} finally {
+				writeNanos.addAndGet(System.nanoTime() - start);
+			}
+		}
+
+		@Override
+		public void open(ExecutionContext executionContext) throws ItemStreamException {
+			PhaseTimer.open(delegate, executionContext);
+		}
+
+		@Override
+		public void update(ExecutionContext executionContext) throws ItemStreamException {
+			PhaseTimer.update(delegate, executionContext);
+		}
+
+		@Override
+		public void close() throws ItemStreamException {
+			PhaseTimer.close(delegate);
+		}
+	}
+}